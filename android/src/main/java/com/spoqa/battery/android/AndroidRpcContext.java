@@ -0,0 +1,323 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.android;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.ServerError;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.Volley;
+
+import com.spoqa.battery.BuildConfig;
+import com.spoqa.battery.Config;
+import com.spoqa.battery.HttpRequest;
+import com.spoqa.battery.InFlightCall;
+import com.spoqa.battery.Logger;
+import com.spoqa.battery.OnResponse;
+import com.spoqa.battery.PlatformUtils;
+import com.spoqa.battery.ResponseCache;
+import com.spoqa.battery.RpcContext;
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.exceptions.ResponseValidationException;
+import com.spoqa.battery.exceptions.RpcException;
+import com.spoqa.battery.exceptions.SerializationException;
+
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.util.List;
+
+import rx.Observable;
+
+public class AndroidRpcContext extends RpcContext<Context> {
+
+    static {
+        /* register up */
+        Logger.registerLogger(new AndroidLogger());
+        PlatformUtils.registerPlatformUtils(new AndroidPlatformUtilsImpl());
+        Config.DEBUG_PRINT_STACK_TRACE = BuildConfig.DEBUG;
+    }
+
+    private static final String TAG = "AndroidExecutionContext";
+
+    private RequestQueue mRequestQueue;
+    private Context mAndroidContext;
+    private Handler mMainHandler;
+
+    public AndroidRpcContext(Context androidApplicationContext, RequestQueue requestQueue) {
+        super();
+        mAndroidContext = androidApplicationContext;
+        mRequestQueue = requestQueue;
+        mMainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    public AndroidRpcContext(Context androidApplicationContext) {
+        this(androidApplicationContext,
+                Volley.newRequestQueue(androidApplicationContext, new OkHttpStack()));
+    }
+
+    public RequestQueue getRequestQueue() {
+        return mRequestQueue;
+    }
+
+    public Context androidApplicationContext() {
+        return mAndroidContext;
+    }
+
+    public <T> void invokeAsync(final T rpcObject, final OnResponse<T> onResponse) {
+        invokeAsync(rpcObject, onResponse, mAndroidContext);
+    }
+
+    @Override
+    public <T> void invokeAsync(final T rpcObject, final OnResponse<T> onResponse, final Context currentContext) {
+        HttpRequest request = createRequest(rpcObject, onResponse);
+        if (request != null)
+            invokeRequest(rpcObject, request, onResponse, currentContext);
+    }
+
+    @Override
+    protected <T> void invokeRequest(final T rpcObject, final HttpRequest request,
+                                     final OnResponse<T> onResponse, final Context currentContext) {
+        final ResponseCache.Entry cached = getCachedResponse(request);
+        if (cached != null) {
+            long now = System.currentTimeMillis();
+            if (cached.isFresh(now) || cached.isStaleWhileRevalidate(now)) {
+                if (!cached.isFresh(now))
+                    revalidate(rpcObject, request, cached);
+                deliverCachedResponse(rpcObject, request, cached, onResponse, currentContext);
+                return;
+            }
+
+            addCacheValidators(request, cached);
+        }
+
+        final InFlightCall call = leadInFlightCall(request, rpcObject, onResponse, currentContext);
+        if (call == null)
+            return;
+
+        /* runs on a network dispatcher thread, so that only callbacks reach the main thread */
+        VolleyRequest.ResponseDecoder decoder = new VolleyRequest.ResponseDecoder() {
+            @Override
+            public void decode(ResponseDelegate s) {
+                try {
+                    if (cached != null && s.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                        ResponseCache.Entry entry = refreshCachedResponse(rpcObject, request, cached,
+                                s.headers());
+                        decodeResponse(rpcObject, request, entry);
+                    } else {
+                        decodeResponse(rpcObject, request, s.contentType(), s.rawData());
+                        /* stored only once it has been bound and validated */
+                        if (isCacheable(rpcObject, request, s.headers()))
+                            storeResponse(rpcObject, request, s.headers(), s.rawData());
+                    }
+                } catch (DeserializationException e) {
+                    s.setError(e);
+                } catch (ResponseValidationException e) {
+                    s.setError(e);
+                }
+            }
+        };
+
+        Response.Listener<ResponseDelegate> onVolleyResponse = new Response.Listener<ResponseDelegate>() {
+            @Override
+            public void onResponse(ResponseDelegate s) {
+                completeInFlightCall(call, rpcObject, s.error());
+                deliverResponse(currentContext, rpcObject, s.error(), onResponse);
+            }
+        };
+
+        Response.ErrorListener onVolleyErrorResponse = new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError volleyError) {
+                Logger.error(TAG, "Error while RPC call: " + volleyError.getMessage());
+                if (Config.DEBUG_DUMP_RESPONSE) {
+                    try {
+                        if (volleyError.networkResponse != null)
+                            Logger.error(TAG, "Error response: " +
+                                    new String(volleyError.networkResponse.data, "utf-8"));
+                    } catch (UnsupportedEncodingException e) {}
+                }
+
+                completeInFlightCall(call, rpcObject, volleyError);
+                deliverResponse(currentContext, rpcObject, volleyError, onResponse);
+            }
+        };
+
+        VolleyRequest req = new VolleyRequest(request, decoder, onVolleyResponse,
+                onVolleyErrorResponse);
+        if (getResponseCache() != null)
+            req.setShouldCache(false);
+        mRequestQueue.add(req);
+    }
+
+    /* a network error is handled as a VolleyError first, then as the error which caused it */
+    @Override
+    protected <T> void deliverResponse(Context currentContext, T rpcObject, Throwable error,
+                                       OnResponse<T> onResponse) {
+        if (!(error instanceof VolleyError)) {
+            super.deliverResponse(currentContext, rpcObject, error, onResponse);
+            return;
+        }
+
+        VolleyError volleyError = (VolleyError) error;
+        Throwable e = volleyError.getCause();
+        if (e == null) {
+            if (volleyError instanceof ServerError) {
+                e = new RpcException("Server Error");
+            } else {
+                e = new RpcException(volleyError.toString());
+            }
+        }
+        if (!dispatchErrorHandler(currentContext, volleyError) &&
+                !dispatchErrorHandler(currentContext, e))
+            onResponse.onFailure(volleyError);
+        else
+            reportHandledError(onResponse, volleyError);
+    }
+
+    /* Volley sends request bodies from a byte array */
+    @Override
+    protected boolean buffersRequestBodies() {
+        return true;
+    }
+
+    /*
+     * the handler decodes on a network dispatcher thread, as calls do, and posts its own
+     * results; only an error it threw is left for the main thread
+     */
+    @Override
+    protected void sendRequest(HttpRequest request, final RawResponseHandler handler) {
+        try {
+            request.bufferRequestBody();
+        } catch (SerializationException e) {
+            handler.onFailure(e);
+            return;
+        }
+
+        VolleyRequest.ResponseDecoder decoder = new VolleyRequest.ResponseDecoder() {
+            @Override
+            public void decode(ResponseDelegate s) {
+                try {
+                    handler.onResponse(s.statusCode(), s.contentType(), s.rawData());
+                } catch (RuntimeException e) {
+                    Logger.error(TAG, "Error while handling response: " + e);
+                    s.setError(e);
+                }
+            }
+        };
+
+        Response.Listener<ResponseDelegate> onVolleyResponse = new Response.Listener<ResponseDelegate>() {
+            @Override
+            public void onResponse(ResponseDelegate s) {
+                if (s.error() != null)
+                    handler.onFailure(s.error());
+            }
+        };
+
+        Response.ErrorListener onVolleyErrorResponse = new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError volleyError) {
+                handler.onFailure(volleyError);
+            }
+        };
+
+        VolleyRequest req = new VolleyRequest(request, decoder, onVolleyResponse,
+                onVolleyErrorResponse);
+        req.setShouldCache(false);
+        mRequestQueue.add(req);
+    }
+
+    @Override
+    protected void runOnCallbackThread(Runnable runnable) {
+        mMainHandler.post(runnable);
+    }
+
+    /* decodes off the main thread as a network response would be, and delivers on it */
+    private <T> void deliverCachedResponse(final T rpcObject, final HttpRequest request,
+                                           final ResponseCache.Entry cached,
+                                           final OnResponse<T> onResponse, final Context currentContext) {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                Throwable error = null;
+                try {
+                    decodeResponse(rpcObject, request, cached);
+                } catch (DeserializationException e) {
+                    error = e;
+                } catch (ResponseValidationException e) {
+                    error = e;
+                } catch (RuntimeException e) {
+                    /* e.g. from a ResponseValidator; it would otherwise kill the pool thread */
+                    Logger.error(TAG, "Error while decoding cached response: " + e);
+                    error = e;
+                }
+
+                final Throwable decodeError = error;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliverResponse(currentContext, rpcObject, decodeError, onResponse);
+                    }
+                });
+            }
+        });
+    }
+
+    /*
+     * refreshes a stale response which has already been used, decoding a new one only to
+     * validate it; only one revalidation of a response is sent at a time
+     */
+    private void revalidate(final Object rpcObject, final HttpRequest request,
+                            final ResponseCache.Entry cached) {
+        if (!beginRevalidation(request))
+            return;
+
+        addCacheValidators(request, cached);
+
+        VolleyRequest.ResponseDecoder decoder = new VolleyRequest.ResponseDecoder() {
+            @Override
+            public void decode(ResponseDelegate s) {
+                if (s.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED)
+                    refreshCachedResponse(rpcObject, request, cached, s.headers());
+                else if (isCacheable(rpcObject, request, s.headers()))
+                    storeRevalidatedResponse(rpcObject, request, s.headers(), s.contentType(),
+                            s.rawData());
+            }
+        };
+
+        Response.Listener<ResponseDelegate> onVolleyResponse = new Response.Listener<ResponseDelegate>() {
+            @Override
+            public void onResponse(ResponseDelegate s) {
+                endRevalidation(request);
+            }
+        };
+
+        Response.ErrorListener onVolleyErrorResponse = new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError volleyError) {
+                endRevalidation(request);
+                Logger.warn(TAG, "Could not revalidate cached response: " + volleyError.getMessage());
+            }
+        };
+
+        VolleyRequest req = new VolleyRequest(request, decoder, onVolleyResponse,
+                onVolleyErrorResponse);
+        req.setShouldCache(false);
+        mRequestQueue.add(req);
+    }
+
+    public <T> Observable<T> invokeObservable(final T rpcObject) {
+        return invokeObservable(rpcObject, mAndroidContext);
+    }
+
+    public <T> Observable<T> invokeAll(List<? extends T> rpcObjects, int maxConcurrency) {
+        return invokeAll(rpcObjects, maxConcurrency, mAndroidContext);
+    }
+
+}
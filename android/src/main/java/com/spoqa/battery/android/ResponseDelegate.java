@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.android;
+
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.Map;
+
+public class ResponseDelegate {
+    private byte[] mRawData;
+    private String mCharset;
+    private String mData;
+    private String mContentType;
+    private int mStatusCode;
+    private Map<String, String> mHeaders;
+    private Throwable mError;
+
+    public ResponseDelegate(String data, String contentType) {
+        mData = data;
+        mContentType = contentType;
+        mStatusCode = HttpURLConnection.HTTP_OK;
+        mHeaders = Collections.emptyMap();
+    }
+
+    public ResponseDelegate(byte[] rawData, String charset, String contentType) {
+        this(rawData, charset, contentType, HttpURLConnection.HTTP_OK,
+                Collections.<String, String>emptyMap());
+    }
+
+    public ResponseDelegate(byte[] rawData, String charset, String contentType, int statusCode,
+                            Map<String, String> headers) {
+        mRawData = rawData;
+        mCharset = charset;
+        mContentType = contentType;
+        mStatusCode = statusCode;
+        mHeaders = headers;
+    }
+
+    /* decoded lazily; prefer rawData() which does not copy the body */
+    public String data() {
+        if (mData == null && mRawData != null) {
+            try {
+                mData = new String(mRawData, mCharset);
+            } catch (UnsupportedEncodingException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return mData;
+    }
+
+    public byte[] rawData() {
+        if (mRawData == null && mData != null) {
+            try {
+                mRawData = mData.getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return mRawData;
+    }
+
+    public String contentType() {
+        return mContentType;
+    }
+
+    /* 304 reaches the decoder as well when the request is conditional */
+    public int statusCode() {
+        return mStatusCode;
+    }
+
+    public Map<String, String> headers() {
+        return mHeaders;
+    }
+
+    /* error raised while decoding the response on the network thread, if any */
+    public Throwable error() {
+        return mError;
+    }
+
+    public void setError(Throwable error) {
+        mError = error;
+    }
+}
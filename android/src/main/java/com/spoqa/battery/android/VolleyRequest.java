@@ -14,20 +14,36 @@ import com.android.volley.toolbox.HttpHeaderParser;
 import com.spoqa.battery.HttpRequest;
 import com.spoqa.battery.Logger;
 
-import java.io.UnsupportedEncodingException;
 import java.util.Map;
 
 public class VolleyRequest extends Request<ResponseDelegate> {
     private static final String TAG = "VolleyRequest";
 
+    /**
+     * Binds a response while it is parsed, i.e. on a network dispatcher thread rather than
+     * on the thread responses are delivered to. Errors are recorded with
+     * {@link ResponseDelegate#setError(Throwable)}.
+     */
+    public interface ResponseDecoder {
+        public void decode(ResponseDelegate response);
+    }
+
     private Response.Listener<ResponseDelegate> mListener;
+    private ResponseDecoder mDecoder;
     private Map<String, String> mHeaders;
     private byte[] mRequestBody;
     private String mContentType;
 
     public VolleyRequest(HttpRequest request, Response.Listener<ResponseDelegate> listener,
                          Response.ErrorListener errorListener) {
+        this(request, null, listener, errorListener);
+    }
+
+    public VolleyRequest(HttpRequest request, ResponseDecoder decoder,
+                         Response.Listener<ResponseDelegate> listener,
+                         Response.ErrorListener errorListener) {
         super(translateVolleyHttpMethod(request.getMethod()), request.getUri(), errorListener);
+        mDecoder = decoder;
         mListener = listener;
         mHeaders = request.getHeaders();
         mRequestBody = request.getRequestBody();
@@ -65,16 +81,15 @@ public class VolleyRequest extends Request<ResponseDelegate> {
 
     @Override
     protected Response<ResponseDelegate> parseNetworkResponse(NetworkResponse networkResponse) {
-        try {
-            return Response.success(
-                    new ResponseDelegate(
-                            new String(networkResponse.data, HttpHeaderParser.parseCharset(networkResponse.headers)),
-                            networkResponse.headers.get(HttpRequest.HEADER_CONTENT_TYPE)),
-                    HttpHeaderParser.parseCacheHeaders(networkResponse));
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-            return null;
-        }
+        ResponseDelegate response = new ResponseDelegate(networkResponse.data,
+                HttpHeaderParser.parseCharset(networkResponse.headers),
+                networkResponse.headers.get(HttpRequest.HEADER_CONTENT_TYPE),
+                networkResponse.statusCode, networkResponse.headers);
+
+        if (mDecoder != null)
+            mDecoder.decode(response);
+
+        return Response.success(response, HttpHeaderParser.parseCacheHeaders(networkResponse));
     }
 
     @Override
@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.benchmarks;
+
+import com.spoqa.battery.FieldNameTranslator;
+import com.spoqa.battery.RpcContext;
+import com.spoqa.battery.fields.TimestampDateAdapter;
+import com.spoqa.battery.jvm.JvmRpcContext;
+import com.spoqa.battery.transformers.CamelCaseTransformer;
+import com.spoqa.battery.transformers.UnderscoreNameTransformer;
+
+final class Contexts {
+
+    /* configured like a typical client: snake_case on the wire, millisecond timestamps */
+    static RpcContext newContext() {
+        JvmRpcContext context = new JvmRpcContext();
+        context.setDefaultUriPrefix(Fixtures.URI_PREFIX);
+        context.setFieldNameTransformer(new CamelCaseTransformer(), new UnderscoreNameTransformer());
+        context.getTypeAdapters().register(new TimestampDateAdapter(true));
+        return context;
+    }
+
+    static FieldNameTranslator newTranslator() {
+        return new FieldNameTranslator(new UnderscoreNameTransformer(), new CamelCaseTransformer());
+    }
+
+    private Contexts() {
+    }
+
+}
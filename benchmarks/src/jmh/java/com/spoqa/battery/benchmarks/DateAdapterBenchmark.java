@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.benchmarks;
+
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.fields.Iso8601DateAdapter;
+import com.spoqa.battery.fields.Rfc1123DateAdapter;
+import com.spoqa.battery.fields.TimestampDateAdapter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * The bundled date TypeAdapters in both directions.
+ */
+@State(Scope.Benchmark)
+public class DateAdapterBenchmark {
+
+    private static final String ISO_8601 = "2015-03-14T15:09:26.535897+09:00";
+    private static final String ISO_8601_DATE = "2015-03-14";
+    private static final String RFC_1123 = "Sat, 14 Mar 2015 06:09:26 GMT";
+    private static final String TIMESTAMP = "1426313366535";
+
+    private Iso8601DateAdapter mIso8601;
+    private Rfc1123DateAdapter mRfc1123;
+    private TimestampDateAdapter mTimestamp;
+    private Date mDate;
+
+    @Setup
+    public void setUp() {
+        mIso8601 = new Iso8601DateAdapter();
+        mRfc1123 = new Rfc1123DateAdapter(TimeZone.getTimeZone("GMT"));
+        mTimestamp = new TimestampDateAdapter(true);
+        mDate = new Date(1426313366535L);
+    }
+
+    @Benchmark
+    public Date decodeIso8601() throws DeserializationException {
+        return mIso8601.decode(ISO_8601);
+    }
+
+    @Benchmark
+    public Date decodeIso8601Date() throws DeserializationException {
+        return mIso8601.decode(ISO_8601_DATE);
+    }
+
+    @Benchmark
+    public String encodeIso8601() {
+        return mIso8601.encode(mDate);
+    }
+
+    @Benchmark
+    public Date decodeRfc1123() throws DeserializationException {
+        return mRfc1123.decode(RFC_1123);
+    }
+
+    @Benchmark
+    public String encodeRfc1123() {
+        return mRfc1123.encode(mDate);
+    }
+
+    @Benchmark
+    public Date decodeTimestamp() throws DeserializationException {
+        return mTimestamp.decode(TIMESTAMP);
+    }
+
+    @Benchmark
+    public String encodeTimestamp() {
+        return mTimestamp.encode(mDate);
+    }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.benchmarks;
+
+import com.spoqa.battery.FieldNameTranslator;
+import com.spoqa.battery.ObjectBuilder;
+import com.spoqa.battery.TypeAdapterCollection;
+import com.spoqa.battery.codecs.JsonCodec;
+import com.spoqa.battery.exceptions.DeserializationException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * ObjectBuilder.build over a page of articles bound through a generic @ResponseObject.
+ */
+@State(Scope.Benchmark)
+public class DeserializationBenchmark {
+
+    private static final String CONTENT_TYPE = JsonCodec.MIME_TYPE + "; charset=utf-8";
+
+    /* number of articles in the page */
+    @Param({"1", "50", "1000"})
+    public int size;
+
+    private FieldNameTranslator mTranslator;
+    private TypeAdapterCollection mTypeAdapters;
+    private String mDocument;
+    private byte[] mDocumentBytes;
+
+    @Setup
+    public void setUp() throws UnsupportedEncodingException {
+        mTranslator = Contexts.newTranslator();
+        mTypeAdapters = Contexts.newContext().getTypeAdapters();
+        mDocument = Fixtures.articlePage(size);
+        mDocumentBytes = mDocument.getBytes("UTF-8");
+    }
+
+    @Benchmark
+    public Object buildFromString() throws DeserializationException {
+        Fixtures.ListArticles object = new Fixtures.ListArticles();
+        ObjectBuilder.build(CONTENT_TYPE, mDocument, object, mTranslator, mTypeAdapters);
+        return object;
+    }
+
+    @Benchmark
+    public Object buildFromBytes() throws DeserializationException {
+        Fixtures.ListArticles object = new Fixtures.ListArticles();
+        ObjectBuilder.build(CONTENT_TYPE, mDocumentBytes, object, mTranslator, mTypeAdapters);
+        return object;
+    }
+
+    @Benchmark
+    public Object buildFromStream() throws DeserializationException {
+        Fixtures.ListArticles object = new Fixtures.ListArticles();
+        ObjectBuilder.build(CONTENT_TYPE, new ByteArrayInputStream(mDocumentBytes), object,
+                mTranslator, mTypeAdapters);
+        return object;
+    }
+
+    @Benchmark
+    public Object buildAnnotated() throws DeserializationException {
+        Fixtures.ArticleList object = new Fixtures.ArticleList();
+        ObjectBuilder.build(CONTENT_TYPE, mDocumentBytes, object, mTranslator, mTypeAdapters);
+        return object;
+    }
+
+}
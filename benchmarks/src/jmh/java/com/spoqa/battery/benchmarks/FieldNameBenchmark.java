@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.benchmarks;
+
+import com.spoqa.battery.FieldNameTranslator;
+import com.spoqa.battery.transformers.CamelCaseTransformer;
+import com.spoqa.battery.transformers.PascalCaseTransformer;
+import com.spoqa.battery.transformers.UnderscoreNameTransformer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * Field name translation, as done for every field of every request and response.
+ */
+@State(Scope.Benchmark)
+public class FieldNameBenchmark {
+
+    private String[] mLocalNames;
+    private String[] mRemoteNames;
+    private FieldNameTranslator mTranslator;
+    private CamelCaseTransformer mCamelCase;
+    private PascalCaseTransformer mPascalCase;
+    private UnderscoreNameTransformer mUnderscore;
+
+    @Setup
+    public void setUp() {
+        mTranslator = Contexts.newTranslator();
+        mCamelCase = new CamelCaseTransformer();
+        mPascalCase = new PascalCaseTransformer();
+        mUnderscore = new UnderscoreNameTransformer();
+
+        List<String> names = Fixtures.sampleNames();
+        mLocalNames = names.toArray(new String[names.size()]);
+        mRemoteNames = new String[mLocalNames.length];
+        for (int i = 0; i < mLocalNames.length; ++i)
+            mRemoteNames[i] = mTranslator.localToRemote(mLocalNames[i]);
+    }
+
+    @Benchmark
+    public void localToRemote(Blackhole bh) {
+        for (String name : mLocalNames)
+            bh.consume(mTranslator.localToRemote(name));
+    }
+
+    @Benchmark
+    public void remoteToLocal(Blackhole bh) {
+        for (String name : mRemoteNames)
+            bh.consume(mTranslator.remoteToLocal(name));
+    }
+
+    @Benchmark
+    public void camelCase(Blackhole bh) {
+        for (String name : mLocalNames)
+            bh.consume(mCamelCase.encode(mCamelCase.decode(name)));
+    }
+
+    @Benchmark
+    public void pascalCase(Blackhole bh) {
+        for (String name : mLocalNames)
+            bh.consume(mPascalCase.encode(mCamelCase.decode(name)));
+    }
+
+    @Benchmark
+    public void underscore(Blackhole bh) {
+        for (String name : mRemoteNames)
+            bh.consume(mUnderscore.encode(mUnderscore.decode(name)));
+    }
+
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.benchmarks;
+
+import com.spoqa.battery.HttpRequest;
+import com.spoqa.battery.annotations.QueryString;
+import com.spoqa.battery.annotations.RequestBody;
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.annotations.ResponseObject;
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.annotations.UriPath;
+import com.spoqa.battery.codecs.JsonCodec;
+import com.spoqa.battery.codecs.MultipartFormDataEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Request and response models shared by the benchmarks, and generated response documents.
+ */
+public final class Fixtures {
+
+    public static final String URI_PREFIX = "https://api.example.com/v1";
+
+    public enum Visibility {
+        PUBLIC,
+        PRIVATE
+    }
+
+    public static class Author {
+        public long id;
+        public String displayName;
+        public String avatarUrl;
+    }
+
+    public static class Article {
+        public long id;
+        public String title;
+        public String body;
+        public int commentCount;
+        public double score;
+        public boolean pinned;
+        public Visibility visibility;
+        public Date createdAt;
+        public Author author;
+        public List<String> tags;
+    }
+
+    public static class Page<T> {
+        public List<T> items;
+        public T featured;
+        public int total;
+        public String nextCursor;
+    }
+
+    @RpcObject(uri = "/boards/%1$s/articles")
+    public static class ListArticles {
+        @UriPath(1) public String boardId = "general";
+        @QueryString public String cursor = "c2VlZC0xMjM0NQ==";
+        @QueryString public Integer limit = 50;
+        @QueryString public String query = "battery benchmarks & friends";
+        @QueryString public List<String> tags = Arrays.asList("java", "android", "json");
+
+        @ResponseObject public Page<Article> page;
+    }
+
+    public static class ArticleBody {
+        public String title = "Benchmarking the encode and decode paths";
+        public String body = "Lorem ipsum dolor sit amet, consectetur adipiscing elit.";
+        public Integer commentCount = 12;
+        public Double score = 4.25;
+        public Boolean pinned = true;
+        public Visibility visibility = Visibility.PUBLIC;
+        public List<String> tags = Arrays.asList("java", "android", "json");
+    }
+
+    @RpcObject(method = HttpRequest.Methods.POST, uri = "/articles",
+            requestSerializer = JsonCodec.class)
+    public static class CreateArticleJson {
+        @RequestBody public String title = "Benchmarking the encode and decode paths";
+        @RequestBody public String body = "Lorem ipsum dolor sit amet, consectetur adipiscing elit.";
+        @RequestBody public Integer commentCount = 12;
+        @RequestBody public Double score = 4.25;
+        @RequestBody public Boolean pinned = true;
+        @RequestBody public Visibility visibility = Visibility.PUBLIC;
+        @RequestBody public List<String> tags = Arrays.asList("java", "android", "json");
+        @RequestBody public ArticleBody draft = new ArticleBody();
+    }
+
+    @RpcObject(method = HttpRequest.Methods.POST, uri = "/articles")
+    public static class CreateArticleForm {
+        @RequestBody public String title = "Benchmarking the encode and decode paths";
+        @RequestBody public String body = "Lorem ipsum dolor sit amet, consectetur adipiscing elit.";
+        @RequestBody public Integer commentCount = 12;
+        @RequestBody public Double score = 4.25;
+        @RequestBody public Boolean pinned = true;
+        @RequestBody public Visibility visibility = Visibility.PUBLIC;
+        @RequestBody public List<String> tags = Arrays.asList("java", "android", "json");
+    }
+
+    @RpcObject(method = HttpRequest.Methods.POST, uri = "/articles",
+            requestSerializer = MultipartFormDataEncoder.class)
+    public static class CreateArticleMultipart {
+        @RequestBody public String title = "Benchmarking the encode and decode paths";
+        @RequestBody public String body = "Lorem ipsum dolor sit amet, consectetur adipiscing elit.";
+        @RequestBody public Integer commentCount = 12;
+        @RequestBody public Double score = 4.25;
+        @RequestBody public Boolean pinned = true;
+        @RequestBody public Visibility visibility = Visibility.PUBLIC;
+        @RequestBody public List<String> tags = Arrays.asList("java", "android", "json");
+    }
+
+    @RpcObject(uri = "/articles")
+    public static class ArticleList {
+        @Response public int total;
+        @Response public String nextCursor;
+        @Response public List<Article> items;
+    }
+
+    /**
+     * Builds a page of `count` articles in the document shape of {@link ListArticles}.
+     */
+    public static String articlePage(int count) {
+        StringBuilder sb = new StringBuilder(count * 400 + 128);
+        sb.append("{\"items\":[");
+        for (int i = 0; i < count; ++i) {
+            if (i > 0)
+                sb.append(',');
+            appendArticle(sb, i);
+        }
+        sb.append("],\"featured\":");
+        appendArticle(sb, count);
+        sb.append(",\"total\":").append(count);
+        sb.append(",\"next_cursor\":\"Y3Vyc29yLQ==\"");
+        sb.append(",\"request_id\":\"7f0c3ab2\",\"debug\":{\"elapsed\":[1,2,3],\"host\":\"api-3\"}}");
+        return sb.toString();
+    }
+
+    private static void appendArticle(StringBuilder sb, int i) {
+        sb.append("{\"id\":").append(100000 + i);
+        sb.append(",\"title\":\"Article number ").append(i).append(" with a \\\"quoted\\\" title\"");
+        sb.append(",\"body\":\"Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do ");
+        sb.append("eiusmod tempor incididunt ut labore et dolore magna aliqua. \\u00e9\\u4e00\"");
+        sb.append(",\"comment_count\":").append(i % 97);
+        sb.append(",\"score\":").append(i * 0.25);
+        sb.append(",\"pinned\":").append(i % 10 == 0);
+        sb.append(",\"visibility\":\"").append(i % 3 == 0 ? "private" : "public").append('"');
+        sb.append(",\"created_at\":").append(1420070400000L + i * 60000L);
+        sb.append(",\"author\":{\"id\":").append(i % 50);
+        sb.append(",\"display_name\":\"user").append(i % 50).append('"');
+        sb.append(",\"avatar_url\":\"https://cdn.example.com/avatars/").append(i % 50).append(".png\"}");
+        sb.append(",\"tags\":[\"java\",\"android\",\"json\"]");
+        sb.append(",\"unused\":{\"nested\":[{\"a\":1},{\"b\":[true,false,null]}]}}");
+    }
+
+    public static List<String> sampleNames() {
+        List<String> names = new ArrayList<String>();
+        names.add("id");
+        names.add("displayName");
+        names.add("avatarUrl");
+        names.add("commentCount");
+        names.add("createdAt");
+        names.add("nextCursor");
+        names.add("featuredArticleThumbnailUrl");
+        return names;
+    }
+
+    private Fixtures() {
+    }
+
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.benchmarks;
+
+import com.spoqa.battery.HttpRequest;
+import com.spoqa.battery.RequestFactory;
+import com.spoqa.battery.RpcContext;
+import com.spoqa.battery.exceptions.ContextException;
+import com.spoqa.battery.exceptions.SerializationException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Building HTTP requests from RpcObjects: URI templates, query strings and request bodies.
+ */
+@State(Scope.Benchmark)
+public class RequestBenchmark {
+
+    private RpcContext mContext;
+    private Fixtures.ListArticles mListArticles;
+    private Fixtures.CreateArticleJson mCreateJson;
+    private Fixtures.CreateArticleForm mCreateForm;
+    private Fixtures.CreateArticleMultipart mCreateMultipart;
+    private HttpRequest mListRequest;
+
+    @Setup
+    public void setUp() throws SerializationException, ContextException {
+        mContext = Contexts.newContext();
+        mListArticles = new Fixtures.ListArticles();
+        mCreateJson = new Fixtures.CreateArticleJson();
+        mCreateForm = new Fixtures.CreateArticleForm();
+        mCreateMultipart = new Fixtures.CreateArticleMultipart();
+        mListRequest = RequestFactory.createRequest(mContext, mListArticles);
+    }
+
+    @Benchmark
+    public HttpRequest createGetRequest() throws SerializationException, ContextException {
+        return RequestFactory.createRequest(mContext, mListArticles);
+    }
+
+    @Benchmark
+    public HttpRequest createJsonRequest() throws SerializationException, ContextException {
+        return RequestFactory.createRequest(mContext, mCreateJson);
+    }
+
+    @Benchmark
+    public HttpRequest createFormRequest() throws SerializationException, ContextException {
+        return RequestFactory.createRequest(mContext, mCreateForm);
+    }
+
+    @Benchmark
+    public HttpRequest createMultipartRequest() throws SerializationException, ContextException {
+        return RequestFactory.createRequest(mContext, mCreateMultipart);
+    }
+
+    @Benchmark
+    public String getUri() {
+        return mListRequest.getUri();
+    }
+
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.benchmarks;
+
+import com.spoqa.battery.FieldNameTranslator;
+import com.spoqa.battery.TypeAdapterCollection;
+import com.spoqa.battery.codecs.JsonCodec;
+import com.spoqa.battery.codecs.MultipartFormDataEncoder;
+import com.spoqa.battery.codecs.UrlEncodedFormEncoder;
+import com.spoqa.battery.exceptions.SerializationException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Request body encoders, without the surrounding request building.
+ */
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    private FieldNameTranslator mTranslator;
+    private TypeAdapterCollection mTypeAdapters;
+    private Fixtures.CreateArticleJson mJsonBody;
+    private Fixtures.CreateArticleForm mFormBody;
+    private Fixtures.CreateArticleMultipart mMultipartBody;
+
+    @Setup
+    public void setUp() {
+        mTranslator = Contexts.newTranslator();
+        mTypeAdapters = Contexts.newContext().getTypeAdapters();
+        mJsonBody = new Fixtures.CreateArticleJson();
+        mFormBody = new Fixtures.CreateArticleForm();
+        mMultipartBody = new Fixtures.CreateArticleMultipart();
+    }
+
+    @Benchmark
+    public byte[] json() throws SerializationException {
+        return new JsonCodec().serializeObject(mJsonBody, mTranslator, mTypeAdapters);
+    }
+
+    @Benchmark
+    public byte[] urlEncodedForm() throws SerializationException {
+        return new UrlEncodedFormEncoder().serializeObject(mFormBody, mTranslator, mTypeAdapters);
+    }
+
+    @Benchmark
+    public byte[] multipartFormData() throws SerializationException {
+        return new MultipartFormDataEncoder().serializeObject(mMultipartBody, mTranslator, mTypeAdapters);
+    }
+
+}
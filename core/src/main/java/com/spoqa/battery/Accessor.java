@@ -0,0 +1,27 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Reads and writes one member of an object: a public field, a getter or a setter. Getters
+ * can only be read and setters can only be written.
+ *
+ * The primitive setters store without boxing where the member type allows it, and fall
+ * back to set() otherwise.
+ */
+public interface Accessor {
+
+    public Object get(Object target) throws IllegalAccessException, InvocationTargetException;
+    public void set(Object target, Object value) throws IllegalAccessException, InvocationTargetException;
+
+    public void setInt(Object target, int value) throws IllegalAccessException, InvocationTargetException;
+    public void setLong(Object target, long value) throws IllegalAccessException, InvocationTargetException;
+    public void setFloat(Object target, float value) throws IllegalAccessException, InvocationTargetException;
+    public void setDouble(Object target, double value) throws IllegalAccessException, InvocationTargetException;
+    public void setBoolean(Object target, boolean value) throws IllegalAccessException, InvocationTargetException;
+
+}
@@ -0,0 +1,19 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Creates accessors for members not covered by a generated {@link ObjectAdapter}. Installed
+ * with {@link ReflectionCache#setAccessorFactory(AccessorFactory)}.
+ */
+public interface AccessorFactory {
+
+    public Accessor newAccessor(Field field);
+    public Accessor newAccessor(Method method);
+
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.exceptions.SerializationException;
+
+import java.util.List;
+
+/**
+ * Packs several calls into one request to a batch endpoint of the server, and splits its
+ * response back into a response per call. Used by
+ * {@link RpcContext#invokeAll(java.util.List, int, Object)} once set with
+ * {@link RpcContext#setBatchCodec(BatchCodec)}.
+ */
+public interface BatchCodec {
+
+    public static final class Part {
+        public final int statusCode;
+        public final String contentType;
+        public final byte[] body;
+
+        public Part(int statusCode, String contentType, byte[] body) {
+            this.statusCode = statusCode;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    /* whether the call built for rpcObject may be sent in a batch */
+    public boolean accepts(Object rpcObject, HttpRequest request);
+
+    /* most calls packed into one batch, or 0 for no limit */
+    public int maxBatchSize();
+
+    public HttpRequest encode(List<HttpRequest> requests) throws SerializationException;
+
+    /* one part for each of requests, in the same order */
+    public List<Part> decode(String contentType, byte[] body, List<HttpRequest> requests)
+            throws DeserializationException;
+
+}
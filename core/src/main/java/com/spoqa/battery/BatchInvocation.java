@@ -0,0 +1,304 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.exceptions.ResponseValidationException;
+import com.spoqa.battery.exceptions.RpcException;
+import com.spoqa.battery.exceptions.SerializationException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+import rx.Observable;
+import rx.Subscriber;
+
+/**
+ * Runs the calls of {@link RpcContext#invokeAll(List, int, Object)} for a subscriber: at most
+ * maxConcurrency requests at a time, each of them a single call or a batch of calls packed by
+ * the {@link BatchCodec} of the context.
+ */
+final class BatchInvocation<C, T> implements Observable.OnSubscribe<T> {
+    private static final String TAG = "BatchInvocation";
+
+    /* told when an exception handler took over the error of a call, which is not delivered */
+    interface HandledErrorListener {
+        public void onErrorHandled(Throwable error);
+    }
+
+    private final RpcContext<C> mContext;
+    private final List<T> mRpcObjects;
+    private final int mMaxConcurrency;
+    private final C mFrontendContext;
+
+    public BatchInvocation(RpcContext<C> context, List<? extends T> rpcObjects, int maxConcurrency,
+                           C frontendContext) {
+        mContext = context;
+        mRpcObjects = new ArrayList<T>(rpcObjects);
+        mMaxConcurrency = Math.max(maxConcurrency, 1);
+        mFrontendContext = frontendContext;
+    }
+
+    @Override
+    public void call(Subscriber<? super T> subscriber) {
+        new Run(subscriber).start();
+    }
+
+    /* the state of one subscription */
+    private final class Run {
+        private final Subscriber<? super T> mSubscriber;
+        private final Queue<Unit> mPending;
+        private int mRunning;
+        private int mRemaining;
+        private boolean mTerminated;
+
+        public Run(Subscriber<? super T> subscriber) {
+            mSubscriber = subscriber;
+            mPending = new ArrayDeque<Unit>();
+            mRemaining = mRpcObjects.size();
+        }
+
+        public void start() {
+            BatchCodec codec = mContext.getBatchCodec();
+            List<Item> batched = new ArrayList<Item>();
+
+            for (T rpcObject : mRpcObjects) {
+                Item item = new Item(rpcObject);
+                if (codec == null) {
+                    mPending.add(new Unit(item));
+                    continue;
+                }
+
+                /* failures are reported to the item */
+                item.request = mContext.createRequest(rpcObject, item);
+                if (item.request == null)
+                    continue;
+
+                if (codec.accepts(rpcObject, item.request))
+                    batched.add(item);
+                else
+                    mPending.add(new Unit(item));
+            }
+
+            int batchSize = codec != null && codec.maxBatchSize() > 0 ?
+                    codec.maxBatchSize() : Integer.MAX_VALUE;
+            for (int i = 0; i < batched.size(); i += batchSize) {
+                List<Item> items = batched.subList(i, Math.min(i + batchSize, batched.size()));
+                mPending.add(items.size() > 1 ? new Unit(items) : new Unit(items.get(0)));
+            }
+
+            synchronized (this) {
+                if (mRemaining == 0 && !mTerminated) {
+                    mTerminated = true;
+                    mSubscriber.onCompleted();
+                }
+            }
+
+            startPending();
+        }
+
+        private void startPending() {
+            while (true) {
+                Unit unit;
+                synchronized (this) {
+                    if (mTerminated || mSubscriber.isUnsubscribed() || mRunning >= mMaxConcurrency ||
+                            mPending.isEmpty())
+                        return;
+                    unit = mPending.remove();
+                    ++mRunning;
+                }
+
+                unit.send();
+            }
+        }
+
+        /* rpcObject is null if the call failed, or its error was handled */
+        private void itemDone(Unit unit, T rpcObject, Throwable error) {
+            synchronized (this) {
+                if (!mTerminated) {
+                    if (error != null) {
+                        mTerminated = true;
+                        mSubscriber.onError(error);
+                    } else {
+                        if (rpcObject != null)
+                            mSubscriber.onNext(rpcObject);
+                        if (--mRemaining == 0) {
+                            mTerminated = true;
+                            mSubscriber.onCompleted();
+                        }
+                    }
+                }
+
+                /* a unit which never started has nothing running to release */
+                if (unit == null || --unit.remaining > 0)
+                    return;
+                --mRunning;
+            }
+
+            startPending();
+        }
+
+        /* a single call, or a batch of calls sent in one request */
+        private final class Unit {
+            public final List<Item> items;
+            public int remaining;
+
+            public Unit(Item item) {
+                this(Collections.singletonList(item));
+            }
+
+            public Unit(List<Item> items) {
+                this.items = new ArrayList<Item>(items);
+                this.remaining = this.items.size();
+                for (Item item : this.items)
+                    item.unit = this;
+            }
+
+            public void send() {
+                if (items.size() == 1) {
+                    /* the request has been built already if the context has a codec */
+                    Item item = items.get(0);
+                    if (item.request != null)
+                        mContext.invokeRequest(item.rpcObject, item.request, item, mFrontendContext);
+                    else
+                        mContext.invokeAsync(item.rpcObject, item, mFrontendContext);
+                    return;
+                }
+
+                List<HttpRequest> requests = new ArrayList<HttpRequest>(items.size());
+                for (Item item : items)
+                    requests.add(item.request);
+
+                HttpRequest batch;
+                try {
+                    batch = mContext.getBatchCodec().encode(requests);
+                } catch (SerializationException e) {
+                    for (Item item : items)
+                        item.onFailure(e);
+                    return;
+                } catch (RuntimeException e) {
+                    Logger.error(TAG, "Error while encoding batch request: " + e);
+                    for (Item item : items)
+                        item.onFailure(e);
+                    return;
+                }
+
+                mContext.sendRequest(batch, new RpcContext.RawResponseHandler() {
+                    @Override
+                    public void onResponse(int statusCode, String contentType, byte[] body) {
+                        deliverBatch(statusCode, contentType, body);
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable why) {
+                        Logger.error(TAG, "Error while batch call: " + why.getMessage());
+                        mContext.runOnCallbackThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                for (Item item : items)
+                                    mContext.deliverResponse(mFrontendContext, item.rpcObject, why, item);
+                            }
+                        });
+                    }
+                });
+            }
+
+            /* decodes every part on the thread the response arrived on, then delivers them */
+            private void deliverBatch(int statusCode, String contentType, byte[] body) {
+                final Throwable[] errors = new Throwable[items.size()];
+                List<BatchCodec.Part> parts = null;
+
+                if (statusCode < 200 || statusCode >= 300) {
+                    Logger.error(TAG, "Error while batch call: HTTP " + statusCode);
+                    Arrays.fill(errors, new RpcException(String.format(
+                            "Server responded with HTTP %1$d", statusCode)));
+                } else {
+                    List<HttpRequest> requests = new ArrayList<HttpRequest>(items.size());
+                    for (Item item : items)
+                        requests.add(item.request);
+
+                    try {
+                        parts = mContext.getBatchCodec().decode(contentType, body, requests);
+                        if (parts.size() != items.size())
+                            throw new DeserializationException(new RpcException(String.format(
+                                    "Batch response has %1$d parts for %2$d calls", parts.size(),
+                                    items.size())));
+                    } catch (DeserializationException e) {
+                        Arrays.fill(errors, e);
+                        parts = null;
+                    } catch (RuntimeException e) {
+                        /* thrown on the transport's thread, where nothing would deliver the items */
+                        Logger.error(TAG, "Error while decoding batch response: " + e);
+                        Arrays.fill(errors, e);
+                        parts = null;
+                    }
+                }
+
+                for (int i = 0; parts != null && i < parts.size(); ++i) {
+                    BatchCodec.Part part = parts.get(i);
+                    Item item = items.get(i);
+                    if (part.statusCode < 200 || part.statusCode >= 300) {
+                        errors[i] = new RpcException(String.format("Server responded with HTTP %1$d",
+                                part.statusCode));
+                        continue;
+                    }
+
+                    try {
+                        mContext.decodeResponse(item.rpcObject, item.request, part.contentType, part.body);
+                    } catch (DeserializationException e) {
+                        errors[i] = e;
+                    } catch (ResponseValidationException e) {
+                        errors[i] = e;
+                    } catch (RuntimeException e) {
+                        /* e.g. from a ResponseValidator, or an accessor given a value it cannot take */
+                        Logger.error(TAG, "Error while decoding batch response: " + e);
+                        errors[i] = e;
+                    }
+                }
+
+                mContext.runOnCallbackThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < items.size(); ++i) {
+                            Item item = items.get(i);
+                            mContext.deliverResponse(mFrontendContext, item.rpcObject, errors[i], item);
+                        }
+                    }
+                });
+            }
+        }
+
+        /* receives the outcome of one call */
+        private final class Item implements OnResponse<T>, HandledErrorListener {
+            public final T rpcObject;
+            public HttpRequest request;
+            public Unit unit;
+
+            public Item(T rpcObject) {
+                this.rpcObject = rpcObject;
+            }
+
+            @Override
+            public void onResponse(T responseBody) {
+                itemDone(unit, responseBody, null);
+            }
+
+            @Override
+            public void onFailure(Throwable why) {
+                itemDone(unit, null, why);
+            }
+
+            @Override
+            public void onErrorHandled(Throwable error) {
+                itemDone(unit, null, null);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,513 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.Response;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-resolved description of how a response document binds into a class.
+ *
+ * A plan is compiled once per (class, generic arguments, name translator) and cached in
+ * {@link ReflectionCache}, so that {@link ObjectBuilder} only walks a flat array of binders
+ * for every object it decodes.
+ */
+final class BindingPlan {
+
+    public enum Kind {
+        STRING,
+        INTEGER,
+        INTEGER_BOXED,
+        LONG,
+        LONG_BOXED,
+        FLOAT,
+        FLOAT_BOXED,
+        DOUBLE,
+        DOUBLE_BOXED,
+        BOOLEAN,
+        BOOLEAN_BOXED,
+        COLLECTION,
+        MAP,
+        ENUM,
+        INT_ARRAY,
+        LONG_ARRAY,
+        DOUBLE_ARRAY,
+        ARRAY,
+        OBJECT,
+        IGNORED
+    }
+
+    public static final class Binder {
+        /* name of the field (or normalized name of the setter) */
+        public String localName;
+        /* key looked up in the document */
+        public String remoteName;
+        /* untransformed name to fall back to, or null if there is none */
+        public String fallbackName;
+        /* segments of an explicit dotted path, or null */
+        public String[] path;
+        public boolean explicit;
+        public boolean required;
+        public Kind kind;
+        public Class type;
+        public Type genericType;
+        /* the value of a COLLECTION, MAP or ARRAY binder, down to its elements */
+        public Element value;
+        /* type arguments of a nested object */
+        public Type[] typeArguments;
+        /* exactly one of field and setter is set */
+        public Field field;
+        public Method setter;
+        /* writes the field or calls the setter */
+        public Accessor accessor;
+    }
+
+    /**
+     * How a value nested in collections, maps and arrays is decoded. Containers describe
+     * their elements (or map values) with an Element of their own.
+     */
+    public static final class Element {
+        public Kind kind;
+        public Class type;
+        /* type arguments of a nested object */
+        public Type[] typeArguments;
+        /* elements of a collection or an array, or values of a map */
+        public Element element;
+        /* key type of a map */
+        public Class keyType;
+        /* exactly one of them is set for a creatable COLLECTION or MAP, respectively */
+        public CollectionFactory collectionFactory;
+        public MapFactory mapFactory;
+    }
+
+    public static final class Key {
+        private final boolean mFilterByAnnotation;
+        private final Type[] mGenericTypes;
+        private final FieldNameTranslator mTranslator;
+        private final int mHashCode;
+
+        public Key(boolean filterByAnnotation, Type[] genericTypes, FieldNameTranslator translator) {
+            mFilterByAnnotation = filterByAnnotation;
+            mGenericTypes = genericTypes;
+            mTranslator = translator;
+            mHashCode = 31 * (31 * (filterByAnnotation ? 1 : 0) + Arrays.hashCode(genericTypes)) +
+                    (translator != null ? translator.hashCode() : 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(Object other_) {
+            if (!(other_ instanceof Key))
+                return false;
+
+            Key other = (Key) other_;
+            return other.mFilterByAnnotation == mFilterByAnnotation &&
+                    Arrays.equals(other.mGenericTypes, mGenericTypes) &&
+                    (other.mTranslator == null ? mTranslator == null : other.mTranslator.equals(mTranslator));
+        }
+    }
+
+    /**
+     * A document key consumed by a binder, or descended into by dotted paths. Keys matching
+     * the remote name take precedence over the untransformed fallback name and over dotted
+     * path descents.
+     */
+    public static final class Slot {
+        public static final int PRECEDENCE_INDIRECT = 1;
+        public static final int PRECEDENCE_EXACT = 2;
+
+        /* null if the slot descends into path */
+        public final Binder binder;
+        /* position of the binder in binders() */
+        public final int index;
+        public final int precedence;
+        /* dotted paths continuing below the key, or null */
+        public final PathNode path;
+
+        private Slot(Binder binder, int index, int precedence) {
+            this.binder = binder;
+            this.index = index;
+            this.precedence = precedence;
+            this.path = null;
+        }
+
+        private Slot(PathNode path) {
+            this.binder = null;
+            this.index = -1;
+            this.precedence = PRECEDENCE_INDIRECT;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Node of the trie of dotted paths of a class, reached by following segments from the
+     * document root. Every dotted path is then found in one walk, whichever fields share
+     * its segments.
+     */
+    public static final class PathNode {
+        /* binders whose path ends here, or null */
+        public Slot[] leaves;
+        /* nodes of the following segments, or null */
+        public Map<String, PathNode> children;
+
+        private PathNode child(String segment) {
+            if (children == null)
+                children = new HashMap<String, PathNode>(4);
+
+            PathNode node = children.get(segment);
+            if (node == null) {
+                node = new PathNode();
+                children.put(segment, node);
+            }
+            return node;
+        }
+
+        private void addLeaf(Slot slot) {
+            if (leaves == null) {
+                leaves = new Slot[] { slot };
+            } else {
+                leaves = Arrays.copyOf(leaves, leaves.length + 1);
+                leaves[leaves.length - 1] = slot;
+            }
+        }
+    }
+
+    private final Binder[] mBinders;
+    private final Map<String, Slot[]> mSlots;
+    /* root of the dotted paths, or null if no binder has one */
+    private final PathNode mPaths;
+
+    private BindingPlan(Binder[] binders) {
+        mBinders = binders;
+
+        Map<String, List<Slot>> slots = new HashMap<String, List<Slot>>();
+        PathNode paths = null;
+        for (int i = 0; i < binders.length; ++i) {
+            Binder b = binders[i];
+            addSlot(slots, b.remoteName, new Slot(b, i, Slot.PRECEDENCE_EXACT));
+            if (b.fallbackName != null)
+                addSlot(slots, b.fallbackName, new Slot(b, i, Slot.PRECEDENCE_INDIRECT));
+            if (b.path != null) {
+                if (paths == null)
+                    paths = new PathNode();
+
+                PathNode node = paths;
+                for (String segment : b.path)
+                    node = node.child(segment);
+                node.addLeaf(new Slot(b, i, Slot.PRECEDENCE_INDIRECT));
+            }
+        }
+        mPaths = paths;
+
+        /* one descending slot per first segment, however many paths start with it */
+        if (paths != null) {
+            for (Map.Entry<String, PathNode> e : paths.children.entrySet())
+                addSlot(slots, e.getKey(), new Slot(e.getValue()));
+        }
+
+        mSlots = new HashMap<String, Slot[]>(slots.size() * 2);
+        for (Map.Entry<String, List<Slot>> e : slots.entrySet())
+            mSlots.put(e.getKey(), e.getValue().toArray(new Slot[e.getValue().size()]));
+    }
+
+    private static void addSlot(Map<String, List<Slot>> slots, String name, Slot slot) {
+        List<Slot> list = slots.get(name);
+        if (list == null) {
+            list = new ArrayList<Slot>(1);
+            slots.put(name, list);
+        }
+        list.add(slot);
+    }
+
+    public Binder[] binders() {
+        return mBinders;
+    }
+
+    /* binders consuming the given document key, or null if the key is not bound */
+    public Slot[] slots(String name) {
+        return mSlots.get(name);
+    }
+
+    /* the root of the trie of dotted paths, whose children are first segments, or null */
+    public PathNode paths() {
+        return mPaths;
+    }
+
+    public static BindingPlan obtain(ReflectionCache cache, Class clazz, Type[] genericTypes,
+                                     FieldNameTranslator translator, boolean filterByAnnotation) {
+        Key key = new Key(filterByAnnotation, genericTypes, translator);
+        BindingPlan plan = cache.queryBindingPlan(clazz, key);
+        if (plan == null) {
+            plan = compile(cache, clazz, genericTypes, translator, filterByAnnotation);
+            cache.cacheBindingPlan(clazz, key, plan);
+        }
+
+        return plan;
+    }
+
+    private static BindingPlan compile(ReflectionCache cache, Class clazz, Type[] genericTypes,
+                                       FieldNameTranslator translator, boolean filterByAnnotation) {
+        List<Field> fields;
+        List<Method> setters;
+
+        if (filterByAnnotation) {
+            fields = CodecUtils.getAnnotatedFields(cache, Response.class, clazz);
+            setters = CodecUtils.getAnnotatedSetterMethods(cache, Response.class, clazz);
+        } else {
+            fields = CodecUtils.getAllFields(cache, clazz);
+            setters = CodecUtils.getAllSetterMethods(cache, clazz);
+        }
+
+        TypeVariable[] tvs = clazz.getTypeParameters();
+        List<Binder> binders = new ArrayList<Binder>(fields.size() + setters.size());
+
+        for (Field f : fields) {
+            Binder b = new Binder();
+            b.field = f;
+            b.accessor = cache.getAccessor(clazz, f);
+            b.localName = f.getName();
+            b.genericType = resolveType(f.getGenericType(), tvs, genericTypes);
+            describe(cache, b, cache.getFieldAnnotation(f, Response.class), translator, tvs,
+                    genericTypes);
+            binders.add(b);
+        }
+
+        for (Method m : setters) {
+            Binder b = new Binder();
+            b.setter = m;
+            b.accessor = cache.getAccessor(clazz, m);
+            b.localName = CodecUtils.normalizeSetterName(m.getName());
+            b.genericType = resolveType(m.getGenericParameterTypes()[0], tvs, genericTypes);
+            describe(cache, b, cache.getMethodAnnotation(m, Response.class), translator, tvs,
+                    genericTypes);
+            binders.add(b);
+        }
+
+        return new BindingPlan(binders.toArray(new Binder[binders.size()]));
+    }
+
+    private static void describe(ReflectionCache cache, Binder b, Response annotation,
+                                 FieldNameTranslator translator, TypeVariable[] tvs,
+                                 Type[] genericTypes) {
+        if (annotation != null) {
+            b.required = annotation.required();
+            if (annotation.value().length() > 0) {
+                b.remoteName = annotation.value();
+                b.explicit = true;
+            }
+        }
+
+        if (b.remoteName == null) {
+            b.remoteName = translator.localToRemote(b.localName);
+            if (!b.remoteName.equals(b.localName))
+                b.fallbackName = b.localName;
+        } else if (b.remoteName.contains(".")) {
+            b.path = StringUtils.splitPath(b.remoteName);
+        }
+
+        b.type = rawType(b.genericType);
+        b.kind = kindOf(b.type);
+
+        if (b.kind == Kind.COLLECTION || b.kind == Kind.MAP || b.kind == Kind.ARRAY) {
+            b.value = describeElement(cache, b.genericType, tvs, genericTypes);
+        } else if (b.kind == Kind.OBJECT && b.genericType instanceof ParameterizedType) {
+            Type[] args = ((ParameterizedType) b.genericType).getActualTypeArguments();
+            b.typeArguments = new Type[args.length];
+            for (int i = 0; i < args.length; ++i)
+                b.typeArguments[i] = resolveType(args[i], tvs, genericTypes);
+        }
+    }
+
+    private static Element describeElement(ReflectionCache cache, Type type, TypeVariable[] tvs,
+                                           Type[] genericTypes) {
+        Type resolved = resolveType(type, tvs, genericTypes);
+
+        Element e = new Element();
+        e.type = rawType(resolved);
+        e.kind = kindOf(e.type);
+
+        switch (e.kind) {
+            case COLLECTION:
+                Type[] elementArgs = supertypeArguments(resolved, Collection.class);
+                e.element = describeElement(cache, elementArgs != null ? elementArgs[0] : Object.class,
+                        tvs, genericTypes);
+                e.collectionFactory = cache.getCollectionFactory(e.type);
+                break;
+            case MAP:
+                Type[] mapArgs = supertypeArguments(resolved, Map.class);
+                e.keyType = rawType(resolveType(mapArgs != null ? mapArgs[0] : Object.class,
+                        tvs, genericTypes));
+                e.element = describeElement(cache, mapArgs != null ? mapArgs[1] : Object.class,
+                        tvs, genericTypes);
+                e.mapFactory = cache.getMapFactory(e.type);
+                if (e.mapFactory == MapFactory.OPEN_ADDRESSING && e.keyType != String.class &&
+                        e.keyType != Object.class) {
+                    /* keys converted to numbers or enums do not fit a StringHashMap */
+                    e.mapFactory = MapFactories.HASH_MAP;
+                }
+                break;
+            case ARRAY:
+                Type component = resolved instanceof GenericArrayType ?
+                        ((GenericArrayType) resolved).getGenericComponentType() :
+                        e.type.getComponentType();
+                e.element = describeElement(cache, component, tvs, genericTypes);
+                break;
+            case OBJECT:
+                if (resolved instanceof ParameterizedType) {
+                    Type[] args = ((ParameterizedType) resolved).getActualTypeArguments();
+                    e.typeArguments = new Type[args.length];
+                    for (int i = 0; i < args.length; ++i)
+                        e.typeArguments[i] = resolveType(args[i], tvs, genericTypes);
+                }
+                break;
+        }
+
+        return e;
+    }
+
+    private static Kind kindOf(Class type) {
+        if (CodecUtils.isString(type))
+            return Kind.STRING;
+        else if (CodecUtils.isIntegerPrimitive(type))
+            return Kind.INTEGER;
+        else if (CodecUtils.isIntegerBoxed(type))
+            return Kind.INTEGER_BOXED;
+        else if (CodecUtils.isLongPrimitive(type))
+            return Kind.LONG;
+        else if (CodecUtils.isLongBoxed(type))
+            return Kind.LONG_BOXED;
+        else if (Collection.class.isAssignableFrom(type))
+            return Kind.COLLECTION;
+        else if (Map.class.isAssignableFrom(type))
+            return Kind.MAP;
+        else if (CodecUtils.isBooleanPrimitive(type))
+            return Kind.BOOLEAN;
+        else if (CodecUtils.isBooleanBoxed(type))
+            return Kind.BOOLEAN_BOXED;
+        else if (CodecUtils.isFloatPrimitive(type))
+            return Kind.FLOAT;
+        else if (CodecUtils.isFloatBoxed(type))
+            return Kind.FLOAT_BOXED;
+        else if (CodecUtils.isDoublePrimitive(type))
+            return Kind.DOUBLE;
+        else if (CodecUtils.isDoubleBoxed(type))
+            return Kind.DOUBLE_BOXED;
+        else if (type.isEnum())
+            return Kind.ENUM;
+        else if (type == int[].class)
+            return Kind.INT_ARRAY;
+        else if (type == long[].class)
+            return Kind.LONG_ARRAY;
+        else if (type == double[].class)
+            return Kind.DOUBLE_ARRAY;
+        else if (type.isArray() && isArrayElement(type.getComponentType()))
+            return Kind.ARRAY;
+        else if (type.isPrimitive() || type.isArray() || CodecUtils.shouldBeExcluded(type))
+            return Kind.IGNORED;
+        else
+            return Kind.OBJECT;
+    }
+
+    /* primitive components other than these have no conversion, and int, long and double
+       arrays are kinds of their own */
+    private static boolean isArrayElement(Class component) {
+        return !component.isPrimitive() || component == boolean.class || component == float.class;
+    }
+
+    /**
+     * Substitutes type variables declared by the bound class with the given arguments.
+     */
+    static Type resolveType(Type type, TypeVariable[] tvs, Type[] genericTypes) {
+        if (!(type instanceof TypeVariable) || genericTypes == null)
+            return type;
+
+        for (int i = 0; i < tvs.length && i < genericTypes.length; ++i) {
+            if (type.equals(tvs[i]))
+                return genericTypes[i];
+        }
+
+        return type;
+    }
+
+    /**
+     * Type arguments the given type passes to target, one of its generic superclasses or
+     * interfaces: {String, V} for StringHashMap<V> and Map, for instance. Returns null if the
+     * type does not extend target.
+     */
+    static Type[] supertypeArguments(Type type, Class target) {
+        Type[] args = type instanceof ParameterizedType ?
+                ((ParameterizedType) type).getActualTypeArguments() : null;
+        return supertypeArguments(rawType(type), args, target);
+    }
+
+    private static Type[] supertypeArguments(Class clazz, Type[] args, Class target) {
+        TypeVariable[] tvs = clazz.getTypeParameters();
+        if (clazz == target) {
+            Type[] output = new Type[tvs.length];
+            for (int i = 0; i < tvs.length; ++i)
+                output[i] = args != null && i < args.length ? args[i] : Object.class;
+            return output;
+        }
+
+        List<Type> supertypes = new ArrayList<Type>();
+        if (clazz.getGenericSuperclass() != null)
+            supertypes.add(clazz.getGenericSuperclass());
+        supertypes.addAll(Arrays.asList(clazz.getGenericInterfaces()));
+
+        for (Type supertype : supertypes) {
+            Class raw = rawType(supertype);
+            if (!target.isAssignableFrom(raw))
+                continue;
+
+            Type[] superArgs = null;
+            if (supertype instanceof ParameterizedType) {
+                superArgs = ((ParameterizedType) supertype).getActualTypeArguments().clone();
+                for (int i = 0; i < superArgs.length; ++i)
+                    superArgs[i] = resolveType(superArgs[i], tvs, args);
+            }
+
+            return supertypeArguments(raw, superArgs, target);
+        }
+
+        return null;
+    }
+
+    static Class rawType(Type type) {
+        if (type instanceof Class) {
+            return (Class) type;
+        } else if (type instanceof ParameterizedType) {
+            return (Class) ((ParameterizedType) type).getRawType();
+        } else if (type instanceof GenericArrayType) {
+            Class component = rawType(((GenericArrayType) type).getGenericComponentType());
+            return java.lang.reflect.Array.newInstance(component, 0).getClass();
+        } else if (type instanceof TypeVariable) {
+            Type[] bounds = ((TypeVariable) type).getBounds();
+            return bounds.length > 0 ? rawType(bounds[0]) : Object.class;
+        } else if (type instanceof WildcardType) {
+            Type[] bounds = ((WildcardType) type).getUpperBounds();
+            return bounds.length > 0 ? rawType(bounds[0]) : Object.class;
+        }
+
+        return Object.class;
+    }
+
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.fields.Rfc1123DateAdapter;
+
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * What the caching headers of a response allow a private cache to do with it, following
+ * RFC 7234 and the stale-while-revalidate extension of RFC 5861. Responses are fresh for
+ * max-age, or else for the time between Date and Expires; no heuristic freshness is applied.
+ */
+final class CacheHeaders {
+    private static final String TAG = "CacheHeaders";
+
+    public static final String HEADER_CACHE_CONTROL = "Cache-Control";
+    public static final String HEADER_DATE = "Date";
+    public static final String HEADER_EXPIRES = "Expires";
+    public static final String HEADER_AGE = "Age";
+    public static final String HEADER_ETAG = "ETag";
+    public static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    public static final String HEADER_VARY = "Vary";
+    public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    public static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private static final Rfc1123DateAdapter sHttpDate = new Rfc1123DateAdapter(TimeZone.getTimeZone("GMT"));
+
+    private boolean mNoStore;
+    /* whether freshness is stated at all; a 304 without it keeps that of the stored response */
+    private boolean mExplicitFreshness;
+    private long mDate;
+    private long mMaxAge;
+    private long mStaleWhileRevalidate;
+    private String mContentType;
+    private String mETag;
+    private String mLastModified;
+
+    private CacheHeaders() {
+
+    }
+
+    /**
+     * @param maxAge seconds overriding the freshness stated by the headers, or -1
+     * @param staleWhileRevalidate seconds overriding stale-while-revalidate, or -1
+     * @param now epoch milliseconds the response was received at
+     */
+    public static CacheHeaders parse(Map<String, String> headers, int maxAge, int staleWhileRevalidate,
+                                     long now) {
+        CacheHeaders h = new CacheHeaders();
+        h.mContentType = header(headers, HttpRequest.HEADER_CONTENT_TYPE);
+        h.mETag = header(headers, HEADER_ETAG);
+        h.mLastModified = header(headers, HEADER_LAST_MODIFIED);
+
+        /* the response was this many seconds old when it arrived */
+        long age = parseSeconds(header(headers, HEADER_AGE));
+        h.mDate = now - Math.max(age, 0) * 1000;
+
+        long headerMaxAge = -1;
+        long headerStaleWhileRevalidate = 0;
+        boolean noCache = false, mustRevalidate = false;
+
+        String cacheControl = header(headers, HEADER_CACHE_CONTROL);
+        if (cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                directive = directive.trim();
+                String value = null;
+                int equals = directive.indexOf('=');
+                if (equals >= 0) {
+                    value = directive.substring(equals + 1).trim();
+                    directive = directive.substring(0, equals).trim();
+                    if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\""))
+                        value = value.substring(1, value.length() - 1);
+                }
+
+                if (directive.equalsIgnoreCase("no-store"))
+                    h.mNoStore = true;
+                else if (directive.equalsIgnoreCase("no-cache"))
+                    noCache = true;
+                else if (directive.equalsIgnoreCase("must-revalidate"))
+                    mustRevalidate = true;
+                else if (directive.equalsIgnoreCase("max-age"))
+                    headerMaxAge = parseSeconds(value);
+                else if (directive.equalsIgnoreCase("stale-while-revalidate"))
+                    headerStaleWhileRevalidate = Math.max(parseSeconds(value), 0);
+            }
+        }
+
+        String expires = header(headers, HEADER_EXPIRES);
+        h.mExplicitFreshness = noCache || headerMaxAge >= 0 || expires != null;
+
+        if (noCache) {
+            headerMaxAge = 0;
+        } else if (headerMaxAge < 0 && expires != null) {
+            /* measured against Date rather than the local clock, which may be off */
+            long expiresAt = parseDate(expires);
+            long date = parseDate(header(headers, HEADER_DATE));
+            headerMaxAge = expiresAt >= 0 ? Math.max(expiresAt - (date >= 0 ? date : now), 0) / 1000 : 0;
+        }
+
+        if (mustRevalidate)
+            headerStaleWhileRevalidate = 0;
+
+        h.mMaxAge = (maxAge >= 0 ? maxAge : Math.max(headerMaxAge, 0)) * 1000L;
+        h.mStaleWhileRevalidate = (staleWhileRevalidate >= 0 ? staleWhileRevalidate :
+                headerStaleWhileRevalidate) * 1000L;
+        if (maxAge >= 0 || staleWhileRevalidate >= 0)
+            h.mExplicitFreshness = true;
+
+        /* the response differs by request headers this cache does not key on */
+        String vary = header(headers, HEADER_VARY);
+        if (vary != null && !vary.trim().isEmpty() && !vary.trim().equalsIgnoreCase("Accept-Encoding"))
+            h.mNoStore = true;
+
+        return h;
+    }
+
+    /* whether storing the response is both allowed and of any use */
+    public boolean isStorable() {
+        return !mNoStore && (mMaxAge > 0 || mStaleWhileRevalidate > 0 || mETag != null ||
+                mLastModified != null);
+    }
+
+    public ResponseCache.Entry createEntry(byte[] body) {
+        return new ResponseCache.Entry(body, mContentType, mETag, mLastModified, mDate, mMaxAge,
+                mStaleWhileRevalidate);
+    }
+
+    /* the stored entry updated by the headers of a 304 response revalidating it */
+    public ResponseCache.Entry refresh(ResponseCache.Entry entry) {
+        return new ResponseCache.Entry(entry.body(), entry.contentType(),
+                mETag != null ? mETag : entry.etag(),
+                mLastModified != null ? mLastModified : entry.lastModified(),
+                mDate,
+                mExplicitFreshness ? mMaxAge : entry.maxAge(),
+                mExplicitFreshness ? mStaleWhileRevalidate : entry.staleWhileRevalidate());
+    }
+
+    /* header names are case-insensitive, unlike the keys of most maps transports hand over */
+    public static String header(Map<String, String> headers, String name) {
+        String value = headers.get(name);
+        if (value != null)
+            return value;
+
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey()))
+                return entry.getValue();
+        }
+
+        return null;
+    }
+
+    private static long parseSeconds(String s) {
+        if (s == null)
+            return -1;
+
+        try {
+            return Long.parseLong(s.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /* epoch milliseconds, or -1; invalid dates such as "0" stand for the past */
+    private static long parseDate(String s) {
+        if (s == null)
+            return -1;
+
+        try {
+            return sHttpDate.decode(s.trim()).getTime();
+        } catch (DeserializationException e) {
+            Logger.debug(TAG, String.format("Invalid HTTP date \"%1$s\"", s));
+            return -1;
+        }
+    }
+
+}
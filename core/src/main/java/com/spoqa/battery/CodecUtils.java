@@ -12,6 +12,7 @@ import com.spoqa.battery.exceptions.RpcException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.GenericDeclaration;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
@@ -55,9 +56,12 @@ public final class CodecUtils {
             }
 
             try {
-                list.add(new KeyValuePair<String, Object>(field.getName(), field.get(o)));
+                Object value = cache != null ? cache.getAccessor(o.getClass(), field).get(o) : field.get(o);
+                list.add(new KeyValuePair<String, Object>(field.getName(), value));
             } catch (IllegalAccessException e) {
                 Logger.error(TAG, e.toString());
+            } catch (InvocationTargetException e) {
+                Logger.error(TAG, e.toString());
             }
         }
 
@@ -514,7 +518,7 @@ public final class CodecUtils {
                 throw new IncompatibleTypeException(fieldName, Long.class.getName(), (String) o);
             }
         } else {
-            throw new IncompatibleTypeException(fieldName, Long.class.getName(), (String) o);
+            throw new IncompatibleTypeException(fieldName, Long.class.getName(), o.toString());
         }
     }
 
@@ -656,10 +660,11 @@ public final class CodecUtils {
                     ret.typeVariables = pt.getActualTypeArguments();
                 }
 
-                ret.object = destField.get(object);
+                Accessor accessor = cache.getAccessor(object.getClass(), destField);
+                ret.object = accessor.get(object);
                 if (ret.object == null || overwrite) {
-                    ret.object = destField.getType().newInstance();
-                    destField.set(object, ret.object);
+                    ret.object = cache.newInstance(destField.getType());
+                    accessor.set(object, ret.object);
                 }
                 return ret;
             } catch (InstantiationException e) {
@@ -668,6 +673,9 @@ public final class CodecUtils {
             } catch (IllegalAccessException e) {
                 throw new RpcException(String.format("Could not instantiate ResponseObject %1$s",
                         destField.getName()));
+            } catch (InvocationTargetException e) {
+                throw new RpcException(String.format("Could not instantiate ResponseObject %1$s",
+                        destField.getName()));
             }
         }
     }
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.lang.reflect.Modifier;
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.AbstractQueue;
+import java.util.AbstractSequentialList;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Collections created for the declared type of a member when no custom
+ * {@link CollectionFactory} is registered for it.
+ */
+final class CollectionFactories {
+
+    public static final CollectionFactory ARRAY_LIST = new CollectionFactory() {
+        @Override
+        public Collection<Object> newCollection(int expectedSize) {
+            return expectedSize >= 0 ? new ArrayList<Object>(expectedSize) : new ArrayList<Object>();
+        }
+    };
+
+    public static final CollectionFactory LINKED_LIST = new CollectionFactory() {
+        @Override
+        public Collection<Object> newCollection(int expectedSize) {
+            return new LinkedList<Object>();
+        }
+    };
+
+    public static final CollectionFactory HASH_SET = new CollectionFactory() {
+        @Override
+        public Collection<Object> newCollection(int expectedSize) {
+            return expectedSize >= 0 ? new HashSet<Object>(capacity(expectedSize)) : new HashSet<Object>();
+        }
+    };
+
+    public static final CollectionFactory LINKED_HASH_SET = new CollectionFactory() {
+        @Override
+        public Collection<Object> newCollection(int expectedSize) {
+            return expectedSize >= 0 ?
+                    new LinkedHashSet<Object>(capacity(expectedSize)) : new LinkedHashSet<Object>();
+        }
+    };
+
+    public static final CollectionFactory TREE_SET = new CollectionFactory() {
+        @Override
+        public Collection<Object> newCollection(int expectedSize) {
+            return new TreeSet<Object>();
+        }
+    };
+
+    public static final CollectionFactory ARRAY_DEQUE = new CollectionFactory() {
+        @Override
+        public Collection<Object> newCollection(int expectedSize) {
+            return expectedSize >= 0 ? new ArrayDeque<Object>(expectedSize) : new ArrayDeque<Object>();
+        }
+    };
+
+    /* instantiates a concrete collection class through its default constructor */
+    private static final class InstanceFactory implements CollectionFactory {
+        private final ReflectionCache mCache;
+        private final Class mType;
+
+        public InstanceFactory(ReflectionCache cache, Class type) {
+            mCache = cache;
+            mType = type;
+        }
+
+        @Override
+        public Collection<Object> newCollection(int expectedSize) {
+            try {
+                return (Collection<Object>) mCache.newInstance(mType);
+            } catch (InstantiationException e) {
+                throw new IllegalStateException(e);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * The factory of the given collection type, or null if there is no way to create one.
+     * Sets declared as interfaces keep document order.
+     */
+    public static CollectionFactory forType(ReflectionCache cache, Class type) {
+        if (type == List.class || type == Collection.class || type == ArrayList.class ||
+                type == AbstractList.class || type == AbstractCollection.class)
+            return ARRAY_LIST;
+        else if (type == Set.class || type == LinkedHashSet.class)
+            return LINKED_HASH_SET;
+        else if (type == HashSet.class || type == AbstractSet.class)
+            return HASH_SET;
+        else if (type == SortedSet.class || type == NavigableSet.class || type == TreeSet.class)
+            return TREE_SET;
+        else if (type == Queue.class || type == Deque.class || type == ArrayDeque.class ||
+                type == AbstractQueue.class)
+            return ARRAY_DEQUE;
+        else if (type == LinkedList.class || type == AbstractSequentialList.class)
+            return LINKED_LIST;
+        else if (type.isInterface() || Modifier.isAbstract(type.getModifiers()))
+            return null;
+
+        return new InstanceFactory(cache, type);
+    }
+
+    /* initial capacity of a hash table that holds size elements without rehashing */
+    static int capacity(int size) {
+        return size < 3 ? size + 1 : (int) (size / 0.75f) + 1;
+    }
+
+}
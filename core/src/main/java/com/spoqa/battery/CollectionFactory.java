@@ -0,0 +1,18 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.Collection;
+
+/**
+ * Creates the collection an array in a response is decoded into. Installed for a collection
+ * type with {@link ReflectionCache#registerCollectionFactory(Class, CollectionFactory)}.
+ */
+public interface CollectionFactory {
+
+    /* expectedSize is the number of elements, or -1 if it is not known in advance */
+    public Collection<Object> newCollection(int expectedSize);
+
+}
@@ -8,5 +8,6 @@ public final class Config {
 
     static public boolean DEBUG_DUMP_REQUEST = false;
     static public boolean DEBUG_DUMP_RESPONSE = false;
+    static public boolean DEBUG_PRINT_STACK_TRACE = false;
 
 }
@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.annotations.ResponseObject;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Snapshots of decoded responses, so that a body decoded once is copied into later RpcObjects
+ * instead of decoded again. Used by {@link RpcContext#setDecodedObjectCache(DecodedObjectCache)}.
+ *
+ * A snapshot holds the values bound to the {@link Response} fields of an RpcObject, or the
+ * object bound to its {@link ResponseObject} field. Those values are shared by every call
+ * answered from the snapshot, so they must be treated as read-only. RpcObjects binding through
+ * {@link Response} setters are always decoded, as what a setter was given cannot be read back.
+ *
+ * Bodies are identified by their SHA-1 digest, or by the key and ETag they are stored under
+ * when they come from the {@link ResponseCache}. The cache is bounded by the total size of the bodies its snapshots
+ * were decoded from, the least recently used ones evicted first. Snapshots decoded before a
+ * type adapter is registered are not told apart from later ones; call {@link #invalidateAll()}.
+ */
+public class DecodedObjectCache {
+    private static final class Key {
+        public final Class clazz;
+        public final FieldNameTranslator translator;
+        public final String contentType;
+        public final String body;
+
+        public Key(Class clazz, FieldNameTranslator translator, String contentType, String body) {
+            this.clazz = clazz;
+            this.translator = translator;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = clazz.hashCode();
+            hash = hash * 31 + (translator != null ? translator.hashCode() : 0);
+            hash = hash * 31 + (contentType != null ? contentType.hashCode() : 0);
+            return hash * 31 + body.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other_) {
+            if (!(other_ instanceof Key))
+                return false;
+
+            Key other = (Key) other_;
+            return clazz == other.clazz && translator == other.translator && body.equals(other.body) &&
+                    (contentType != null ? contentType.equals(other.contentType) : other.contentType == null);
+        }
+    }
+
+    private static final class Snapshot {
+        public final Object[] values;
+        public final long size;
+
+        public Snapshot(Object[] values, long size) {
+            this.values = values;
+            this.size = size;
+        }
+    }
+
+    private final long mMaxSize;
+    private final LinkedHashMap<Key, Snapshot> mSnapshots;
+    private long mSize;
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    /**
+     * @param maxSize total size in bytes of the bodies snapshots may be kept for
+     */
+    public DecodedObjectCache(long maxSize) {
+        mMaxSize = maxSize;
+        mSnapshots = new LinkedHashMap<Key, Snapshot>(16, 0.75f, true);
+    }
+
+    public synchronized long hitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long missCount() {
+        return mMissCount;
+    }
+
+    public synchronized long evictionCount() {
+        return mEvictionCount;
+    }
+
+    /* drops the snapshots of one RpcObject class, e.g. after its decoded values went stale */
+    public synchronized void invalidate(Class<?> rpcObjectClass) {
+        Iterator<Key> it = mSnapshots.keySet().iterator();
+        while (it.hasNext()) {
+            Key key = it.next();
+            if (key.clazz == rpcObjectClass) {
+                mSize -= mSnapshots.get(key).size;
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        mSnapshots.clear();
+        mSize = 0;
+    }
+
+    /**
+     * Returns the key of a body identified by its digest, or null if rpcObject cannot be
+     * snapshot and has to be decoded every time.
+     */
+    Object key(Object rpcObject, FieldNameTranslator translator, String contentType, byte[] body) {
+        if (!ResponseMembers.isSupported(rpcObject.getClass()))
+            return null;
+
+        return new Key(rpcObject.getClass(), translator, contentType, digest(body));
+    }
+
+    /* same as above, for a body identified by its key in the ResponseCache and its ETag */
+    Object key(Object rpcObject, FieldNameTranslator translator, String contentType, String cacheKey,
+               String etag) {
+        if (!ResponseMembers.isSupported(rpcObject.getClass()))
+            return null;
+
+        /* a digest has no line breaks, so the two kinds of keys never meet */
+        return new Key(rpcObject.getClass(), translator, contentType, cacheKey + '\n' + etag);
+    }
+
+    /* copies the snapshot of key into rpcObject; returns false if there is none */
+    boolean restore(Object key, Object rpcObject) {
+        Snapshot snapshot;
+        synchronized (this) {
+            snapshot = mSnapshots.get(key);
+            if (snapshot == null) {
+                ++mMissCount;
+                return false;
+            }
+            ++mHitCount;
+        }
+
+        return ResponseMembers.restore(rpcObject, snapshot.values);
+    }
+
+    /* takes a snapshot of the values just decoded into rpcObject from a body of size bytes */
+    void store(Object key, Object rpcObject, long size) {
+        if (size > mMaxSize)
+            return;
+
+        Object[] values = ResponseMembers.capture(rpcObject);
+        if (values == null)
+            return;
+
+        synchronized (this) {
+            Snapshot replaced = mSnapshots.put((Key) key, new Snapshot(values, size));
+            if (replaced != null)
+                mSize -= replaced.size;
+            mSize += size;
+
+            Iterator<Snapshot> it = mSnapshots.values().iterator();
+            while (mSize > mMaxSize && it.hasNext()) {
+                mSize -= it.next().size;
+                it.remove();
+                ++mEvictionCount;
+            }
+        }
+    }
+
+    private static String digest(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(body);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Translates field names between the local and remote conventions of a transformer pair.
+ *
+ * Translators built from equal transformers share memoized names, and are equal themselves so
+ * that binding plans compiled for one are reused by the other. Transformers are compared with
+ * equals(), which is identity unless they override it; a transformer carrying configuration
+ * should only be equal to instances which translate every name the same way.
+ */
+public class FieldNameTranslator {
+
+    /* field names form a small closed set, but remoteToLocal() may see arbitrary keys */
+    private static final int MAX_TABLE_SIZE = 4096;
+
+    /**
+     * Memoized translations for one (remote, local) transformer pair, shared by every
+     * translator built from an equal pair.
+     */
+    private static final class NameTables {
+        final ConcurrentMap<String, String> localToRemote = new ConcurrentHashMap<String, String>();
+        final ConcurrentMap<String, String> remoteToLocal = new ConcurrentHashMap<String, String>();
+    }
+
+    /* remote transformer -> local transformer -> tables; weak, so that transformers are collected */
+    private static final Map<FieldNameTransformer, Map<FieldNameTransformer, NameTables>> sTables =
+            new WeakHashMap<FieldNameTransformer, Map<FieldNameTransformer, NameTables>>();
+
+    private FieldNameTransformer mRemoteTransformer;
+    private FieldNameTransformer mLocalTransformer;
+    private NameTables mTables;
+
+    public FieldNameTranslator(FieldNameTransformer remote, FieldNameTransformer local) {
+        mRemoteTransformer = remote;
+        mLocalTransformer = local;
+
+        if (remote != null && local != null)
+            mTables = obtainTables(remote, local);
+    }
+
+    /* called once per translator, so a lock is cheaper than keeping weak maps concurrent */
+    private static NameTables obtainTables(FieldNameTransformer remote, FieldNameTransformer local) {
+        synchronized (sTables) {
+            Map<FieldNameTransformer, NameTables> byLocal = sTables.get(remote);
+            if (byLocal == null) {
+                byLocal = new WeakHashMap<FieldNameTransformer, NameTables>();
+                sTables.put(remote, byLocal);
+            }
+
+            NameTables tables = byLocal.get(local);
+            if (tables == null) {
+                tables = new NameTables();
+                byLocal.put(local, tables);
+            }
+
+            return tables;
+        }
+    }
+
+    public String remoteToLocal(String name) {
+        if (mTables == null)
+            return name;
+
+        String translated = mTables.remoteToLocal.get(name);
+        if (translated == null) {
+            translated = mLocalTransformer.encode(mRemoteTransformer.decode(name));
+            remember(mTables.remoteToLocal, name, translated);
+        }
+
+        return translated;
+    }
+
+    public String localToRemote(String name) {
+        if (mTables == null)
+            return name;
+
+        String translated = mTables.localToRemote.get(name);
+        if (translated == null) {
+            translated = mRemoteTransformer.encode(mLocalTransformer.decode(name));
+            remember(mTables.localToRemote, name, translated);
+        }
+
+        return translated;
+    }
+
+    private static void remember(ConcurrentMap<String, String> table, String name, String translated) {
+        if (table.size() < MAX_TABLE_SIZE)
+            table.put(name, translated);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = mRemoteTransformer != null ? mRemoteTransformer.hashCode() : 0;
+        return 31 * hash + (mLocalTransformer != null ? mLocalTransformer.hashCode() : 0);
+    }
+
+    @Override
+    public boolean equals(Object other_) {
+        if (!(other_ instanceof FieldNameTranslator))
+            return false;
+
+        FieldNameTranslator other = (FieldNameTranslator) other_;
+        return same(other.mRemoteTransformer, mRemoteTransformer) &&
+                same(other.mLocalTransformer, mLocalTransformer);
+    }
+
+    private static boolean same(FieldNameTransformer a, FieldNameTransformer b) {
+        if (a == null || b == null)
+            return a == b;
+
+        return a.equals(b);
+    }
+
+}
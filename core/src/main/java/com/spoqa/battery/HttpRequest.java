@@ -4,11 +4,11 @@
 
 package com.spoqa.battery;
 
+import com.spoqa.battery.exceptions.SerializationException;
+
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,10 +30,14 @@ public class HttpRequest {
     private String mUri;
     private Map<String, String> mHeaders;
     private Map<String, Object> mParams;
-    private byte[] mRequestBody;
+    private HttpRequestBody mRequestBody;
+    /* getRequestBody() output, for transports that only send byte arrays */
+    private byte[] mBufferedRequestBody;
     private FieldNameTranslator mFieldNameTranslator;
     private Object mRequestObject;
     private String mContentType;
+    /* getUri() output, dropped whenever the parameters change */
+    private String mBuiltUri;
 
     public HttpRequest(String uri) {
         mMethod = Methods.GET;
@@ -50,24 +54,18 @@ public class HttpRequest {
     }
 
     public void setRequestBody(byte[] body) {
-        mRequestBody = body;
+        mRequestBody = body != null ? HttpRequestBody.create(body) : null;
+        mBufferedRequestBody = body;
     }
 
+    /* the stream is read when the request is sent */
     public void setRequestBody(InputStream inputStream) {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-
-        int nRead;
-        byte[] data = new byte[8192];
-
-        try {
-            while ((nRead = inputStream.read(data, 0, data.length)) != 1)
-                buffer.write(data, 0, nRead);
-            buffer.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        setRequestBody(inputStream != null ? HttpRequestBody.create(inputStream) : null);
+    }
 
-        mRequestBody = buffer.toByteArray();
+    public void setRequestBody(HttpRequestBody body) {
+        mRequestBody = body;
+        mBufferedRequestBody = null;
     }
 
     public void setRequestObject(Object requestObject) {
@@ -84,11 +82,12 @@ public class HttpRequest {
 
     public void putParameter(String key, Object value) {
         mParams.put(key, value);
+        mBuiltUri = null;
     }
 
     public void putParameters(Map<String, Object> params) {
-        for (String key : params.keySet())
-            mParams.put(key, params.get(key));
+        mParams.putAll(params);
+        mBuiltUri = null;
     }
 
     public void removeHeader(String key) {
@@ -96,18 +95,60 @@ public class HttpRequest {
     }
 
     public void removeParameter(String key) {
-        if (mParams.containsKey(key))
+        if (mParams.containsKey(key)) {
             mParams.remove(key);
+            mBuiltUri = null;
+        }
     }
 
     public void setNameTranslator(FieldNameTranslator fieldNameTranslator) {
         mFieldNameTranslator = fieldNameTranslator;
     }
 
-    public byte[] getRequestBody() {
+    public HttpRequestBody getStreamingRequestBody() {
         return mRequestBody;
     }
 
+    /**
+     * Writes a streaming body out into memory, for transports that only send byte arrays.
+     * Does nothing if the body is in memory already.
+     */
+    public void bufferRequestBody() throws SerializationException {
+        if (mBufferedRequestBody != null || mRequestBody == null)
+            return;
+
+        long length = mRequestBody.contentLength();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(
+                length >= 0 && length <= Integer.MAX_VALUE ? (int) length : 8192);
+
+        try {
+            mRequestBody.writeTo(buffer);
+        } catch (IOException e) {
+            Logger.error(TAG, "Could not read request body: " + e.getMessage());
+            throw new SerializationException(e);
+        }
+
+        /* a stream can only be read once, so the buffered copy replaces it */
+        mBufferedRequestBody = buffer.toByteArray();
+        mRequestBody = HttpRequestBody.create(mBufferedRequestBody);
+    }
+
+    /**
+     * Returns the whole body in memory, writing a streaming body out the first time. Call
+     * {@link #bufferRequestBody()} beforehand to be told why a body could not be written; here
+     * it is an IllegalStateException. Transports that can write to an OutputStream should use
+     * {@link #getStreamingRequestBody()} instead.
+     */
+    public byte[] getRequestBody() {
+        try {
+            bufferRequestBody();
+        } catch (SerializationException e) {
+            throw new IllegalStateException("Could not read request body", e.forWhat());
+        }
+
+        return mBufferedRequestBody;
+    }
+
     public Map<String, String> getHeaders() {
         return mHeaders;
     }
@@ -125,7 +166,15 @@ public class HttpRequest {
     }
 
     public String getUri() {
-        StringBuilder sb = new StringBuilder();
+        if (mBuiltUri != null)
+            return mBuiltUri;
+
+        if (mParams.isEmpty()) {
+            mBuiltUri = mUri;
+            return mBuiltUri;
+        }
+
+        StringBuilder sb = new StringBuilder(mUri.length() + 16 * mParams.size());
         sb.append(mUri);
 
         char delimiter;
@@ -134,8 +183,9 @@ public class HttpRequest {
         else
             delimiter = '?';
 
-        for (String key : mParams.keySet()) {
-            Object value = mParams.get(key);
+        for (Map.Entry<String, Object> entry : mParams.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
 
             if (value instanceof List && value != null) {
                 for (Object innerValue : (List<Object>) value) {
@@ -148,23 +198,21 @@ public class HttpRequest {
             }
         }
 
-        String output = sb.toString();
-        Logger.debug(TAG, "built uri: " + output);
+        mBuiltUri = sb.toString();
+        if (Config.DEBUG_DUMP_REQUEST)
+            Logger.debug(TAG, "built uri: " + mBuiltUri);
 
-        return output;
+        return mBuiltUri;
     }
 
     private boolean appendQueryString(StringBuilder sb, char delimiter, String key, Object value) {
         if (value == null)
             return false;
 
-        try {
-            sb.append(String.format("%1$c%2$s=%3$s", delimiter, key,
-                    URLEncoder.encode(value.toString(), "utf-8")));
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-            return false;
-        }
+        sb.append(delimiter);
+        sb.append(key);
+        sb.append('=');
+        StringUtils.appendUrlEncoded(sb, value.toString());
 
         return true;
     }
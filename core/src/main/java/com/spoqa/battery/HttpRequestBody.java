@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The content of a request, written to the transport when the request is sent rather than
+ * held in memory beforehand.
+ */
+public abstract class HttpRequestBody {
+
+    private static final int BUFFER_SIZE = 16384;
+
+    /* the number of bytes writeTo() writes, or -1 if it is not known until then */
+    public long contentLength() {
+        return -1;
+    }
+
+    public abstract void writeTo(OutputStream output) throws IOException;
+
+    public static HttpRequestBody create(byte[] content) {
+        return new ByteArrayBody(content);
+    }
+
+    /* the file is opened when the body is written, and its length is taken now */
+    public static HttpRequestBody create(File file) {
+        return new FileBody(file);
+    }
+
+    /**
+     * The stream is read when the body is written, and is not closed. It can only be read
+     * once, so writing the body again, e.g. to resend the request after a connection failure,
+     * throws an IOException rather than sending an empty or partial body.
+     */
+    public static HttpRequestBody create(InputStream input) {
+        return new InputStreamBody(input);
+    }
+
+    private static final class ByteArrayBody extends HttpRequestBody {
+        private final byte[] mContent;
+
+        public ByteArrayBody(byte[] content) {
+            mContent = content;
+        }
+
+        @Override
+        public long contentLength() {
+            return mContent.length;
+        }
+
+        @Override
+        public void writeTo(OutputStream output) throws IOException {
+            output.write(mContent);
+        }
+    }
+
+    private static final class FileBody extends HttpRequestBody {
+        private final File mFile;
+        private final long mLength;
+
+        public FileBody(File file) {
+            mFile = file;
+            mLength = file.length();
+        }
+
+        @Override
+        public long contentLength() {
+            return mLength;
+        }
+
+        @Override
+        public void writeTo(OutputStream output) throws IOException {
+            FileInputStream input = new FileInputStream(mFile);
+            try {
+                WritableByteChannel target = null;
+                if (output instanceof FileOutputStream)
+                    target = ((FileOutputStream) output).getChannel();
+                else if (output instanceof WritableByteChannel)
+                    target = (WritableByteChannel) output;
+
+                if (target != null)
+                    transfer(input.getChannel(), target);
+                else
+                    copy(input, output);
+            } finally {
+                input.close();
+            }
+        }
+
+        /* lets the kernel move the bytes where the target is a file or a socket */
+        private void transfer(FileChannel source, WritableByteChannel target) throws IOException {
+            long position = 0;
+            while (position < mLength) {
+                long transferred = source.transferTo(position, mLength - position, target);
+                if (transferred <= 0 && position >= source.size())
+                    throw truncated();
+                position += transferred;
+            }
+        }
+
+        /* writes exactly the length announced up front, even if the file has grown since */
+        private void copy(InputStream input, OutputStream output) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(mLength, 1))];
+            long remaining = mLength;
+            while (remaining > 0) {
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0)
+                    throw truncated();
+                output.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+
+        private IOException truncated() {
+            return new EOFException(String.format("%1$s is shorter than %2$d bytes",
+                    mFile.getAbsolutePath(), mLength));
+        }
+    }
+
+    private static final class InputStreamBody extends HttpRequestBody {
+        private final InputStream mInput;
+        private boolean mConsumed;
+
+        public InputStreamBody(InputStream input) {
+            mInput = input;
+        }
+
+        @Override
+        public void writeTo(OutputStream output) throws IOException {
+            synchronized (this) {
+                if (mConsumed)
+                    throw new IOException("An InputStream request body can only be written once");
+                mConsumed = true;
+            }
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = mInput.read(buffer)) >= 0)
+                output.write(buffer, 0, read);
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A call sent on behalf of every caller which made an identical one while it was in flight.
+ * Transports obtain one from {@link RpcContext#leadInFlightCall} and hand it back to
+ * {@link RpcContext#completeInFlightCall} once the response has been decoded.
+ */
+public final class InFlightCall {
+
+    static final class Follower {
+        public final Object rpcObject;
+        public final OnResponse onResponse;
+        public final Object frontendContext;
+
+        public Follower(Object rpcObject, OnResponse onResponse, Object frontendContext) {
+            this.rpcObject = rpcObject;
+            this.onResponse = onResponse;
+            this.frontendContext = frontendContext;
+        }
+    }
+
+    /* null if the call is not shared */
+    final String mKey;
+    private List<Follower> mFollowers;
+    private boolean mCompleted;
+
+    InFlightCall(String key) {
+        mKey = key;
+    }
+
+    /* false if the call has completed already, too late to be joined */
+    synchronized boolean join(Object rpcObject, OnResponse onResponse, Object frontendContext) {
+        if (mCompleted)
+            return false;
+
+        if (mFollowers == null)
+            mFollowers = new ArrayList<Follower>(2);
+        mFollowers.add(new Follower(rpcObject, onResponse, frontendContext));
+        return true;
+    }
+
+    synchronized List<Follower> complete() {
+        mCompleted = true;
+        List<Follower> followers = mFollowers;
+        mFollowers = null;
+        return followers != null ? followers : Collections.<Follower>emptyList();
+    }
+
+}
@@ -0,0 +1,16 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+/**
+ * A {@link ResponseDeserializer} which can also enumerate the keys of an object, so that
+ * {@link ObjectBuilder} binds Map members from the trees it builds. Map members are skipped for
+ * deserializers which do not implement it.
+ */
+public interface KeyedResponseDeserializer extends ResponseDeserializer {
+
+    public Iterable<String> queryObjectKeys(Object internalObject);
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.lang.reflect.Modifier;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps created for the declared type of a member when no custom {@link MapFactory} is
+ * registered for it.
+ */
+final class MapFactories {
+
+    public static final MapFactory HASH_MAP = new MapFactory() {
+        @Override
+        public Map<Object, Object> newMap(int expectedSize) {
+            return expectedSize >= 0 ?
+                    new HashMap<Object, Object>(CollectionFactories.capacity(expectedSize)) :
+                    new HashMap<Object, Object>();
+        }
+    };
+
+    public static final MapFactory TREE_MAP = new MapFactory() {
+        @Override
+        public Map<Object, Object> newMap(int expectedSize) {
+            return new TreeMap<Object, Object>();
+        }
+    };
+
+    public static final MapFactory CONCURRENT_HASH_MAP = new MapFactory() {
+        @Override
+        public Map<Object, Object> newMap(int expectedSize) {
+            return expectedSize >= 0 ?
+                    new ConcurrentHashMap<Object, Object>(CollectionFactories.capacity(expectedSize)) :
+                    new ConcurrentHashMap<Object, Object>();
+        }
+    };
+
+    /* instantiates a concrete map class through its default constructor */
+    private static final class InstanceFactory implements MapFactory {
+        private final ReflectionCache mCache;
+        private final Class mType;
+
+        public InstanceFactory(ReflectionCache cache, Class type) {
+            mCache = cache;
+            mType = type;
+        }
+
+        @Override
+        public Map<Object, Object> newMap(int expectedSize) {
+            try {
+                return (Map<Object, Object>) mCache.newInstance(mType);
+            } catch (InstantiationException e) {
+                throw new IllegalStateException(e);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * The factory of the given map type, or null if there is no way to create one.
+     */
+    public static MapFactory forType(ReflectionCache cache, Class type) {
+        if (type == Map.class || type == HashMap.class || type == AbstractMap.class)
+            return HASH_MAP;
+        else if (type == LinkedHashMap.class)
+            return MapFactory.INSERTION_ORDERED;
+        else if (type == StringHashMap.class)
+            return MapFactory.OPEN_ADDRESSING;
+        else if (type == SortedMap.class || type == NavigableMap.class || type == TreeMap.class)
+            return TREE_MAP;
+        else if (type == ConcurrentMap.class || type == ConcurrentHashMap.class)
+            return CONCURRENT_HASH_MAP;
+        else if (type.isInterface() || Modifier.isAbstract(type.getModifiers()))
+            return null;
+
+        return new InstanceFactory(cache, type);
+    }
+
+}
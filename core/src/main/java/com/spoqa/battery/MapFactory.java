@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Creates the map an object in a response is decoded into. Installed for a map type with
+ * {@link ReflectionCache#registerMapFactory(Class, MapFactory)}; registering one of the
+ * factories below for Map.class changes how every plain Map member is decoded.
+ */
+public interface MapFactory {
+
+    /* a LinkedHashMap, which keeps entries in document order */
+    public static final MapFactory INSERTION_ORDERED = new MapFactory() {
+        @Override
+        public Map<Object, Object> newMap(int expectedSize) {
+            return expectedSize >= 0 ?
+                    new LinkedHashMap<Object, Object>(CollectionFactories.capacity(expectedSize)) :
+                    new LinkedHashMap<Object, Object>();
+        }
+    };
+
+    /* a StringHashMap, for large dictionaries keyed by strings; other keys still get a HashMap */
+    public static final MapFactory OPEN_ADDRESSING = new MapFactory() {
+        @Override
+        public Map<Object, Object> newMap(int expectedSize) {
+            return (Map) (expectedSize >= 0 ?
+                    new StringHashMap<Object>(expectedSize) : new StringHashMap<Object>());
+        }
+    };
+
+    /* expectedSize is the number of entries, or -1 if it is not known in advance */
+    public Map<Object, Object> newMap(int expectedSize);
+
+}
@@ -0,0 +1,26 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+/**
+ * Reflection-free access to the members of one class, generated at compile time by the
+ * battery-processor module as {@code <binary class name>$$BatteryAdapter}.
+ *
+ * {@link ReflectionCache} picks generated adapters up automatically; classes without one are
+ * accessed through reflection.
+ */
+public interface ObjectAdapter {
+
+    public static final String CLASS_SUFFIX = "$$BatteryAdapter";
+
+    public Object newInstance() throws InstantiationException, IllegalAccessException;
+
+    /* accessor of the public field, or null if the adapter does not cover it */
+    public Accessor field(String name);
+
+    /* accessor of the public getter or setter, or null if the adapter does not cover it */
+    public Accessor method(String name);
+
+}
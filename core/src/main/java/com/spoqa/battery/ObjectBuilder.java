@@ -0,0 +1,1101 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.codecs.JsonCodec;
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.exceptions.IncompatibleTypeException;
+import com.spoqa.battery.exceptions.MissingFieldException;
+import com.spoqa.battery.exceptions.RpcException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class ObjectBuilder {
+    private static final String TAG = "ObjectBuilder";
+
+    private static final String UTF_8 = "UTF-8";
+
+    private static Map<String, ResponseDeserializer> sDeserializerMap;
+    private static final ResponseDeserializer sTreeDeserializer = new TreeDeserializer();
+
+    static {
+        sDeserializerMap = new HashMap<String, ResponseDeserializer>();
+        registerDeserializer(new JsonCodec());
+    }
+
+    public static void registerDeserializer(ResponseDeserializer deserializer) {
+        try {
+            sDeserializerMap.put(deserializer.deserializationContentType(), deserializer);
+        } catch (Exception e) {
+            Logger.error(TAG, "Could not register deserializer class");
+            e.printStackTrace();
+        }
+    }
+
+    public static void build(String contentType, String input, Object object,
+                             FieldNameTranslator translator, TypeAdapterCollection typeAdapters)
+            throws DeserializationException {
+        String mime = extractMime(contentType);
+
+        if (Config.DEBUG_DUMP_RESPONSE) {
+            Logger.debug(TAG, "Mime: " + mime);
+            Logger.debug(TAG, "Response: " + input);
+        }
+
+        ResponseDeserializer deserializer = findDeserializer(mime);
+
+        if (deserializer instanceof StreamingResponseDeserializer) {
+            byte[] bytes = encode(input, UTF_8);
+            TokenReader reader = ((StreamingResponseDeserializer) deserializer)
+                    .newTokenReader(bytes, 0, bytes.length);
+            deserializeObject(deserializer, null, reader, object, translator, typeAdapters);
+        } else {
+            deserializeObject(deserializer, input, null, object, translator, typeAdapters);
+        }
+    }
+
+    public static void build(String contentType, byte[] input, Object object,
+                             FieldNameTranslator translator, TypeAdapterCollection typeAdapters)
+            throws DeserializationException {
+        build(contentType, input, 0, input.length, object, translator, typeAdapters);
+    }
+
+    /**
+     * Binds a response body without decoding it into a String first. The body is read in the
+     * charset given by the content type, or UTF-8 if there is none.
+     */
+    public static void build(String contentType, byte[] input, int offset, int length, Object object,
+                             FieldNameTranslator translator, TypeAdapterCollection typeAdapters)
+            throws DeserializationException {
+        String mime = extractMime(contentType);
+        String charset = extractCharset(contentType);
+
+        if (Config.DEBUG_DUMP_RESPONSE) {
+            Logger.debug(TAG, "Mime: " + mime);
+            Logger.debug(TAG, "Response: " + decode(input, offset, length, charset));
+        }
+
+        ResponseDeserializer deserializer = findDeserializer(mime);
+
+        if (deserializer instanceof StreamingResponseDeserializer) {
+            if (!isUtf8(charset)) {
+                input = encode(decode(input, offset, length, charset), UTF_8);
+                offset = 0;
+                length = input.length;
+            }
+            TokenReader reader = ((StreamingResponseDeserializer) deserializer)
+                    .newTokenReader(input, offset, length);
+            deserializeObject(deserializer, null, reader, object, translator, typeAdapters);
+        } else {
+            deserializeObject(deserializer, decode(input, offset, length, charset), null, object,
+                    translator, typeAdapters);
+        }
+    }
+
+    /**
+     * Binds a response body as it is read from the given stream. The stream is closed
+     * afterwards.
+     */
+    public static void build(String contentType, InputStream input, Object object,
+                             FieldNameTranslator translator, TypeAdapterCollection typeAdapters)
+            throws DeserializationException {
+        String mime = extractMime(contentType);
+        String charset = extractCharset(contentType);
+        ResponseDeserializer deserializer = findDeserializer(mime);
+
+        if (!Config.DEBUG_DUMP_RESPONSE && isUtf8(charset) &&
+                deserializer instanceof StreamingResponseDeserializer) {
+            TokenReader reader = ((StreamingResponseDeserializer) deserializer).newTokenReader(input);
+            deserializeObject(deserializer, null, reader, object, translator, typeAdapters);
+            return;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = input.read(chunk)) != -1)
+                buffer.write(chunk, 0, read);
+        } catch (IOException e) {
+            throw new DeserializationException(e);
+        } finally {
+            try {
+                input.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        build(contentType, buffer.toByteArray(), object, translator, typeAdapters);
+    }
+
+    private static ResponseDeserializer findDeserializer(String mime) throws DeserializationException {
+        ResponseDeserializer deserializer = sDeserializerMap.get(mime);
+        if (deserializer == null) {
+            RpcException e = new RpcException(String.format("No deserializer associated with MIME type %1$s", mime));
+            throw new DeserializationException(e);
+        }
+
+        return deserializer;
+    }
+
+    private static String extractMime(String contentType) {
+        String[] parts = contentType.split(";");
+        if (parts.length == 0)
+            return null;
+        return parts[0].trim();
+    }
+
+    private static String extractCharset(String contentType) {
+        String[] parts = contentType.split(";");
+        for (int i = 1; i < parts.length; ++i) {
+            String[] pair = parts[i].trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("charset")) {
+                String charset = pair[1].trim();
+                if (charset.length() >= 2 && charset.startsWith("\"") && charset.endsWith("\""))
+                    charset = charset.substring(1, charset.length() - 1);
+                return charset;
+            }
+        }
+
+        return UTF_8;
+    }
+
+    private static boolean isUtf8(String charset) {
+        return charset.equalsIgnoreCase(UTF_8) || charset.equalsIgnoreCase("utf8");
+    }
+
+    private static String decode(byte[] input, int offset, int length, String charset)
+            throws DeserializationException {
+        try {
+            return new String(input, offset, length, charset);
+        } catch (UnsupportedEncodingException e) {
+            throw new DeserializationException(e);
+        }
+    }
+
+    private static byte[] encode(String input, String charset) throws DeserializationException {
+        try {
+            return input.getBytes(charset);
+        } catch (UnsupportedEncodingException e) {
+            throw new DeserializationException(e);
+        }
+    }
+
+    /* exactly one of input and reader is given, depending on the kind of deserializer */
+    private static void deserializeObject(ResponseDeserializer deserializer, String input,
+                                          TokenReader reader, Object object,
+                                          FieldNameTranslator translator,
+                                          TypeAdapterCollection typeAdapters)
+            throws DeserializationException {
+        ReflectionCache cache = ReflectionCache.getSharedInstance();
+
+        try {
+            CodecUtils.ResponseWithTypeParameters rt = CodecUtils.getResponseObject(cache, object, true);
+            Object dest = object;
+            boolean filterByAnnotation = true;
+            Type[] genericTypes = null;
+            if (rt != null) {
+                dest = rt.object;
+                filterByAnnotation = false;
+                genericTypes = rt.typeVariables;
+            }
+
+            if (reader != null) {
+                readObject(cache, reader, dest, translator, typeAdapters, filterByAnnotation,
+                        genericTypes);
+            } else {
+                /* Let's assume the root element is always an object */
+                Object internalObject = deserializer.parseInput(input);
+                visitObject(cache, deserializer, internalObject, dest, translator, typeAdapters,
+                        filterByAnnotation, genericTypes);
+            }
+        } catch (RpcException e) {
+            throw new DeserializationException(e);
+        } finally {
+            if (reader != null)
+                reader.close();
+        }
+    }
+
+    private static void visitObject(ReflectionCache cache, ResponseDeserializer deserializer,
+                                    Object internalObject, Object dest, FieldNameTranslator translator,
+                                    TypeAdapterCollection typeAdapters,
+                                    boolean filterByAnnotation, Type[] genericTypes)
+            throws DeserializationException {
+        BindingPlan plan = BindingPlan.obtain(cache, dest.getClass(), genericTypes, translator,
+                filterByAnnotation);
+        BindingPlan.Binder[] binders = plan.binders();
+        /* whether each binder has been dealt with, if dotted paths leave some for later */
+        byte[] bound = plan.paths() != null ? new byte[binders.length] : null;
+
+        try {
+            for (int i = 0; i < binders.length; ++i) {
+                BindingPlan.Binder b = binders[i];
+                if (Config.DEBUG_DUMP_RESPONSE) {
+                    Logger.debug(TAG, (b.field != null ? "read field " : "read method ") + b.localName);
+                }
+
+                /* check for field names */
+                Object value = null;
+                boolean hasValue = false;
+                if (b.path != null) {
+                    /* a key spelled with the dots wins over descending; paths are walked below */
+                    if (internalObject != null && deserializer.containsChild(internalObject, b.remoteName)) {
+                        bindValue(cache, deserializer, b, dest,
+                                deserializer.queryObjectChild(internalObject, b.remoteName),
+                                translator, typeAdapters);
+                        bound[i] = BindingPlan.Slot.PRECEDENCE_EXACT;
+                    }
+                    continue;
+                } else if (internalObject != null) {
+                    value = deserializer.queryObjectChild(internalObject, b.remoteName);
+                    hasValue = deserializer.containsChild(internalObject, b.remoteName);
+                }
+
+                if (!hasValue && b.fallbackName != null && internalObject != null) {
+                    /* fall back to the untransformed name */
+                    if (deserializer.containsChild(internalObject, b.fallbackName)) {
+                        value = deserializer.queryObjectChild(internalObject, b.fallbackName);
+                        hasValue = true;
+                    }
+                }
+
+                if (b.required && !hasValue) {
+                    /* check for mandatory field */
+                    throw new DeserializationException(new MissingFieldException(b.localName));
+                }
+
+                if (hasValue) {
+                    bindValue(cache, deserializer, b, dest, value, translator, typeAdapters);
+                } else if (b.field != null && !b.type.isPrimitive()) {
+                    b.accessor.set(dest, null);
+                }
+                if (bound != null)
+                    bound[i] = BindingPlan.Slot.PRECEDENCE_EXACT;
+            }
+
+            if (bound != null) {
+                if (internalObject != null)
+                    visitPath(cache, deserializer, internalObject, plan.paths(), dest, bound,
+                            translator, typeAdapters);
+                bindMissing(binders, bound, dest);
+            }
+        } catch (Exception e) {
+            if (Config.DEBUG_PRINT_STACK_TRACE)
+                e.printStackTrace();
+            throw new DeserializationException(e);
+        } catch (IncompatibleTypeException e) {
+            if (Config.DEBUG_PRINT_STACK_TRACE)
+                e.printStackTrace();
+            throw new DeserializationException(e);
+        }
+    }
+
+    private static void readObject(ReflectionCache cache, TokenReader reader, Object dest,
+                                   FieldNameTranslator translator, TypeAdapterCollection typeAdapters,
+                                   boolean filterByAnnotation, Type[] genericTypes)
+            throws DeserializationException {
+        BindingPlan plan = BindingPlan.obtain(cache, dest.getClass(), genericTypes, translator,
+                filterByAnnotation);
+        BindingPlan.Binder[] binders = plan.binders();
+        /* precedence of the key each binder has been bound from, 0 if not bound yet */
+        byte[] bound = new byte[binders.length];
+
+        try {
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                BindingPlan.Slot[] slots = plan.slots(name);
+
+                if (slots == null) {
+                    reader.skipValue();
+                } else if (slots.length == 1 && slots[0].path != null) {
+                    /* only dotted paths continue below the key; follow them as the value streams */
+                    readPath(cache, reader, slots[0].path, dest, bound, translator, typeAdapters);
+                } else if (slots.length == 1) {
+                    /* only one binder consumes the value, so it can be read in place */
+                    BindingPlan.Slot slot = slots[0];
+                    if (slot.precedence > bound[slot.index]) {
+                        if (Config.DEBUG_DUMP_RESPONSE) {
+                            Logger.debug(TAG, "read " + slot.binder.localName);
+                        }
+                        readValue(cache, reader, slot.binder, dest, translator, typeAdapters);
+                        bound[slot.index] = (byte) slot.precedence;
+                    } else {
+                        reader.skipValue();
+                    }
+                } else {
+                    /* the value is shared or only a part of it is bound; materialize it once */
+                    Object value = readTree(reader);
+
+                    for (BindingPlan.Slot slot : slots) {
+                        if (slot.path != null) {
+                            visitPath(cache, sTreeDeserializer, value, slot.path, dest, bound,
+                                    translator, typeAdapters);
+                            continue;
+                        }
+                        if (slot.precedence <= bound[slot.index])
+                            continue;
+
+                        if (Config.DEBUG_DUMP_RESPONSE) {
+                            Logger.debug(TAG, "read " + slot.binder.localName);
+                        }
+                        bindValue(cache, sTreeDeserializer, slot.binder, dest, value, translator,
+                                typeAdapters);
+                        bound[slot.index] = (byte) slot.precedence;
+                    }
+                }
+            }
+
+            reader.endObject();
+
+            bindMissing(binders, bound, dest);
+        } catch (Exception e) {
+            if (Config.DEBUG_PRINT_STACK_TRACE)
+                e.printStackTrace();
+            throw new DeserializationException(e);
+        } catch (IncompatibleTypeException e) {
+            if (Config.DEBUG_PRINT_STACK_TRACE)
+                e.printStackTrace();
+            throw new DeserializationException(e);
+        }
+    }
+
+    /* fails on required binders which have not been bound, and clears the other fields */
+    private static void bindMissing(BindingPlan.Binder[] binders, byte[] bound, Object dest)
+            throws Exception, DeserializationException {
+        for (int i = 0; i < binders.length; ++i) {
+            if (bound[i] != 0)
+                continue;
+
+            BindingPlan.Binder b = binders[i];
+            if (b.required) {
+                /* check for mandatory field */
+                throw new DeserializationException(new MissingFieldException(b.localName));
+            } else if (b.field != null && !b.type.isPrimitive()) {
+                b.accessor.set(dest, null);
+            }
+        }
+    }
+
+    /**
+     * Binds the dotted paths continuing below node from the next value, skipping whatever
+     * no path leads to. The value is only materialized where a path ends at a node other
+     * paths continue from.
+     */
+    private static void readPath(ReflectionCache cache, TokenReader reader, BindingPlan.PathNode node,
+                                 Object dest, byte[] bound, FieldNameTranslator translator,
+                                 TypeAdapterCollection typeAdapters)
+            throws Exception, IncompatibleTypeException, DeserializationException {
+        if (node.leaves != null) {
+            if (node.leaves.length > 1 || node.children != null) {
+                visitPath(cache, sTreeDeserializer, readTree(reader), node, dest, bound, translator,
+                        typeAdapters);
+                return;
+            }
+
+            BindingPlan.Slot slot = node.leaves[0];
+            if (slot.precedence > bound[slot.index]) {
+                if (Config.DEBUG_DUMP_RESPONSE) {
+                    Logger.debug(TAG, "read " + slot.binder.localName);
+                }
+                readValue(cache, reader, slot.binder, dest, translator, typeAdapters);
+                bound[slot.index] = (byte) slot.precedence;
+            } else {
+                reader.skipValue();
+            }
+            return;
+        }
+
+        if (reader.peek() != TokenReader.Token.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            BindingPlan.PathNode child = node.children.get(reader.nextName());
+            if (child == null)
+                reader.skipValue();
+            else
+                readPath(cache, reader, child, dest, bound, translator, typeAdapters);
+        }
+        reader.endObject();
+    }
+
+    /* binds the dotted paths continuing below node from a value of the tree */
+    private static void visitPath(ReflectionCache cache, ResponseDeserializer deserializer,
+                                  Object internalObject, BindingPlan.PathNode node, Object dest,
+                                  byte[] bound, FieldNameTranslator translator,
+                                  TypeAdapterCollection typeAdapters)
+            throws Exception, IncompatibleTypeException, DeserializationException {
+        if (node.leaves != null) {
+            for (BindingPlan.Slot slot : node.leaves) {
+                if (slot.precedence <= bound[slot.index])
+                    continue;
+
+                if (Config.DEBUG_DUMP_RESPONSE) {
+                    Logger.debug(TAG, "read " + slot.binder.localName);
+                }
+                bindValue(cache, deserializer, slot.binder, dest, internalObject, translator,
+                        typeAdapters);
+                bound[slot.index] = (byte) slot.precedence;
+            }
+        }
+
+        if (node.children == null || internalObject == null ||
+                !deserializer.isObject(internalObject.getClass()))
+            return;
+
+        for (Map.Entry<String, BindingPlan.PathNode> e : node.children.entrySet()) {
+            if (deserializer.containsChild(internalObject, e.getKey())) {
+                visitPath(cache, deserializer, deserializer.queryObjectChild(internalObject, e.getKey()),
+                        e.getValue(), dest, bound, translator, typeAdapters);
+            }
+        }
+    }
+
+    private static void readValue(ReflectionCache cache, TokenReader reader, BindingPlan.Binder b,
+                                  Object dest, FieldNameTranslator translator,
+                                  TypeAdapterCollection typeAdapters)
+            throws Exception, IncompatibleTypeException, DeserializationException {
+        switch (reader.peek()) {
+            case BEGIN_ARRAY:
+                if (((b.kind == BindingPlan.Kind.COLLECTION && b.value.collectionFactory != null) ||
+                        b.kind == BindingPlan.Kind.ARRAY) && !typeAdapters.contains(b.type)) {
+                    assign(b, dest, readElement(cache, reader, b.value, b.localName, translator,
+                            typeAdapters));
+                    return;
+                } else if (b.kind == BindingPlan.Kind.INT_ARRAY) {
+                    assign(b, dest, readIntArray(reader, b.localName));
+                    return;
+                } else if (b.kind == BindingPlan.Kind.LONG_ARRAY) {
+                    assign(b, dest, readLongArray(reader, b.localName));
+                    return;
+                } else if (b.kind == BindingPlan.Kind.DOUBLE_ARRAY) {
+                    assign(b, dest, readDoubleArray(reader, b.localName));
+                    return;
+                }
+                break;
+            case BEGIN_OBJECT:
+                if (b.kind == BindingPlan.Kind.OBJECT) {
+                    Object newObject = cache.newInstance(b.type);
+                    readObject(cache, reader, newObject, translator, typeAdapters, false,
+                            b.typeArguments);
+                    assign(b, dest, newObject);
+                    return;
+                } else if (b.kind == BindingPlan.Kind.MAP && b.value.mapFactory != null &&
+                        !typeAdapters.contains(b.type)) {
+                    assign(b, dest, readElement(cache, reader, b.value, b.localName, translator,
+                            typeAdapters));
+                    return;
+                }
+                break;
+            case NUMBER:
+            case STRING:
+            case BOOLEAN:
+                TypeAdapter adapter = typeAdapters.query(b.type);
+                if (adapter instanceof ScalarTypeAdapter) {
+                    assign(b, dest, readAdapted(reader, (ScalarTypeAdapter) adapter));
+                    return;
+                } else if (adapter == null && reader.peek() == TokenReader.Token.NUMBER &&
+                        readNumber(reader, b, dest)) {
+                    return;
+                }
+                bindValue(cache, sTreeDeserializer, b, dest, reader.nextScalar(), translator,
+                        typeAdapters);
+                return;
+            default:
+                bindValue(cache, sTreeDeserializer, b, dest, reader.nextScalar(), translator,
+                        typeAdapters);
+                return;
+        }
+
+        if (b.kind == BindingPlan.Kind.IGNORED)
+            reader.skipValue();
+        else
+            bindValue(cache, sTreeDeserializer, b, dest, readTree(reader), translator, typeAdapters);
+    }
+
+    /* decodes a scalar token with an adapter, handing numbers over without formatting them */
+    private static Object readAdapted(TokenReader reader, ScalarTypeAdapter adapter)
+            throws DeserializationException {
+        switch (reader.peek()) {
+            case NUMBER:
+                if (reader.peekIntegral())
+                    return adapter.decodeLong(reader.nextLong());
+                return adapter.decodeDouble(reader.nextDouble());
+            case BOOLEAN:
+                return adapter.decodeBoolean(reader.nextBoolean());
+            default:
+                return adapter.decodeString(reader.nextString());
+        }
+    }
+
+    /* decodes a built-in value with an adapter, as readAdapted() does for tokens */
+    private static Object decodeAdapted(TypeAdapter adapter, Object value) throws DeserializationException {
+        if (adapter instanceof ScalarTypeAdapter) {
+            ScalarTypeAdapter scalar = (ScalarTypeAdapter) adapter;
+            if (value instanceof Integer || value instanceof Long ||
+                    value instanceof Short || value instanceof Byte)
+                return scalar.decodeLong(((Number) value).longValue());
+            else if (value instanceof Double || value instanceof Float)
+                return scalar.decodeDouble(((Number) value).doubleValue());
+            else if (value instanceof Boolean)
+                return scalar.decodeBoolean((Boolean) value);
+            else if (value instanceof CharSequence)
+                return scalar.decodeString((CharSequence) value);
+        }
+
+        return adapter.decode(value.toString());
+    }
+
+    /* stores a number token into a numeric member without boxing it, if the member is one */
+    private static boolean readNumber(TokenReader reader, BindingPlan.Binder b, Object dest)
+            throws Exception, DeserializationException {
+        switch (b.kind) {
+            case INTEGER:
+                b.accessor.setInt(dest, reader.nextInt());
+                return true;
+            case INTEGER_BOXED:
+                assign(b, dest, reader.nextInt());
+                return true;
+            case LONG:
+                b.accessor.setLong(dest, reader.nextLong());
+                return true;
+            case LONG_BOXED:
+                assign(b, dest, reader.nextLong());
+                return true;
+            case FLOAT:
+                b.accessor.setFloat(dest, (float) reader.nextDouble());
+                return true;
+            case FLOAT_BOXED:
+                assign(b, dest, (float) reader.nextDouble());
+                return true;
+            case DOUBLE:
+                b.accessor.setDouble(dest, reader.nextDouble());
+                return true;
+            case DOUBLE_BOXED:
+                assign(b, dest, reader.nextDouble());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int[] readIntArray(TokenReader reader, String fieldName)
+            throws DeserializationException, IncompatibleTypeException {
+        int[] output = new int[16];
+        int size = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (size == output.length)
+                output = Arrays.copyOf(output, size * 2);
+            if (reader.peek() == TokenReader.Token.NUMBER)
+                output[size++] = reader.nextInt();
+            else
+                output[size++] = CodecUtils.parseInteger(fieldName, nonNullElement(fieldName, reader.nextScalar()));
+        }
+        reader.endArray();
+
+        return size == output.length ? output : Arrays.copyOf(output, size);
+    }
+
+    private static long[] readLongArray(TokenReader reader, String fieldName)
+            throws DeserializationException, IncompatibleTypeException {
+        long[] output = new long[16];
+        int size = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (size == output.length)
+                output = Arrays.copyOf(output, size * 2);
+            if (reader.peek() == TokenReader.Token.NUMBER)
+                output[size++] = reader.nextLong();
+            else
+                output[size++] = CodecUtils.parseLong(fieldName, nonNullElement(fieldName, reader.nextScalar()));
+        }
+        reader.endArray();
+
+        return size == output.length ? output : Arrays.copyOf(output, size);
+    }
+
+    private static double[] readDoubleArray(TokenReader reader, String fieldName)
+            throws DeserializationException, IncompatibleTypeException {
+        double[] output = new double[16];
+        int size = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (size == output.length)
+                output = Arrays.copyOf(output, size * 2);
+            if (reader.peek() == TokenReader.Token.NUMBER)
+                output[size++] = reader.nextDouble();
+            else
+                output[size++] = CodecUtils.parseDouble(fieldName, nonNullElement(fieldName, reader.nextScalar()));
+        }
+        reader.endArray();
+
+        return size == output.length ? output : Arrays.copyOf(output, size);
+    }
+
+    /* primitive arrays have no room for null */
+    private static Object nonNullElement(String fieldName, Object element) throws IncompatibleTypeException {
+        if (element == null)
+            throw new IncompatibleTypeException(fieldName, "number", "null");
+        return element;
+    }
+
+    /* reads the next value as described by e; name is the member it is bound to */
+    private static Object readElement(ReflectionCache cache, TokenReader reader, BindingPlan.Element e,
+                                      String name, FieldNameTranslator translator,
+                                      TypeAdapterCollection typeAdapters)
+            throws Exception, IncompatibleTypeException, DeserializationException {
+        switch (reader.peek()) {
+            case NULL:
+                reader.nextNull();
+                return null;
+            case BEGIN_ARRAY:
+                if (typeAdapters.contains(e.type))
+                    break;
+
+                switch (e.kind) {
+                    case COLLECTION:
+                        if (e.collectionFactory == null)
+                            break;
+                        Collection<Object> collection = e.collectionFactory.newCollection(-1);
+                        readArray(cache, reader, collection, e.element, name, translator, typeAdapters);
+                        return collection;
+                    case ARRAY:
+                        List<Object> elements = new ArrayList<Object>();
+                        readArray(cache, reader, elements, e.element, name, translator, typeAdapters);
+                        return toArray(e.element.type, elements);
+                    case INT_ARRAY:
+                        return readIntArray(reader, name);
+                    case LONG_ARRAY:
+                        return readLongArray(reader, name);
+                    case DOUBLE_ARRAY:
+                        return readDoubleArray(reader, name);
+                }
+                break;
+            case BEGIN_OBJECT:
+                if (typeAdapters.contains(e.type))
+                    break;
+
+                if (e.kind == BindingPlan.Kind.OBJECT) {
+                    Object o = cache.newInstance(e.type);
+                    readObject(cache, reader, o, translator, typeAdapters, false, e.typeArguments);
+                    return o;
+                } else if (e.kind == BindingPlan.Kind.MAP && e.mapFactory != null) {
+                    Map<Object, Object> map = e.mapFactory.newMap(-1);
+                    readMap(cache, reader, map, e, name, translator, typeAdapters);
+                    return map;
+                }
+                break;
+            case NUMBER:
+            case STRING:
+            case BOOLEAN:
+                TypeAdapter adapter = typeAdapters.query(e.type);
+                if (adapter instanceof ScalarTypeAdapter)
+                    return readAdapted(reader, (ScalarTypeAdapter) adapter);
+                return visitElement(cache, sTreeDeserializer, e, reader.nextScalar(), name, translator,
+                        typeAdapters);
+            default:
+                return visitElement(cache, sTreeDeserializer, e, reader.nextScalar(), name, translator,
+                        typeAdapters);
+        }
+
+        return visitElement(cache, sTreeDeserializer, e, readTree(reader), name, translator,
+                typeAdapters);
+    }
+
+    private static void readArray(ReflectionCache cache, TokenReader reader, Collection<Object> output,
+                                  BindingPlan.Element element, String name,
+                                  FieldNameTranslator translator, TypeAdapterCollection typeAdapters)
+            throws Exception, IncompatibleTypeException, DeserializationException {
+        reader.beginArray();
+        while (reader.hasNext())
+            output.add(readElement(cache, reader, element, name, translator, typeAdapters));
+        reader.endArray();
+    }
+
+    private static void readMap(ReflectionCache cache, TokenReader reader, Map<Object, Object> output,
+                                BindingPlan.Element map, String name,
+                                FieldNameTranslator translator, TypeAdapterCollection typeAdapters)
+            throws Exception, IncompatibleTypeException, DeserializationException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            Object key = convertKey(map.keyType, reader.nextName(), name, typeAdapters);
+            output.put(key, readElement(cache, reader, map.element, name, translator, typeAdapters));
+        }
+        reader.endObject();
+    }
+
+    /* reads the next value into Maps, Lists and scalars understood by TreeDeserializer */
+    private static Object readTree(TokenReader reader) throws DeserializationException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                Map<String, Object> object = new LinkedHashMap<String, Object>();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    object.put(name, readTree(reader));
+                }
+                reader.endObject();
+                return object;
+            case BEGIN_ARRAY:
+                List<Object> array = new ArrayList<Object>();
+                reader.beginArray();
+                while (reader.hasNext())
+                    array.add(readTree(reader));
+                reader.endArray();
+                return array;
+            default:
+                return reader.nextScalar();
+        }
+    }
+
+    private static void bindValue(ReflectionCache cache, ResponseDeserializer deserializer,
+                                  BindingPlan.Binder b, Object dest, Object value,
+                                  FieldNameTranslator translator, TypeAdapterCollection typeAdapters)
+            throws Exception, IncompatibleTypeException, DeserializationException {
+        String fieldName = b.localName;
+
+        if (value == null) {
+            if (b.field != null)
+                b.accessor.set(dest, null);
+            return;
+        }
+
+        TypeAdapter codec = typeAdapters.query(b.type);
+        if (codec != null && CodecUtils.isBuiltIn(value.getClass())) {
+            assign(b, dest, decodeAdapted(codec, value));
+            return;
+        }
+
+        switch (b.kind) {
+            case STRING:
+                assign(b, dest, value.toString());
+                break;
+            case INTEGER:
+                b.accessor.setInt(dest, CodecUtils.parseInteger(fieldName, value));
+                break;
+            case INTEGER_BOXED:
+                assign(b, dest, CodecUtils.parseInteger(fieldName, value));
+                break;
+            case LONG:
+                b.accessor.setLong(dest, CodecUtils.parseLong(fieldName, value));
+                break;
+            case LONG_BOXED:
+                assign(b, dest, CodecUtils.parseLong(fieldName, value));
+                break;
+            case COLLECTION:
+            case MAP:
+            case ARRAY:
+                Object container = visitElement(cache, deserializer, b.value, value, fieldName,
+                        translator, typeAdapters);
+                if (container != null)
+                    assign(b, dest, container);
+                break;
+            case BOOLEAN:
+                b.accessor.setBoolean(dest, CodecUtils.parseBoolean(fieldName, value));
+                break;
+            case BOOLEAN_BOXED:
+                assign(b, dest, CodecUtils.parseBoolean(fieldName, value));
+                break;
+            case FLOAT:
+                b.accessor.setFloat(dest, CodecUtils.parseFloat(fieldName, value));
+                break;
+            case FLOAT_BOXED:
+                assign(b, dest, CodecUtils.parseFloat(fieldName, value));
+                break;
+            case DOUBLE:
+                b.accessor.setDouble(dest, CodecUtils.parseDouble(fieldName, value));
+                break;
+            case DOUBLE_BOXED:
+                assign(b, dest, CodecUtils.parseDouble(fieldName, value));
+                break;
+            case ENUM:
+                assign(b, dest, CodecUtils.parseEnum(b.type, value.toString()));
+                break;
+            case INT_ARRAY:
+            case LONG_ARRAY:
+            case DOUBLE_ARRAY:
+                if (!deserializer.isArray(value.getClass())) {
+                    Logger.error(TAG, String.format("internal class of '%1$s' is not an array",
+                            fieldName));
+                    break;
+                }
+                assign(b, dest, toPrimitiveArray(b.kind, fieldName,
+                        deserializer.queryArrayChildren(value)));
+                break;
+            case OBJECT:
+                /* or it should be a POJO... */
+                Object newObject = cache.newInstance(b.type);
+                visitObject(cache, deserializer, value, newObject, translator,
+                        typeAdapters, false, b.typeArguments);
+                assign(b, dest, newObject);
+                break;
+            case IGNORED:
+                break;
+        }
+    }
+
+    private static void assign(BindingPlan.Binder b, Object dest, Object value)
+            throws IllegalAccessException, InvocationTargetException {
+        b.accessor.set(dest, value);
+    }
+
+    /* number of elements, or -1 if the deserializer does not tell it in advance */
+    private static int sizeOf(Iterable<?> elements) {
+        return elements instanceof Collection ? ((Collection) elements).size() : -1;
+    }
+
+    /**
+     * Converts a value of the tree into what e describes. Returns null after logging an error
+     * if the value does not have the shape of e, or if e cannot be created.
+     */
+    private static Object visitElement(ReflectionCache cache, ResponseDeserializer deserializer,
+                                       BindingPlan.Element e, Object value, String name,
+                                       FieldNameTranslator translator, TypeAdapterCollection typeAdapters)
+            throws Exception, IncompatibleTypeException, DeserializationException {
+        if (value == null)
+            return null;
+
+        TypeAdapter codec = typeAdapters.query(e.type);
+        if (codec != null && CodecUtils.isBuiltIn(value.getClass()))
+            return decodeAdapted(codec, value);
+
+        switch (e.kind) {
+            case COLLECTION:
+                if (e.collectionFactory == null) {
+                    Logger.error(TAG, String.format("no CollectionFactory is registered for '%1$s' of '%2$s'.",
+                            e.type.getName(), name));
+                    return null;
+                }
+                if (!deserializer.isArray(value.getClass()))
+                    break;
+                Iterable<Object> children = deserializer.queryArrayChildren(value);
+                Collection<Object> collection = e.collectionFactory.newCollection(sizeOf(children));
+                visitArray(cache, deserializer, children, collection, e.element, name, translator,
+                        typeAdapters);
+                return collection;
+            case ARRAY:
+                if (!deserializer.isArray(value.getClass()))
+                    break;
+                Iterable<Object> elements = deserializer.queryArrayChildren(value);
+                int size = sizeOf(elements);
+                List<Object> list = size >= 0 ? new ArrayList<Object>(size) : new ArrayList<Object>();
+                visitArray(cache, deserializer, elements, list, e.element, name, translator, typeAdapters);
+                return toArray(e.element.type, list);
+            case INT_ARRAY:
+            case LONG_ARRAY:
+            case DOUBLE_ARRAY:
+                if (!deserializer.isArray(value.getClass()))
+                    break;
+                return toPrimitiveArray(e.kind, name, deserializer.queryArrayChildren(value));
+            case MAP:
+                if (e.mapFactory == null) {
+                    Logger.error(TAG, String.format("no MapFactory is registered for '%1$s' of '%2$s'.",
+                            e.type.getName(), name));
+                    return null;
+                }
+                if (!(deserializer instanceof KeyedResponseDeserializer)) {
+                    Logger.warn(TAG, String.format("%1$s cannot enumerate object keys; skipping '%2$s'.",
+                            deserializer.getClass().getName(), name));
+                    return null;
+                }
+                if (!deserializer.isObject(value.getClass()))
+                    break;
+                Iterable<String> keys = ((KeyedResponseDeserializer) deserializer).queryObjectKeys(value);
+                Map<Object, Object> map = e.mapFactory.newMap(sizeOf(keys));
+                visitMap(cache, deserializer, value, keys, map, e, name, translator, typeAdapters);
+                return map;
+            case OBJECT:
+                if (!deserializer.isObject(value.getClass()))
+                    break;
+                Object o = cache.newInstance(e.type);
+                visitObject(cache, deserializer, value, o, translator, typeAdapters, false, e.typeArguments);
+                return o;
+            default:
+                return convertElement(e.type, value, name, typeAdapters);
+        }
+
+        Logger.error(TAG, String.format("internal class of '%1$s' does not match %2$s", name,
+                e.type.getName()));
+        return null;
+    }
+
+    private static void visitArray(ReflectionCache cache,
+                                   ResponseDeserializer deserializer, Iterable<Object> elements,
+                                   Collection<Object> output, BindingPlan.Element element, String name,
+                                   FieldNameTranslator translator, TypeAdapterCollection typeAdapters)
+            throws Exception, IncompatibleTypeException, DeserializationException {
+        for (Object child : elements)
+            output.add(visitElement(cache, deserializer, element, child, name, translator, typeAdapters));
+    }
+
+    private static void visitMap(ReflectionCache cache, ResponseDeserializer deserializer,
+                                 Object internalObject, Iterable<String> keys, Map<Object, Object> output,
+                                 BindingPlan.Element map, String name,
+                                 FieldNameTranslator translator, TypeAdapterCollection typeAdapters)
+            throws Exception, IncompatibleTypeException, DeserializationException {
+        for (String key : keys) {
+            Object child = deserializer.queryObjectChild(internalObject, key);
+            output.put(convertKey(map.keyType, key, name, typeAdapters),
+                    visitElement(cache, deserializer, map.element, child, name, translator, typeAdapters));
+        }
+    }
+
+    /* object keys are strings; convert them for maps keyed by numbers, enums and the like */
+    private static Object convertKey(Class keyType, String key, String name,
+                                     TypeAdapterCollection typeAdapters) throws DeserializationException {
+        if (keyType == String.class || keyType == Object.class)
+            return key;
+
+        return convertElement(keyType, key, name, typeAdapters);
+    }
+
+    /* copies elements into an array of the component type */
+    private static Object toArray(Class component, List<Object> elements) {
+        int size = elements.size();
+        Object array = Array.newInstance(component, size);
+        if (component.isPrimitive()) {
+            for (int i = 0; i < size; ++i)
+                Array.set(array, i, elements.get(i));
+        } else {
+            elements.toArray((Object[]) array);
+        }
+
+        return array;
+    }
+
+    private static Object toPrimitiveArray(BindingPlan.Kind kind, String fieldName,
+                                           Iterable<Object> elements)
+            throws IncompatibleTypeException {
+        List<Object> list;
+        if (elements instanceof List) {
+            list = (List<Object>) elements;
+        } else {
+            list = new ArrayList<Object>();
+            for (Object element : elements)
+                list.add(element);
+        }
+
+        int size = list.size();
+        switch (kind) {
+            case INT_ARRAY:
+                int[] ints = new int[size];
+                for (int i = 0; i < size; ++i)
+                    ints[i] = CodecUtils.parseInteger(fieldName, nonNullElement(fieldName, list.get(i)));
+                return ints;
+            case LONG_ARRAY:
+                long[] longs = new long[size];
+                for (int i = 0; i < size; ++i)
+                    longs[i] = CodecUtils.parseLong(fieldName, nonNullElement(fieldName, list.get(i)));
+                return longs;
+            default:
+                double[] doubles = new double[size];
+                for (int i = 0; i < size; ++i)
+                    doubles[i] = CodecUtils.parseDouble(fieldName, nonNullElement(fieldName, list.get(i)));
+                return doubles;
+        }
+    }
+
+    private static Object convertElement(Class innerType, Object element, String name,
+                                         TypeAdapterCollection typeAdapters)
+            throws DeserializationException {
+        try {
+            TypeAdapter codec = typeAdapters.query(innerType);
+            if (codec != null)
+                return decodeAdapted(codec, element);
+            else if (CodecUtils.isString(innerType))
+                return CodecUtils.parseString(element);
+            else if (CodecUtils.isInteger(innerType))
+                return CodecUtils.parseInteger(name, element);
+            else if (CodecUtils.isBoolean(innerType))
+                return CodecUtils.parseBoolean(name, element);
+            else if (CodecUtils.isDouble(innerType))
+                return CodecUtils.parseDouble(name, element);
+            else if (CodecUtils.isFloat(innerType))
+                return CodecUtils.parseFloat(name, element);
+            else if (CodecUtils.isLong(innerType))
+                return CodecUtils.parseLong(name, element);
+            else if (innerType.isEnum())
+                return CodecUtils.parseEnum(innerType, element.toString());
+        } catch (IncompatibleTypeException e) {
+            throw new DeserializationException(e);
+        }
+
+        return element;
+    }
+
+    /**
+     * Walks subtrees materialized by readTree() while streaming.
+     */
+    private static final class TreeDeserializer implements KeyedResponseDeserializer {
+
+        @Override
+        public Object parseInput(String input) throws DeserializationException {
+            throw new DeserializationException(new RpcException("Trees are only built by ObjectBuilder"));
+        }
+
+        @Override
+        public boolean containsChild(Object internalObject, String key) {
+            return internalObject instanceof Map && ((Map) internalObject).containsKey(key);
+        }
+
+        @Override
+        public Object queryObjectChild(Object internalObject, String key) {
+            if (!(internalObject instanceof Map))
+                return null;
+
+            return ((Map) internalObject).get(key);
+        }
+
+        @Override
+        public Iterable<Object> queryArrayChildren(Object internalArray) {
+            return (List<Object>) internalArray;
+        }
+
+        @Override
+        public Iterable<String> queryObjectKeys(Object internalObject) {
+            return ((Map<String, Object>) internalObject).keySet();
+        }
+
+        @Override
+        public boolean isObject(Class<?> internalClass) {
+            return Map.class.isAssignableFrom(internalClass);
+        }
+
+        @Override
+        public boolean isArray(Class<?> internalClass) {
+            return List.class.isAssignableFrom(internalClass);
+        }
+
+        @Override
+        public String deserializationContentType() {
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,535 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.lang.annotation.Annotation;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process-wide store of reflection metadata (public fields, getters, setters, member
+ * annotations and accessors) keyed by class.
+ *
+ * Members are read and written through {@link Accessor}s, which come from the generated
+ * {@link ObjectAdapter} of the class if there is one and from the installed
+ * {@link AccessorFactory} otherwise.
+ *
+ * All methods are safe to call from any number of threads. Classes are held through weak
+ * keys and their metadata through soft references, so the cache never keeps a class (or its
+ * class loader) alive on its own.
+ */
+public class ReflectionCache {
+    private static final String TAG = "ReflectionCache";
+
+    private static final ReflectionCache sSharedInstance = new ReflectionCache();
+
+    /* stands for a cached null annotation, as ConcurrentMap does not allow null values */
+    private static final Object NO_ANNOTATION = new Object();
+
+    /* stands for a class without a generated adapter */
+    private static final ObjectAdapter NO_ADAPTER = new ObjectAdapter() {
+        @Override
+        public Object newInstance() throws InstantiationException {
+            throw new InstantiationException();
+        }
+
+        @Override
+        public Accessor field(String name) {
+            return null;
+        }
+
+        @Override
+        public Accessor method(String name) {
+            return null;
+        }
+    };
+
+    public static ReflectionCache getSharedInstance() {
+        return sSharedInstance;
+    }
+
+    private static final class ClassKey extends WeakReference<Class> {
+        private final int mHashCode;
+
+        public ClassKey(Class clazz, ReferenceQueue<Class> queue) {
+            super(clazz, queue);
+            mHashCode = System.identityHashCode(clazz);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this)
+                return true;
+            if (other instanceof ClassKey)
+                return get() != null && ((ClassKey) other).get() == get();
+            if (other instanceof LookupKey)
+                return ((LookupKey) other).clazz == get();
+            return false;
+        }
+    }
+
+    /* strong, short-lived probe used for lookups so that no reference object is allocated */
+    private static final class LookupKey {
+        public final Class clazz;
+
+        public LookupKey(Class clazz) {
+            this.clazz = clazz;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(clazz);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ClassKey && ((ClassKey) other).get() == clazz;
+        }
+    }
+
+    private static final class MemberAnnotationKey {
+        public final Member member;
+        public final Class<? extends Annotation> annotation;
+
+        public MemberAnnotationKey(Member member, Class<? extends Annotation> annotation) {
+            this.member = member;
+            this.annotation = annotation;
+        }
+
+        @Override
+        public int hashCode() {
+            return member.hashCode() ^ annotation.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other_) {
+            if (!(other_ instanceof MemberAnnotationKey))
+                return false;
+
+            MemberAnnotationKey other = (MemberAnnotationKey) other_;
+            return other.member.equals(member) && other.annotation == annotation;
+        }
+    }
+
+    private static final class ClassMetadata {
+        public final ConcurrentMap<Class<? extends Annotation>, List<Field>> annotatedFields;
+        public final ConcurrentMap<Class<? extends Annotation>, List<Method>> annotatedGetterMethods;
+        public final ConcurrentMap<Class<? extends Annotation>, List<Method>> annotatedSetterMethods;
+        public final ConcurrentMap<MemberAnnotationKey, Object> memberAnnotations;
+        public final ConcurrentMap<BindingPlan.Key, BindingPlan> bindingPlans;
+        public final ConcurrentMap<Member, Accessor> accessors;
+        public final ConcurrentMap<Object, Object> codecPlans;
+        public volatile ObjectAdapter adapter;
+        public volatile List<Field> fields;
+        public volatile List<Method> getterMethods;
+        public volatile List<Method> setterMethods;
+
+        public ClassMetadata() {
+            annotatedFields = new ConcurrentHashMap<Class<? extends Annotation>, List<Field>>(4);
+            annotatedGetterMethods = new ConcurrentHashMap<Class<? extends Annotation>, List<Method>>(4);
+            annotatedSetterMethods = new ConcurrentHashMap<Class<? extends Annotation>, List<Method>>(4);
+            memberAnnotations = new ConcurrentHashMap<MemberAnnotationKey, Object>();
+            bindingPlans = new ConcurrentHashMap<BindingPlan.Key, BindingPlan>(4);
+            accessors = new ConcurrentHashMap<Member, Accessor>();
+            codecPlans = new ConcurrentHashMap<Object, Object>(4);
+        }
+    }
+
+    private final ConcurrentMap<Object, SoftReference<ClassMetadata>> mClasses;
+    private final ReferenceQueue<Class> mCollectedClasses;
+    private volatile AccessorFactory mAccessorFactory;
+    private final ConcurrentMap<Class, CollectionFactory> mCollectionFactories;
+    private final ConcurrentMap<Class, MapFactory> mMapFactories;
+
+    public ReflectionCache() {
+        mClasses = new ConcurrentHashMap<Object, SoftReference<ClassMetadata>>();
+        mCollectedClasses = new ReferenceQueue<Class>();
+        mAccessorFactory = new ReflectiveAccessorFactory();
+        mCollectionFactories = new ConcurrentHashMap<Class, CollectionFactory>();
+        mMapFactories = new ConcurrentHashMap<Class, MapFactory>();
+    }
+
+    /**
+     * Replaces the factory of accessors for members without generated code. Accessors (and
+     * binding plans holding them) created so far are dropped.
+     */
+    public void setAccessorFactory(AccessorFactory factory) {
+        mAccessorFactory = factory;
+        clear();
+    }
+
+    public AccessorFactory getAccessorFactory() {
+        return mAccessorFactory;
+    }
+
+    /**
+     * Creates collections of the given type with factory, for types the built-in collections
+     * do not cover such as abstract or presized custom collections. Binding plans created so
+     * far are dropped.
+     */
+    public void registerCollectionFactory(Class<?> type, CollectionFactory factory) {
+        mCollectionFactories.put(type, factory);
+        clear();
+    }
+
+    /* the factory of collections of the given type, or null if it cannot be created */
+    public CollectionFactory getCollectionFactory(Class type) {
+        CollectionFactory factory = mCollectionFactories.get(type);
+        if (factory != null)
+            return factory;
+
+        return CollectionFactories.forType(this, type);
+    }
+
+    /**
+     * Creates maps of the given type with factory. Registering MapFactory.INSERTION_ORDERED or
+     * MapFactory.OPEN_ADDRESSING for Map.class changes the map plain Map members get. Binding
+     * plans created so far are dropped.
+     */
+    public void registerMapFactory(Class<?> type, MapFactory factory) {
+        mMapFactories.put(type, factory);
+        clear();
+    }
+
+    /* the factory of maps of the given type, or null if it cannot be created */
+    public MapFactory getMapFactory(Class type) {
+        MapFactory factory = mMapFactories.get(type);
+        if (factory != null)
+            return factory;
+
+        return MapFactories.forType(this, type);
+    }
+
+    private ClassMetadata queryMetadata(Class clazz) {
+        SoftReference<ClassMetadata> ref = mClasses.get(new LookupKey(clazz));
+        if (ref == null)
+            return null;
+
+        return ref.get();
+    }
+
+    private ClassMetadata obtainMetadata(Class clazz) {
+        ClassMetadata metadata = queryMetadata(clazz);
+        if (metadata != null)
+            return metadata;
+
+        expungeCollectedClasses();
+
+        /* a racing thread may have filled its entry already, so the first one stays */
+        metadata = new ClassMetadata();
+        SoftReference<ClassMetadata> ref = new SoftReference<ClassMetadata>(metadata);
+        ClassKey key = new ClassKey(clazz, mCollectedClasses);
+        while (true) {
+            SoftReference<ClassMetadata> existing = mClasses.putIfAbsent(key, ref);
+            if (existing == null)
+                return metadata;
+
+            ClassMetadata winner = existing.get();
+            if (winner != null)
+                return winner;
+
+            /* the entry was collected; take its place */
+            if (mClasses.replace(key, existing, ref))
+                return metadata;
+        }
+    }
+
+    private void expungeCollectedClasses() {
+        Object key;
+        while ((key = mCollectedClasses.poll()) != null)
+            mClasses.remove(key);
+    }
+
+    public void clear() {
+        mClasses.clear();
+    }
+
+    public List<Field> queryCachedAnnotatedFields(Class<? extends Annotation> annotation,
+                                                  Class baseClass) {
+        ClassMetadata metadata = queryMetadata(baseClass);
+        if (metadata == null)
+            return null;
+
+        return metadata.annotatedFields.get(annotation);
+    }
+
+    public List<Method> queryCachedAnnotatedGetterMethods(Class<? extends Annotation> annotation,
+                                                          Class baseClass) {
+        ClassMetadata metadata = queryMetadata(baseClass);
+        if (metadata == null)
+            return null;
+
+        return metadata.annotatedGetterMethods.get(annotation);
+    }
+
+    public List<Method> queryCachedAnnotatedSetterMethods(Class<? extends Annotation> annotation,
+                                                          Class baseClass) {
+        ClassMetadata metadata = queryMetadata(baseClass);
+        if (metadata == null)
+            return null;
+
+        return metadata.annotatedSetterMethods.get(annotation);
+    }
+
+    public List<Field> queryCachedFields(Class baseClass) {
+        ClassMetadata metadata = queryMetadata(baseClass);
+        if (metadata == null)
+            return null;
+
+        return metadata.fields;
+    }
+
+    public List<Method> queryCachedGetterMethods(Class baseClass) {
+        ClassMetadata metadata = queryMetadata(baseClass);
+        if (metadata == null)
+            return null;
+
+        return metadata.getterMethods;
+    }
+
+    public List<Method> queryCachedSetterMethods(Class baseClass) {
+        ClassMetadata metadata = queryMetadata(baseClass);
+        if (metadata == null)
+            return null;
+
+        return metadata.setterMethods;
+    }
+
+    public Annotation queryFieldAnnotation(Field field, Class<? extends Annotation> annotationClass) {
+        return queryMemberAnnotation(field, annotationClass);
+    }
+
+    public Annotation queryMethodAnnotation(Method method, Class<? extends Annotation> annotationClass) {
+        return queryMemberAnnotation(method, annotationClass);
+    }
+
+    /**
+     * Returns the annotation of the field, reading and caching it on first access.
+     */
+    public <T extends Annotation> T getFieldAnnotation(Field field, Class<T> annotationClass) {
+        return getMemberAnnotation(field, field, annotationClass);
+    }
+
+    /**
+     * Returns the annotation of the method, reading and caching it on first access.
+     */
+    public <T extends Annotation> T getMethodAnnotation(Method method, Class<T> annotationClass) {
+        return getMemberAnnotation(method, method, annotationClass);
+    }
+
+    public void cacheAnnotatedFields(Class<? extends Annotation> annotation, Class baseClass,
+                                     List<Field> fields) {
+        obtainMetadata(baseClass).annotatedFields.put(annotation, fields);
+    }
+
+    public void cacheAnnotatedGetterMethods(Class<? extends Annotation> annotation, Class baseClass,
+                                            List<Method> methods) {
+        obtainMetadata(baseClass).annotatedGetterMethods.put(annotation, methods);
+    }
+
+    public void cacheAnnotatedSetterMethods(Class<? extends Annotation> annotation, Class baseClass,
+                                            List<Method> methods) {
+        obtainMetadata(baseClass).annotatedSetterMethods.put(annotation, methods);
+    }
+
+    public void cacheFields(Class baseClass, List<Field> fields) {
+        obtainMetadata(baseClass).fields = fields;
+    }
+
+    public void cacheGetterMethods(Class baseClass, List<Method> methods) {
+        obtainMetadata(baseClass).getterMethods = methods;
+    }
+
+    public void cacheSetterMethods(Class baseClass, List<Method> methods) {
+        obtainMetadata(baseClass).setterMethods = methods;
+    }
+
+    public void cacheFieldAnnotation(Field field, Class<? extends Annotation> annotationClass, Annotation a) {
+        cacheMemberAnnotation(field, annotationClass, a);
+    }
+
+    public void cacheMethodAnnotation(Method method, Class<? extends Annotation> annotationClass, Annotation a) {
+        cacheMemberAnnotation(method, annotationClass, a);
+    }
+
+    public boolean containsFieldAnnotation(Field field, Class<? extends Annotation> annotationClass) {
+        return containsMemberAnnotation(field, annotationClass);
+    }
+
+    public boolean containsMethodAnnotation(Method method, Class<? extends Annotation> annotationClass) {
+        return containsMemberAnnotation(method, annotationClass);
+    }
+
+    /**
+     * Returns the generated adapter of the class, or null if it has none.
+     */
+    public ObjectAdapter getObjectAdapter(Class clazz) {
+        ClassMetadata metadata = obtainMetadata(clazz);
+        ObjectAdapter adapter = metadata.adapter;
+        if (adapter == null) {
+            adapter = loadObjectAdapter(clazz);
+            metadata.adapter = adapter;
+        }
+
+        return adapter != NO_ADAPTER ? adapter : null;
+    }
+
+    /**
+     * Creates an instance of the class through its generated adapter, or through
+     * Class.newInstance() if it has none.
+     */
+    public Object newInstance(Class clazz) throws InstantiationException, IllegalAccessException {
+        ObjectAdapter adapter = getObjectAdapter(clazz);
+        if (adapter != null)
+            return adapter.newInstance();
+
+        return clazz.newInstance();
+    }
+
+    /**
+     * Returns the accessor of a public field of clazz (possibly declared by a superclass).
+     */
+    public Accessor getAccessor(Class clazz, Field field) {
+        ClassMetadata metadata = obtainMetadata(clazz);
+        Accessor accessor = metadata.accessors.get(field);
+        if (accessor == null) {
+            ObjectAdapter adapter = getObjectAdapter(clazz);
+            if (adapter != null)
+                accessor = adapter.field(field.getName());
+            if (accessor == null)
+                accessor = mAccessorFactory.newAccessor(field);
+            metadata.accessors.put(field, accessor);
+        }
+
+        return accessor;
+    }
+
+    /**
+     * Returns the accessor of a public getter or setter of clazz (possibly declared by a
+     * superclass).
+     */
+    public Accessor getAccessor(Class clazz, Method method) {
+        ClassMetadata metadata = obtainMetadata(clazz);
+        Accessor accessor = metadata.accessors.get(method);
+        if (accessor == null) {
+            ObjectAdapter adapter = getObjectAdapter(clazz);
+            if (adapter != null)
+                accessor = adapter.method(method.getName());
+            if (accessor == null)
+                accessor = mAccessorFactory.newAccessor(method);
+            metadata.accessors.put(method, accessor);
+        }
+
+        return accessor;
+    }
+
+    private static ObjectAdapter loadObjectAdapter(Class clazz) {
+        ClassLoader loader = clazz.getClassLoader();
+        if (loader == null || clazz.isPrimitive() || clazz.isArray())
+            return NO_ADAPTER;
+
+        try {
+            Class adapterClass = Class.forName(clazz.getName() + ObjectAdapter.CLASS_SUFFIX, true, loader);
+            return (ObjectAdapter) adapterClass.newInstance();
+        } catch (ClassNotFoundException e) {
+            return NO_ADAPTER;
+        } catch (InstantiationException e) {
+            Logger.error(TAG, String.format("Could not load adapter of %1$s: %2$s", clazz.getName(), e));
+        } catch (IllegalAccessException e) {
+            Logger.error(TAG, String.format("Could not load adapter of %1$s: %2$s", clazz.getName(), e));
+        } catch (ClassCastException e) {
+            Logger.error(TAG, String.format("Could not load adapter of %1$s: %2$s", clazz.getName(), e));
+        } catch (LinkageError e) {
+            Logger.error(TAG, String.format("Could not load adapter of %1$s: %2$s", clazz.getName(), e));
+        }
+
+        return NO_ADAPTER;
+    }
+
+    BindingPlan queryBindingPlan(Class clazz, BindingPlan.Key key) {
+        ClassMetadata metadata = queryMetadata(clazz);
+        if (metadata == null)
+            return null;
+
+        return metadata.bindingPlans.get(key);
+    }
+
+    void cacheBindingPlan(Class clazz, BindingPlan.Key key, BindingPlan plan) {
+        obtainMetadata(clazz).bindingPlans.put(key, plan);
+    }
+
+    /**
+     * Returns what a codec has precompiled for clazz under key (such as encoded field names),
+     * or null. Plans are dropped along with the rest of the metadata of the class.
+     */
+    public Object queryCodecPlan(Class clazz, Object key) {
+        ClassMetadata metadata = queryMetadata(clazz);
+        if (metadata == null)
+            return null;
+
+        return metadata.codecPlans.get(key);
+    }
+
+    public void cacheCodecPlan(Class clazz, Object key, Object plan) {
+        obtainMetadata(clazz).codecPlans.put(key, plan);
+    }
+
+    /*
+     * looks the annotation up once, so that metadata collected or cleared in the meantime is a
+     * cache miss rather than a missing annotation
+     */
+    private <T extends Annotation> T getMemberAnnotation(Member member, AnnotatedElement element,
+                                                         Class<T> annotationClass) {
+        MemberAnnotationKey key = new MemberAnnotationKey(member, annotationClass);
+        ClassMetadata metadata = obtainMetadata(member.getDeclaringClass());
+        Object cached = metadata.memberAnnotations.get(key);
+        if (cached != null)
+            return cached != NO_ANNOTATION ? (T) cached : null;
+
+        T annotation = element.getAnnotation(annotationClass);
+        metadata.memberAnnotations.put(key, annotation != null ? annotation : NO_ANNOTATION);
+        return annotation;
+    }
+
+    private Annotation queryMemberAnnotation(Member member, Class<? extends Annotation> annotationClass) {
+        ClassMetadata metadata = queryMetadata(member.getDeclaringClass());
+        if (metadata == null)
+            return null;
+
+        Object a = metadata.memberAnnotations.get(new MemberAnnotationKey(member, annotationClass));
+        if (a == null || a == NO_ANNOTATION)
+            return null;
+
+        return (Annotation) a;
+    }
+
+    private boolean containsMemberAnnotation(Member member, Class<? extends Annotation> annotationClass) {
+        ClassMetadata metadata = queryMetadata(member.getDeclaringClass());
+        if (metadata == null)
+            return false;
+
+        return metadata.memberAnnotations.containsKey(new MemberAnnotationKey(member, annotationClass));
+    }
+
+    private void cacheMemberAnnotation(Member member, Class<? extends Annotation> annotationClass,
+                                       Annotation a) {
+        obtainMetadata(member.getDeclaringClass()).memberAnnotations.put(
+                new MemberAnnotationKey(member, annotationClass), a != null ? a : NO_ANNOTATION);
+    }
+
+}
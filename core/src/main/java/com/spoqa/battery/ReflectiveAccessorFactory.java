@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Accessors backed by core reflection. Works on every platform, and is the default.
+ */
+public class ReflectiveAccessorFactory implements AccessorFactory {
+
+    @Override
+    public Accessor newAccessor(Field field) {
+        return new FieldAccessor(field);
+    }
+
+    @Override
+    public Accessor newAccessor(Method method) {
+        return new MethodAccessor(method);
+    }
+
+    private static final class FieldAccessor implements Accessor {
+        private final Field mField;
+
+        public FieldAccessor(Field field) {
+            mField = field;
+        }
+
+        @Override
+        public Object get(Object target) throws IllegalAccessException {
+            return mField.get(target);
+        }
+
+        @Override
+        public void set(Object target, Object value) throws IllegalAccessException {
+            mField.set(target, value);
+        }
+
+        @Override
+        public void setInt(Object target, int value) throws IllegalAccessException {
+            mField.setInt(target, value);
+        }
+
+        @Override
+        public void setLong(Object target, long value) throws IllegalAccessException {
+            mField.setLong(target, value);
+        }
+
+        @Override
+        public void setFloat(Object target, float value) throws IllegalAccessException {
+            mField.setFloat(target, value);
+        }
+
+        @Override
+        public void setDouble(Object target, double value) throws IllegalAccessException {
+            mField.setDouble(target, value);
+        }
+
+        @Override
+        public void setBoolean(Object target, boolean value) throws IllegalAccessException {
+            mField.setBoolean(target, value);
+        }
+    }
+
+    private static final class MethodAccessor implements Accessor {
+        private final Method mMethod;
+
+        public MethodAccessor(Method method) {
+            mMethod = method;
+        }
+
+        @Override
+        public Object get(Object target) throws IllegalAccessException, InvocationTargetException {
+            return mMethod.invoke(target);
+        }
+
+        @Override
+        public void set(Object target, Object value) throws IllegalAccessException, InvocationTargetException {
+            mMethod.invoke(target, value);
+        }
+
+        @Override
+        public void setInt(Object target, int value) throws IllegalAccessException, InvocationTargetException {
+            mMethod.invoke(target, value);
+        }
+
+        @Override
+        public void setLong(Object target, long value) throws IllegalAccessException, InvocationTargetException {
+            mMethod.invoke(target, value);
+        }
+
+        @Override
+        public void setFloat(Object target, float value) throws IllegalAccessException, InvocationTargetException {
+            mMethod.invoke(target, value);
+        }
+
+        @Override
+        public void setDouble(Object target, double value) throws IllegalAccessException, InvocationTargetException {
+            mMethod.invoke(target, value);
+        }
+
+        @Override
+        public void setBoolean(Object target, boolean value) throws IllegalAccessException, InvocationTargetException {
+            mMethod.invoke(target, value);
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.codecs.UrlEncodedFormEncoder;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-class parts of a request which do not depend on the RpcObject instance, resolved once
+ * by {@link RpcContext} and reused by {@link RequestFactory}.
+ */
+final class RequestDescriptor {
+    private static final String TAG = "RequestDescriptor";
+
+    /*
+     * transformers declared by RpcObject annotations, one per class, so that every descriptor
+     * using a class shares its translator's memoized names and binding plans
+     */
+    private static final ConcurrentMap<Class, FieldNameTransformer> sDeclaredTransformers =
+            new ConcurrentHashMap<Class, FieldNameTransformer>();
+
+    private final RpcObject mAnnotation;
+    private final FieldNameTranslator mNameTranslator;
+    private final UriTemplate mUriTemplate;
+    /* RpcObject.NULL if the context's serializer (or none) is used */
+    private final Class mSerializerClass;
+    private final RequestSerializer mSharedSerializer;
+
+    private RequestDescriptor(RpcObject annotation, FieldNameTranslator nameTranslator,
+                              UriTemplate uriTemplate, Class serializerClass,
+                              RequestSerializer sharedSerializer) {
+        mAnnotation = annotation;
+        mNameTranslator = nameTranslator;
+        mUriTemplate = uriTemplate;
+        mSerializerClass = serializerClass;
+        mSharedSerializer = sharedSerializer;
+    }
+
+    public RpcObject annotation() {
+        return mAnnotation;
+    }
+
+    public FieldNameTranslator nameTranslator() {
+        return mNameTranslator;
+    }
+
+    public UriTemplate uriTemplate() {
+        return mUriTemplate;
+    }
+
+    public boolean hasSerializer() {
+        return mSerializerClass != RpcObject.NULL.class;
+    }
+
+    /**
+     * Returns the serializer declared by the RpcObject: the shared instance if it is
+     * stateless, a fresh one otherwise.
+     */
+    public RequestSerializer serializer() throws InstantiationException, IllegalAccessException {
+        if (mSharedSerializer != null)
+            return mSharedSerializer;
+
+        return (RequestSerializer) mSerializerClass.newInstance();
+    }
+
+    /**
+     * Resolves the descriptor of the given RpcObject class, or returns null after logging
+     * why it could not be.
+     */
+    public static RequestDescriptor create(RpcContext context, Class clazz) {
+        RpcObject annotation = (RpcObject) clazz.getAnnotation(RpcObject.class);
+        if (annotation == null) {
+            Logger.error(TAG, String.format("Attempted to create a request from non-RpcObject"));
+            return null;
+        }
+
+        try {
+            FieldNameTransformer remote, local;
+            local = context.getLocalFieldNameTransformer();
+            remote = context.getRemoteFieldNameTransformer();
+            if (annotation.remoteName() != RpcObject.NULL.class)
+                remote = declaredTransformer(annotation.remoteName());
+            if (annotation.localName() != RpcObject.NULL.class)
+                local = declaredTransformer(annotation.localName());
+            FieldNameTranslator nameTranslator = new FieldNameTranslator(remote, local);
+
+            UriTemplate uriTemplate = UriTemplate.compile(ReflectionCache.getSharedInstance(), clazz,
+                    annotation, context.getDefaultUriPrefix(), nameTranslator);
+            if (uriTemplate == null)
+                return null;
+
+            Class serializerClass = annotation.requestSerializer();
+            int method = annotation.method();
+            if ((method == HttpRequest.Methods.POST || method == HttpRequest.Methods.PUT) &&
+                    serializerClass == RpcObject.NULL.class && context.getRequestSerializer() == null)
+                serializerClass = UrlEncodedFormEncoder.class;
+
+            RequestSerializer sharedSerializer = null;
+            if (StatelessRequestSerializer.class.isAssignableFrom(serializerClass))
+                sharedSerializer = (RequestSerializer) serializerClass.newInstance();
+
+            return new RequestDescriptor(annotation, nameTranslator, uriTemplate,
+                    serializerClass, sharedSerializer);
+        } catch (InstantiationException e) {
+            e.printStackTrace();
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    private static FieldNameTransformer declaredTransformer(Class clazz)
+            throws InstantiationException, IllegalAccessException {
+        FieldNameTransformer transformer = sDeclaredTransformers.get(clazz);
+        if (transformer == null) {
+            transformer = (FieldNameTransformer) clazz.newInstance();
+            FieldNameTransformer existing = sDeclaredTransformers.putIfAbsent(clazz, transformer);
+            if (existing != null)
+                transformer = existing;
+        }
+
+        return transformer;
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.exceptions.ContextException;
+import com.spoqa.battery.exceptions.SerializationException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public final class RequestFactory {
+    private static final String TAG = "RequestFactory";
+
+    public static HttpRequest createRequest(RpcContext context, Object object)
+            throws SerializationException, ContextException {
+        /* validate current preprocessor context (if exists) */
+        if (context.getRequestPreprocessor() != null)
+            context.getRequestPreprocessor().validateContext(object);
+
+        RequestDescriptor descriptor = context.getRequestDescriptor(object.getClass());
+        if (descriptor == null) {
+            Logger.error(TAG, "Failed to create request.");
+            return null;
+        }
+
+        RpcObject annotation = descriptor.annotation();
+        FieldNameTranslator nameTranslator = descriptor.nameTranslator();
+        TypeAdapterCollection typeAdapters = context.getTypeAdapters();
+
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        int method = annotation.method();
+        String uri = descriptor.uriTemplate().render(object, parameters, typeAdapters);
+        if (uri == null) {
+            Logger.error(TAG, "Failed to create request.");
+            return null;
+        }
+
+        HttpRequest request = new HttpRequest(method, uri);
+        request.setNameTranslator(nameTranslator);
+        request.putParameters(parameters);
+        request.setRequestObject(object);
+
+        /* set request body */
+        if (method == HttpRequest.Methods.POST || method == HttpRequest.Methods.PUT) {
+            if (descriptor.hasSerializer()) {
+                try {
+                    RequestSerializer serializer = descriptor.serializer();
+                    request.putHeader(HttpRequest.HEADER_CONTENT_TYPE, serializer.serializationContentType());
+                    setRequestBody(request, serializer, object, nameTranslator, typeAdapters);
+                } catch (InstantiationException e) {
+                    e.printStackTrace();
+                } catch (IllegalAccessException e) {
+                    e.printStackTrace();
+                }
+            } else if (context.getRequestSerializer() != null) {
+                RequestSerializer serializer = context.getRequestSerializer();
+                request.setContentType(serializer.serializationContentType());
+                setRequestBody(request, serializer, object, nameTranslator, typeAdapters);
+            } else {
+                Logger.warn(TAG, String.format("Current RpcObject %1$s does not have " +
+                                "RequestSerializer specified.", object.getClass().getName()));
+            }
+        }
+
+        /* apply custom request processing middleware */
+        if (context.getRequestPreprocessor() != null)
+            context.getRequestPreprocessor().processHttpRequest(object, request);
+
+        return request;
+    }
+
+    private static void setRequestBody(HttpRequest request, RequestSerializer serializer, Object object,
+                                       FieldNameTranslator nameTranslator, TypeAdapterCollection typeAdapters)
+            throws SerializationException {
+        if (serializer instanceof StreamingRequestSerializer)
+            request.setRequestBody(((StreamingRequestSerializer) serializer).serializeBody(object,
+                    nameTranslator, typeAdapters));
+        else
+            request.setRequestBody(serializer.serializeObject(object, nameTranslator, typeAdapters));
+    }
+}
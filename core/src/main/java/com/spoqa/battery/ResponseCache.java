@@ -0,0 +1,388 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Raw response bodies of GET calls by URI and request headers, used by {@link RpcContext} to
+ * answer calls without the network while a response is fresh, and to revalidate it with a
+ * conditional request once it is not.
+ *
+ * Entries are kept in memory up to a number of bytes, the least recently used ones evicted
+ * first, and optionally in a directory bounded the same way, where entries evicted from memory
+ * are still found. Safe to use from several threads, but a directory must not be shared by two
+ * caches.
+ */
+public class ResponseCache {
+    private static final String TAG = "ResponseCache";
+
+    private static final int DISK_FORMAT_VERSION = 1;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * A stored response. Immutable; revalidating a response stores a new entry with the same body.
+     */
+    public static final class Entry {
+        private final byte[] mBody;
+        private final String mContentType;
+        private final String mETag;
+        private final String mLastModified;
+        /* epoch milliseconds the response was generated at, and how long it may be used after */
+        private final long mDate;
+        private final long mMaxAge;
+        private final long mStaleWhileRevalidate;
+
+        public Entry(byte[] body, String contentType, String etag, String lastModified, long date,
+                     long maxAge, long staleWhileRevalidate) {
+            mBody = body;
+            mContentType = contentType;
+            mETag = etag;
+            mLastModified = lastModified;
+            mDate = date;
+            mMaxAge = maxAge;
+            mStaleWhileRevalidate = staleWhileRevalidate;
+        }
+
+        public byte[] body() {
+            return mBody;
+        }
+
+        public String contentType() {
+            return mContentType;
+        }
+
+        public String etag() {
+            return mETag;
+        }
+
+        public String lastModified() {
+            return mLastModified;
+        }
+
+        public long date() {
+            return mDate;
+        }
+
+        public long maxAge() {
+            return mMaxAge;
+        }
+
+        public long staleWhileRevalidate() {
+            return mStaleWhileRevalidate;
+        }
+
+        public boolean isFresh(long now) {
+            return now - mDate < mMaxAge;
+        }
+
+        /* stale, but may still be used while it is revalidated in the background */
+        public boolean isStaleWhileRevalidate(long now) {
+            return !isFresh(now) && now - mDate < mMaxAge + mStaleWhileRevalidate;
+        }
+
+        public boolean hasValidators() {
+            return mETag != null || mLastModified != null;
+        }
+
+        /* approximate size counted against the bounds of the cache */
+        int size() {
+            return mBody.length + 2 * (length(mContentType) + length(mETag) + length(mLastModified)) + 64;
+        }
+
+        private static int length(String s) {
+            return s != null ? s.length() : 0;
+        }
+    }
+
+    private final long mMaxMemorySize;
+    private final LinkedHashMap<String, Entry> mMemory;
+    private long mMemorySize;
+
+    private final File mDirectory;
+    private final long mMaxDiskSize;
+    /* file names to their sizes, least recently used first; read from mDirectory on first use */
+    private LinkedHashMap<String, Long> mDiskIndex;
+    private long mDiskSize;
+
+    public ResponseCache(long maxMemorySize) {
+        this(maxMemorySize, null, 0);
+    }
+
+    /**
+     * @param directory directory entries are also written to, or null to keep them in memory only
+     */
+    public ResponseCache(long maxMemorySize, File directory, long maxDiskSize) {
+        mMaxMemorySize = maxMemorySize;
+        mMemory = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+        mDirectory = directory;
+        mMaxDiskSize = maxDiskSize;
+    }
+
+    public Entry get(String key) {
+        synchronized (mMemory) {
+            Entry entry = mMemory.get(key);
+            if (entry != null)
+                return entry;
+        }
+
+        if (mDirectory == null)
+            return null;
+
+        Entry entry = readFromDisk(key);
+        if (entry != null)
+            putInMemory(key, entry);
+
+        return entry;
+    }
+
+    public void put(String key, Entry entry) {
+        putInMemory(key, entry);
+        if (mDirectory != null)
+            writeToDisk(key, entry);
+    }
+
+    public void remove(String key) {
+        synchronized (mMemory) {
+            Entry removed = mMemory.remove(key);
+            if (removed != null)
+                mMemorySize -= removed.size();
+        }
+
+        if (mDirectory != null) {
+            synchronized (this) {
+                loadDiskIndex();
+                deleteFile(fileName(key));
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (mMemory) {
+            mMemory.clear();
+            mMemorySize = 0;
+        }
+
+        if (mDirectory != null) {
+            synchronized (this) {
+                loadDiskIndex();
+                for (String name : mDiskIndex.keySet())
+                    new File(mDirectory, name).delete();
+                mDiskIndex.clear();
+                mDiskSize = 0;
+            }
+        }
+    }
+
+    private void putInMemory(String key, Entry entry) {
+        int size = entry.size();
+
+        synchronized (mMemory) {
+            Entry replaced = mMemory.remove(key);
+            if (replaced != null)
+                mMemorySize -= replaced.size();
+
+            /* an entry larger than the whole cache would only evict everything else */
+            if (size > mMaxMemorySize)
+                return;
+
+            mMemory.put(key, entry);
+            mMemorySize += size;
+
+            Iterator<Entry> it = mMemory.values().iterator();
+            while (mMemorySize > mMaxMemorySize && it.hasNext()) {
+                mMemorySize -= it.next().size();
+                it.remove();
+            }
+        }
+    }
+
+    private synchronized Entry readFromDisk(String key) {
+        loadDiskIndex();
+
+        String name = fileName(key);
+        if (mDiskIndex.get(name) == null)
+            return null;
+
+        File file = new File(mDirectory, name);
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != DISK_FORMAT_VERSION || !in.readUTF().equals(key)) {
+                /* written by another version, or another key of the same hash */
+                in.close();
+                deleteFile(name);
+                return null;
+            }
+
+            String contentType = readNullableString(in);
+            String etag = readNullableString(in);
+            String lastModified = readNullableString(in);
+            long date = in.readLong();
+            long maxAge = in.readLong();
+            long staleWhileRevalidate = in.readLong();
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+
+            /* keeps the order of use across instances */
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(body, contentType, etag, lastModified, date, maxAge, staleWhileRevalidate);
+        } catch (IOException e) {
+            Logger.warn(TAG, String.format("Dropping unreadable cache entry %1$s: %2$s", name, e.getMessage()));
+            closeQuietly(in);
+            deleteFile(name);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private synchronized void writeToDisk(String key, Entry entry) {
+        loadDiskIndex();
+
+        String name = fileName(key);
+        deleteFile(name);
+        if (entry.size() > mMaxDiskSize)
+            return;
+
+        /* written aside first, so that a crash never leaves a truncated entry behind */
+        File temporary = new File(mDirectory, name + TEMPORARY_SUFFIX);
+        File file = new File(mDirectory, name);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+            out.writeInt(DISK_FORMAT_VERSION);
+            out.writeUTF(key);
+            writeNullableString(out, entry.contentType());
+            writeNullableString(out, entry.etag());
+            writeNullableString(out, entry.lastModified());
+            out.writeLong(entry.date());
+            out.writeLong(entry.maxAge());
+            out.writeLong(entry.staleWhileRevalidate());
+            out.writeInt(entry.body().length);
+            out.write(entry.body());
+            out.close();
+            out = null;
+
+            if (!temporary.renameTo(file))
+                throw new IOException("Could not rename " + temporary.getName());
+        } catch (IOException e) {
+            Logger.warn(TAG, String.format("Could not write cache entry %1$s: %2$s", name, e.getMessage()));
+            closeQuietly(out);
+            temporary.delete();
+            return;
+        }
+
+        long size = file.length();
+        mDiskIndex.put(name, size);
+        mDiskSize += size;
+
+        Iterator<Map.Entry<String, Long>> it = mDiskIndex.entrySet().iterator();
+        while (mDiskSize > mMaxDiskSize && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            new File(mDirectory, eldest.getKey()).delete();
+            mDiskSize -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    private void loadDiskIndex() {
+        if (mDiskIndex != null)
+            return;
+
+        mDiskIndex = new LinkedHashMap<String, Long>(16, 0.75f, true);
+        mDiskSize = 0;
+
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Logger.warn(TAG, "Could not create cache directory " + mDirectory.getPath());
+            return;
+        }
+
+        File[] files = mDirectory.listFiles();
+        if (files == null)
+            return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified(), r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+
+        for (File file : files) {
+            if (file.getName().endsWith(TEMPORARY_SUFFIX)) {
+                file.delete();
+                continue;
+            }
+
+            mDiskIndex.put(file.getName(), file.length());
+            mDiskSize += file.length();
+        }
+    }
+
+    private void deleteFile(String name) {
+        Long size = mDiskIndex.remove(name);
+        if (size != null) {
+            new File(mDirectory, name).delete();
+            mDiskSize -= size;
+        }
+    }
+
+    private static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            /* collisions are detected by the key stored in the entry */
+            return Integer.toHexString(key.hashCode());
+        } catch (UnsupportedEncodingException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null)
+            out.writeUTF(s);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null)
+            return;
+
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            /* nothing left to do */
+        }
+    }
+
+}
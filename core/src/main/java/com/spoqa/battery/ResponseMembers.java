@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.annotations.ResponseObject;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+/**
+ * The members of an RpcObject a response is decoded into, so that what one RpcObject has
+ * decoded can be copied into another of the same class: the {@link ResponseObject} field, or
+ * else the {@link Response} fields. Copies share the decoded values.
+ */
+final class ResponseMembers {
+    private static final String TAG = "ResponseMembers";
+
+    private static final Object PLAN_KEY = new Object();
+    /* stands for classes binding through setters, which cannot be read back */
+    private static final Accessor[] UNSUPPORTED = new Accessor[0];
+
+    private ResponseMembers() {
+
+    }
+
+    public static boolean isSupported(Class clazz) {
+        return members(clazz) != UNSUPPORTED;
+    }
+
+    /* the decoded values of rpcObject, or null if they could not be read */
+    public static Object[] capture(Object rpcObject) {
+        Accessor[] members = members(rpcObject.getClass());
+        Object[] values = new Object[members.length];
+        try {
+            for (int i = 0; i < members.length; ++i)
+                values[i] = members[i].get(rpcObject);
+            return values;
+        } catch (IllegalAccessException e) {
+            Logger.warn(TAG, String.format("Could not read %1$s: %2$s", rpcObject.getClass().getName(),
+                    e.getMessage()));
+        } catch (InvocationTargetException e) {
+            Logger.warn(TAG, String.format("Could not read %1$s: %2$s", rpcObject.getClass().getName(),
+                    e.getMessage()));
+        }
+
+        return null;
+    }
+
+    /* writes values taken by capture() from an object of the same class; false on failure */
+    public static boolean restore(Object rpcObject, Object[] values) {
+        Accessor[] members = members(rpcObject.getClass());
+        try {
+            for (int i = 0; i < members.length; ++i)
+                members[i].set(rpcObject, values[i]);
+            return true;
+        } catch (IllegalAccessException e) {
+            Logger.warn(TAG, String.format("Could not restore %1$s: %2$s",
+                    rpcObject.getClass().getName(), e.getMessage()));
+        } catch (InvocationTargetException e) {
+            Logger.warn(TAG, String.format("Could not restore %1$s: %2$s",
+                    rpcObject.getClass().getName(), e.getMessage()));
+        }
+
+        return false;
+    }
+
+    private static Accessor[] members(Class clazz) {
+        ReflectionCache cache = ReflectionCache.getSharedInstance();
+        Accessor[] members = (Accessor[]) cache.queryCodecPlan(clazz, PLAN_KEY);
+        if (members != null)
+            return members;
+
+        List<Field> fields = CodecUtils.getAnnotatedFields(cache, ResponseObject.class, clazz);
+        if (fields == null || fields.isEmpty()) {
+            if (!CodecUtils.getAnnotatedSetterMethods(cache, Response.class, clazz).isEmpty()) {
+                cache.cacheCodecPlan(clazz, PLAN_KEY, UNSUPPORTED);
+                return UNSUPPORTED;
+            }
+            fields = CodecUtils.getAnnotatedFields(cache, Response.class, clazz);
+        }
+
+        members = new Accessor[fields.size()];
+        for (int i = 0; i < members.length; ++i)
+            members[i] = cache.getAccessor(clazz, fields.get(i));
+
+        cache.cacheCodecPlan(clazz, PLAN_KEY, members);
+        return members;
+    }
+
+}
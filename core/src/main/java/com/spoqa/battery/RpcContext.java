@@ -0,0 +1,678 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.exceptions.ContextException;
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.exceptions.ResponseValidationException;
+import com.spoqa.battery.exceptions.RpcException;
+import com.spoqa.battery.exceptions.SerializationException;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import rx.Observable;
+import rx.subjects.PublishSubject;
+
+/**
+ * Configuration shared by all calls made through a transport, and the transport-neutral
+ * parts of a call: building the request, binding the response and dispatching the result.
+ *
+ * @param <C> frontend context handed to exception handlers, e.g. an Android Context
+ */
+public abstract class RpcContext<C> {
+
+    static final private String TAG = "ExecutionContext";
+
+    /**
+     * Receives the response to a request which was not built for an RpcObject, such as a batch,
+     * on a thread it may be decoded on.
+     */
+    public interface RawResponseHandler {
+        public void onResponse(int statusCode, String contentType, byte[] body);
+        public void onFailure(Throwable why);
+    }
+
+    private String mDefaultUriPrefix;
+    private RequestPreprocessor mRequestPreprocessor;
+    private ResponseValidator mResponseValidator;
+    private RequestSerializer mRequestSerializer;
+    private FieldNameTransformer mLocalFieldName;
+    private FieldNameTransformer mRemoteFieldName;
+    private Map<Class<? extends Throwable>, ExceptionHandler<C>> mExceptionHandlers;
+    private TypeAdapterCollection mTypeAdapters;
+    private ConcurrentMap<Class, RequestDescriptor> mRequestDescriptors;
+    private ConcurrentMap<String, InFlightCall> mInFlightCalls;
+    /* keys of cached responses being revalidated in the background */
+    private ConcurrentMap<String, Boolean> mRevalidations;
+    private volatile ResponseCache mResponseCache;
+    private volatile DecodedObjectCache mDecodedObjectCache;
+    private volatile BatchCodec mBatchCodec;
+
+    public RpcContext() {
+        mExceptionHandlers = new HashMap<Class<? extends Throwable>,
+                ExceptionHandler<C>>();
+        mTypeAdapters = new TypeAdapterCollection();
+        mRequestDescriptors = new ConcurrentHashMap<Class, RequestDescriptor>();
+        mInFlightCalls = new ConcurrentHashMap<String, InFlightCall>();
+        mRevalidations = new ConcurrentHashMap<String, Boolean>();
+    }
+
+    public String getDefaultUriPrefix() {
+        return mDefaultUriPrefix;
+    }
+
+    public RequestPreprocessor getRequestPreprocessor() {
+        return mRequestPreprocessor;
+    }
+
+    public ResponseValidator getResponseValidator() {
+        return mResponseValidator;
+    }
+
+    public RequestSerializer getRequestSerializer() {
+        return mRequestSerializer;
+    }
+
+    public FieldNameTransformer getLocalFieldNameTransformer() {
+        return mLocalFieldName;
+    }
+
+    public FieldNameTransformer getRemoteFieldNameTransformer() {
+        return mRemoteFieldName;
+    }
+
+    public void setDefaultUriPrefix(String prefix) {
+        if (prefix.startsWith("http://") || prefix.startsWith("https://"))
+            mDefaultUriPrefix = prefix;
+
+        // strip out trailing slash
+        if (mDefaultUriPrefix.endsWith("/"))
+            mDefaultUriPrefix = mDefaultUriPrefix.substring(0, mDefaultUriPrefix.length() - 1);
+
+        mRequestDescriptors.clear();
+    }
+
+    public void setRequestPreprocessor(RequestPreprocessor preprocessor) {
+        mRequestPreprocessor = preprocessor;
+    }
+
+    public void setResponseValidator(ResponseValidator validator) {
+        mResponseValidator = validator;
+    }
+
+    public void setRequestSerializer(RequestSerializer serializer) {
+        mRequestSerializer = serializer;
+        mRequestDescriptors.clear();
+    }
+
+    public void setFieldNameTransformer(FieldNameTransformer local, FieldNameTransformer remote) {
+        mLocalFieldName = local;
+        mRemoteFieldName = remote;
+        mRequestDescriptors.clear();
+    }
+
+    public <T extends Throwable> void registerExceptionHandler(Class<T> clazz, ExceptionHandler<C> handler) {
+        mExceptionHandlers.put(clazz, handler);
+    }
+
+    public <T extends Throwable> boolean dispatchErrorHandler(C frontendContext, T ex) {
+        Class<T> clazz = (Class<T>) ex.getClass();
+
+        if (Config.DEBUG_DUMP_RESPONSE) {
+            Logger.debug(TAG, "got exception: " + clazz.getName());
+        }
+
+        while (clazz != null) {
+            if (mExceptionHandlers.containsKey(clazz)) {
+                if (Config.DEBUG_DUMP_RESPONSE) {
+                    Logger.debug(TAG, "   handling: " + clazz.getName());
+                }
+
+                ExceptionHandler<C> callback = (ExceptionHandler<C>) mExceptionHandlers.get(clazz);
+                boolean ret = callback.onException(frontendContext, ex);
+
+                if (ret)
+                    return true;
+            }
+
+            /* find for superclass */
+            Class<?> super_ = clazz.getSuperclass();
+            if (!Throwable.class.isAssignableFrom(super_))
+                break;
+
+            clazz = (Class<T>) super_;
+        }
+
+        return false;
+    }
+
+    public TypeAdapterCollection getTypeAdapters() {
+        return mTypeAdapters;
+    }
+
+    public ResponseCache getResponseCache() {
+        return mResponseCache;
+    }
+
+    /**
+     * Caches responses to GET calls in cache, as their Cache-Control, Expires and validator
+     * headers allow, unless overridden by {@link RpcObject#cacheMaxAge()} and
+     * {@link RpcObject#cacheStaleWhileRevalidate()}. Responses are stored by URI and request
+     * headers. Null, the default, disables caching.
+     */
+    public void setResponseCache(ResponseCache cache) {
+        mResponseCache = cache;
+    }
+
+    public DecodedObjectCache getDecodedObjectCache() {
+        return mDecodedObjectCache;
+    }
+
+    /**
+     * Copies responses decoded before into RpcObjects instead of decoding them again. Null, the
+     * default, disables this. See {@link DecodedObjectCache} for what is shared between calls.
+     */
+    public void setDecodedObjectCache(DecodedObjectCache cache) {
+        mDecodedObjectCache = cache;
+    }
+
+    public BatchCodec getBatchCodec() {
+        return mBatchCodec;
+    }
+
+    /* packs the calls of invokeAll() codec accepts into batch requests; null, the default, does not */
+    public void setBatchCodec(BatchCodec codec) {
+        mBatchCodec = codec;
+    }
+
+    /* resolved once per RpcObject class, and again after the configuration above changes */
+    RequestDescriptor getRequestDescriptor(Class clazz) {
+        RequestDescriptor descriptor = mRequestDescriptors.get(clazz);
+        if (descriptor == null) {
+            descriptor = RequestDescriptor.create(this, clazz);
+            if (descriptor != null)
+                mRequestDescriptors.put(clazz, descriptor);
+        }
+
+        return descriptor;
+    }
+
+    /**
+     * Sends the request described by rpcObject, binds the response into it and reports
+     * the result to onResponse.
+     */
+    public abstract <T> void invokeAsync(T rpcObject, OnResponse<T> onResponse, C frontendContext);
+
+    /**
+     * Same as {@link #invokeAsync(Object, OnResponse, Object)}, with the request for rpcObject
+     * built by {@link #createRequest(Object, OnResponse)} already, so that it is neither
+     * preprocessed nor serialized again. The default builds it again; transports override this.
+     */
+    protected <T> void invokeRequest(T rpcObject, HttpRequest request, OnResponse<T> onResponse,
+                                     C frontendContext) {
+        invokeAsync(rpcObject, onResponse, frontendContext);
+    }
+
+    public <T> Observable<T> invokeObservable(final T rpcObject, C frontendContext) {
+        final PublishSubject<T> subject = PublishSubject.create();
+
+        invokeAsync(rpcObject, new OnResponse<T>() {
+            @Override
+            public void onResponse(T responseBody) {
+                subject.onNext(responseBody);
+                subject.onCompleted();
+            }
+
+            @Override
+            public void onFailure(Throwable why) {
+                subject.onError(why);
+            }
+        }, frontendContext);
+
+        return subject.asObservable();
+    }
+
+    /**
+     * Calls every RpcObject, sending at most maxConcurrency requests at a time, and emits each
+     * one once its response has been bound, in the order they complete. As with
+     * Observable.merge(), the first error terminates the Observable and no more calls are
+     * started, while an RpcObject whose error an exception handler took over is left out. The
+     * calls are made when the Observable is subscribed to, once for each subscription.
+     *
+     * With a {@link BatchCodec}, the calls it accepts are packed into batches, each sent as one
+     * request. Those calls bypass the response cache and in-flight coalescing.
+     */
+    public <T> Observable<T> invokeAll(List<? extends T> rpcObjects, int maxConcurrency,
+                                       C frontendContext) {
+        return Observable.create(new BatchInvocation<C, T>(this, rpcObjects, maxConcurrency,
+                frontendContext));
+    }
+
+    /**
+     * Builds the request for rpcObject. Returns null if the call cannot be made, in which
+     * case the error has already been reported.
+     */
+    protected <T> HttpRequest createRequest(T rpcObject, OnResponse<T> onResponse) {
+        HttpRequest request;
+        try {
+            request = RequestFactory.createRequest(this, rpcObject);
+        } catch (SerializationException e) {
+            onResponse.onFailure(e);
+            return null;
+        } catch (ContextException e) {
+            onResponse.onFailure(e.why());
+            return null;
+        }
+
+        if (request == null) {
+            Logger.error(TAG, "Could not make call due to error(s) while creating request object.");
+            onResponse.onFailure(new RpcException("Could not create request"));
+            return null;
+        }
+
+        RpcObject rpcObjectDecl = rpcObject.getClass().getAnnotation(RpcObject.class);
+        if (rpcObjectDecl.context() != RpcObject.NULL.class) {
+            Class<?> contextSpec = rpcObjectDecl.context();
+            if (!CodecUtils.isSubclassOf(contextSpec, RpcContext.class)) {
+                String message = String.format("Context attribute of RpcObject %1$s is not a " +
+                        "subclass of ExecutionContext", rpcObject.getClass().getName());
+                Logger.error(TAG, message);
+                onResponse.onFailure(new RpcException(message));
+                return null;
+            }
+            if (getClass() != contextSpec) {
+                String message = String.format("RpcObject context mismatch. context: %1$s, " +
+                        "expected: %2$s", getClass().getName(), contextSpec.getName());
+                Logger.error(TAG, message);
+                onResponse.onFailure(new RpcException(message));
+                return null;
+            }
+        }
+
+        if (buffersRequestBodies()) {
+            try {
+                request.bufferRequestBody();
+            } catch (SerializationException e) {
+                onResponse.onFailure(e);
+                return null;
+            }
+        }
+
+        return request;
+    }
+
+    /**
+     * Whether the transport sends request bodies from memory, in which case createRequest()
+     * buffers streaming bodies so that a body which cannot be read fails the call.
+     */
+    protected boolean buffersRequestBodies() {
+        return false;
+    }
+
+    /**
+     * Binds a response body into rpcObject and runs the response validator. Safe to call
+     * from any thread.
+     */
+    protected void decodeResponse(Object rpcObject, HttpRequest request, String contentType,
+                                  byte[] body)
+            throws DeserializationException, ResponseValidationException {
+        contentType = responseContentType(rpcObject, contentType);
+        DecodedObjectCache cache = mDecodedObjectCache;
+        Object key = cache != null ?
+                cache.key(rpcObject, request.getFieldNameTranslator(), contentType, body) : null;
+        decodeResponse(cache, key, rpcObject, request, contentType, body);
+    }
+
+    /**
+     * Same as {@link #decodeResponse(Object, HttpRequest, String, byte[])}, for a response taken
+     * from the {@link ResponseCache}, which its ETag identifies without reading the body.
+     */
+    protected void decodeResponse(Object rpcObject, HttpRequest request, ResponseCache.Entry entry)
+            throws DeserializationException, ResponseValidationException {
+        String contentType = responseContentType(rpcObject, entry.contentType());
+        DecodedObjectCache cache = mDecodedObjectCache;
+        Object key = null;
+        if (cache != null && entry.etag() != null)
+            key = cache.key(rpcObject, request.getFieldNameTranslator(), contentType,
+                    responseCacheKey(request), entry.etag());
+        else if (cache != null)
+            key = cache.key(rpcObject, request.getFieldNameTranslator(), contentType, entry.body());
+        decodeResponse(cache, key, rpcObject, request, contentType, entry.body());
+    }
+
+    /**
+     * Same as {@link #decodeResponse(Object, HttpRequest, String, byte[])}, reading the body
+     * as it arrives. The stream is closed afterwards.
+     */
+    protected void decodeResponse(Object rpcObject, HttpRequest request, String contentType,
+                                  InputStream body)
+            throws DeserializationException, ResponseValidationException {
+        ObjectBuilder.build(responseContentType(rpcObject, contentType), body, rpcObject,
+                request.getFieldNameTranslator(), getTypeAdapters());
+        validateResponse(rpcObject);
+    }
+
+    /**
+     * Reports the outcome of decodeResponse() to onResponse, giving the registered exception
+     * handlers the first chance to handle an error.
+     */
+    protected <T> void deliverResponse(C frontendContext, T rpcObject, Throwable error,
+                                       OnResponse<T> onResponse) {
+        if (error instanceof ResponseValidationException) {
+            /* a handled validation error still delivers the response */
+            if (!dispatchErrorHandler(frontendContext, error)) {
+                onResponse.onFailure(error);
+                return;
+            }
+        } else if (error != null) {
+            if (!dispatchErrorHandler(frontendContext, error))
+                onResponse.onFailure(error);
+            else
+                reportHandledError(onResponse, error);
+            return;
+        }
+
+        onResponse.onResponse(rpcObject);
+    }
+
+    /**
+     * Tells onResponse that an exception handler took over error, for callers such as
+     * invokeAll() which wait for every call to finish. Transports overriding deliverResponse()
+     * call this where neither method of onResponse is invoked.
+     */
+    protected static void reportHandledError(OnResponse<?> onResponse, Throwable error) {
+        if (onResponse instanceof BatchInvocation.HandledErrorListener)
+            ((BatchInvocation.HandledErrorListener) onResponse).onErrorHandled(error);
+    }
+
+    /**
+     * Sends a request which was not built for an RpcObject, such as a batch. Transports which
+     * can send batches override this; the default fails.
+     */
+    protected void sendRequest(HttpRequest request, RawResponseHandler handler) {
+        handler.onFailure(new RpcException(String.format("%1$s does not send raw requests",
+                getClass().getName())));
+    }
+
+    /* runs runnable on the thread OnResponse is invoked on; the current one by default */
+    protected void runOnCallbackThread(Runnable runnable) {
+        runnable.run();
+    }
+
+    /**
+     * Returns the stored response request may be answered with, or null. Unless it is fresh, or
+     * may be used while it is revalidated, the caller sends request with the headers added by
+     * {@link #addCacheValidators(HttpRequest, ResponseCache.Entry)}. A call other than GET drops
+     * the stored response to its URI and headers instead.
+     */
+    protected ResponseCache.Entry getCachedResponse(HttpRequest request) {
+        ResponseCache cache = mResponseCache;
+        if (cache == null)
+            return null;
+
+        if (request.getMethod() != HttpRequest.Methods.GET) {
+            cache.remove(responseCacheKey(request));
+            return null;
+        }
+
+        return cache.get(responseCacheKey(request));
+    }
+
+    /* makes request conditional, so that the server answers 304 if entry is still valid */
+    protected void addCacheValidators(HttpRequest request, ResponseCache.Entry entry) {
+        if (entry.etag() != null)
+            request.putHeader(CacheHeaders.HEADER_IF_NONE_MATCH, entry.etag());
+        if (entry.lastModified() != null)
+            request.putHeader(CacheHeaders.HEADER_IF_MODIFIED_SINCE, entry.lastModified());
+    }
+
+    /**
+     * Whether a successful response with the given headers is to be stored, in which case the
+     * transport reads the body into memory and passes it to
+     * {@link #storeResponse(Object, HttpRequest, Map, byte[])}.
+     */
+    protected boolean isCacheable(Object rpcObject, HttpRequest request, Map<String, String> headers) {
+        if (mResponseCache == null || request.getMethod() != HttpRequest.Methods.GET || headers == null)
+            return false;
+
+        return parseCacheHeaders(rpcObject, headers).isStorable();
+    }
+
+    protected ResponseCache.Entry storeResponse(Object rpcObject, HttpRequest request,
+                                                Map<String, String> headers, byte[] body) {
+        ResponseCache cache = mResponseCache;
+        CacheHeaders cacheHeaders = parseCacheHeaders(rpcObject, headers);
+        if (cache == null || !cacheHeaders.isStorable())
+            return null;
+
+        ResponseCache.Entry entry = cacheHeaders.createEntry(body);
+        cache.put(responseCacheKey(request), entry);
+        return entry;
+    }
+
+    /**
+     * Stores the successful response to a background revalidation of the call rpcObject made,
+     * once it has been bound into a new instance of the same class and validated, as a response
+     * is before {@link #storeResponse(Object, HttpRequest, Map, byte[])} elsewhere. A response
+     * which fails either is dropped, along with the stale one it would have replaced.
+     */
+    protected ResponseCache.Entry storeRevalidatedResponse(Object rpcObject, HttpRequest request,
+                                                           Map<String, String> headers,
+                                                           String contentType, byte[] body) {
+        ResponseCache cache = mResponseCache;
+        if (cache == null)
+            return null;
+
+        try {
+            /* rpcObject has been answered with the stale response already, and is left alone */
+            Object scratch = ReflectionCache.getSharedInstance().newInstance(rpcObject.getClass());
+            decodeResponse(scratch, request, contentType, body);
+            return storeResponse(rpcObject, request, headers, body);
+        } catch (InstantiationException e) {
+            Logger.warn(TAG, "Could not validate revalidated response: " + e);
+        } catch (IllegalAccessException e) {
+            Logger.warn(TAG, "Could not validate revalidated response: " + e);
+        } catch (DeserializationException e) {
+            Logger.warn(TAG, "Could not decode revalidated response: " + e);
+        } catch (ResponseValidationException e) {
+            Logger.warn(TAG, "Revalidated response failed validation: " + e);
+        } catch (RuntimeException e) {
+            Logger.warn(TAG, "Could not decode revalidated response: " + e);
+        }
+
+        cache.remove(responseCacheKey(request));
+        return null;
+    }
+
+    /**
+     * Stores entry again with the freshness and validators of the 304 response revalidating it,
+     * and returns the updated entry, whose body stands for the response.
+     */
+    protected ResponseCache.Entry refreshCachedResponse(Object rpcObject, HttpRequest request,
+                                                        ResponseCache.Entry entry,
+                                                        Map<String, String> headers) {
+        ResponseCache.Entry refreshed = parseCacheHeaders(rpcObject, headers).refresh(entry);
+        ResponseCache cache = mResponseCache;
+        if (cache != null)
+            cache.put(responseCacheKey(request), refreshed);
+
+        return refreshed;
+    }
+
+    /**
+     * Claims the background revalidation of the cached response to request. Returns false if
+     * it is being revalidated already, in which case the caller sends nothing; otherwise the
+     * caller calls {@link #endRevalidation(HttpRequest)} once its request has completed.
+     */
+    protected boolean beginRevalidation(HttpRequest request) {
+        return mRevalidations.putIfAbsent(responseCacheKey(request), Boolean.TRUE) == null;
+    }
+
+    protected void endRevalidation(HttpRequest request) {
+        mRevalidations.remove(responseCacheKey(request));
+    }
+
+    /**
+     * Registers a call about to be sent for request. Returns null if an identical GET of the
+     * same RpcObject class is in flight already, in which case rpcObject has joined it and the
+     * caller sends nothing: once the call completes, the decoded values of its RpcObject are
+     * copied into rpcObject, and shared with it. Calls opting out with
+     * {@link RpcObject#coalesce()} are never joined.
+     */
+    protected <T> InFlightCall leadInFlightCall(HttpRequest request, T rpcObject,
+                                                OnResponse<T> onResponse, C frontendContext) {
+        String key = inFlightKey(request, rpcObject);
+        InFlightCall call = new InFlightCall(key);
+        if (key == null)
+            return call;
+
+        while (true) {
+            InFlightCall inFlight = mInFlightCalls.putIfAbsent(key, call);
+            if (inFlight == null)
+                return call;
+            if (inFlight.join(rpcObject, onResponse, frontendContext))
+                return null;
+
+            /* completed meanwhile, and about to be removed */
+            mInFlightCalls.remove(key, inFlight);
+        }
+    }
+
+    /**
+     * Delivers the outcome of call to the callers which joined it, on the current thread.
+     * Transports call this right before delivering to the caller which leads it, so that the
+     * values are copied before any callback sees them. Does nothing for a null call.
+     */
+    protected void completeInFlightCall(InFlightCall call, Object rpcObject, Throwable error) {
+        if (call == null || call.mKey == null)
+            return;
+
+        mInFlightCalls.remove(call.mKey, call);
+        List<InFlightCall.Follower> followers = call.complete();
+        if (followers.isEmpty())
+            return;
+
+        /* a response which failed validation has been decoded all the same */
+        Object[] values = null;
+        if (error == null || error instanceof ResponseValidationException) {
+            values = ResponseMembers.capture(rpcObject);
+            if (values == null && error == null)
+                error = new RpcException("Could not share the response of an identical call");
+        }
+
+        for (InFlightCall.Follower follower : followers) {
+            Throwable followerError = error;
+            if (values != null && !ResponseMembers.restore(follower.rpcObject, values))
+                followerError = new RpcException("Could not share the response of an identical call");
+
+            deliverResponse((C) follower.frontendContext, follower.rpcObject, followerError,
+                    (OnResponse<Object>) follower.onResponse);
+        }
+    }
+
+    /* null if the call is not to be shared */
+    private static String inFlightKey(HttpRequest request, Object rpcObject) {
+        if (request.getMethod() != HttpRequest.Methods.GET)
+            return null;
+
+        Class clazz = rpcObject.getClass();
+        RpcObject rpcObjectDecl = (RpcObject) clazz.getAnnotation(RpcObject.class);
+        if (!rpcObjectDecl.coalesce() || !ResponseMembers.isSupported(clazz))
+            return null;
+
+        StringBuilder sb = new StringBuilder(clazz.getName());
+        sb.append('\n');
+        sb.append(request.getUri());
+        for (Map.Entry<String, String> header : new TreeMap<String, String>(request.getHeaders()).entrySet()) {
+            sb.append('\n');
+            sb.append(header.getKey());
+            sb.append(": ");
+            sb.append(header.getValue());
+        }
+
+        return sb.toString();
+    }
+
+    /*
+     * responses are stored by URI and request headers, such as those a RequestPreprocessor adds,
+     * so that one sent with the credentials of one user is never served to another; the
+     * validators of a conditional request, and the type of a body, do not count
+     */
+    private static String responseCacheKey(HttpRequest request) {
+        StringBuilder sb = new StringBuilder(request.getUri());
+        for (Map.Entry<String, String> header : new TreeMap<String, String>(request.getHeaders()).entrySet()) {
+            String name = header.getKey();
+            if (name.equalsIgnoreCase(CacheHeaders.HEADER_IF_NONE_MATCH) ||
+                    name.equalsIgnoreCase(CacheHeaders.HEADER_IF_MODIFIED_SINCE) ||
+                    name.equalsIgnoreCase(HttpRequest.HEADER_CONTENT_TYPE))
+                continue;
+
+            sb.append('\n');
+            sb.append(name);
+            sb.append(": ");
+            sb.append(header.getValue());
+        }
+
+        return sb.toString();
+    }
+
+    /* key is null if the response is not to be found in or stored to cache */
+    private void decodeResponse(DecodedObjectCache cache, Object key, Object rpcObject,
+                                HttpRequest request, String contentType, byte[] body)
+            throws DeserializationException, ResponseValidationException {
+        if (key != null && cache.restore(key, rpcObject)) {
+            validateResponse(rpcObject);
+            return;
+        }
+
+        ObjectBuilder.build(contentType, body, rpcObject, request.getFieldNameTranslator(),
+                getTypeAdapters());
+        validateResponse(rpcObject);
+
+        /* only responses which passed validation are reused */
+        if (key != null)
+            cache.store(key, rpcObject, body.length);
+    }
+
+    private static CacheHeaders parseCacheHeaders(Object rpcObject, Map<String, String> headers) {
+        RpcObject rpcObjectDecl = rpcObject.getClass().getAnnotation(RpcObject.class);
+        return CacheHeaders.parse(headers, rpcObjectDecl.cacheMaxAge(),
+                rpcObjectDecl.cacheStaleWhileRevalidate(), System.currentTimeMillis());
+    }
+
+    private static String responseContentType(Object rpcObject, String contentType) {
+        /* force content type if declared by RpcObject */
+        RpcObject rpcObjectDecl = rpcObject.getClass().getAnnotation(RpcObject.class);
+        String expected = rpcObjectDecl.expectedContentType();
+        if (expected != null && expected.length() > 0)
+            return expected;
+
+        return contentType;
+    }
+
+    private void validateResponse(Object rpcObject) throws ResponseValidationException {
+        if (mResponseValidator == null)
+            return;
+
+        Object responseObject = rpcObject;
+        try {
+            CodecUtils.ResponseWithTypeParameters rt =
+                    CodecUtils.getResponseObject(ReflectionCache.getSharedInstance(), rpcObject, false);
+            if (rt != null)
+                responseObject = rt.object;
+        } catch (RpcException e) {
+            e.printStackTrace();
+        }
+        mResponseValidator.validate(responseObject);
+    }
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.exceptions.SerializationException;
+
+/**
+ * A {@link TypeAdapter} which takes numbers and booleans as they are read from the response,
+ * instead of their text, and writes its encoded form into a {@link ValueSink}. Each method
+ * falls back to the String based one, so adapters override only the kinds of values they
+ * expect.
+ */
+public abstract class ScalarTypeAdapter<T> implements TypeAdapter<T> {
+
+    public T decodeLong(long value) throws DeserializationException {
+        return decode(Long.toString(value));
+    }
+
+    public T decodeDouble(double value) throws DeserializationException {
+        return decode(Double.toString(value));
+    }
+
+    public T decodeBoolean(boolean value) throws DeserializationException {
+        return decode(Boolean.toString(value));
+    }
+
+    public T decodeString(CharSequence value) throws DeserializationException {
+        return decode(value.toString());
+    }
+
+    public void encode(T object, ValueSink sink) throws SerializationException {
+        String encoded = encode(object);
+        if (encoded != null)
+            sink.value(encoded);
+    }
+
+}
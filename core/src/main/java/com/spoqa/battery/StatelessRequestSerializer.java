@@ -0,0 +1,13 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+/**
+ * Marks a {@link RequestSerializer} that keeps no state between calls, so that a single
+ * instance may serve concurrent requests. Serializers without this marker are instantiated
+ * for every request.
+ */
+public interface StatelessRequestSerializer extends RequestSerializer {
+}
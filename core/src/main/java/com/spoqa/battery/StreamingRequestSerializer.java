@@ -0,0 +1,19 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.exceptions.SerializationException;
+
+/**
+ * A {@link RequestSerializer} which can also defer writing the body until the request is sent,
+ * so that large content such as files is streamed to the transport instead of buffered.
+ */
+public interface StreamingRequestSerializer extends RequestSerializer {
+
+    public HttpRequestBody serializeBody(Object o, FieldNameTranslator translator,
+                                         TypeAdapterCollection typeAdapters)
+            throws SerializationException;
+
+}
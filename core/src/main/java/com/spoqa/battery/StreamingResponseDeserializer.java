@@ -0,0 +1,21 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.exceptions.DeserializationException;
+
+import java.io.InputStream;
+
+/**
+ * A {@link ResponseDeserializer} which can also expose the document as a token stream, so that
+ * {@link ObjectBuilder} binds values as they are read instead of walking a fully built tree.
+ */
+public interface StreamingResponseDeserializer extends ResponseDeserializer {
+
+    public TokenReader newTokenReader(InputStream input) throws DeserializationException;
+
+    public TokenReader newTokenReader(byte[] input, int offset, int length) throws DeserializationException;
+
+}
@@ -0,0 +1,316 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map of String keys with open addressing, for large dictionaries decoded from responses.
+ * Keys and values live in two flat arrays probed linearly, so a lookup neither allocates nor
+ * follows entry chains, and the map holds no per-entry objects.
+ *
+ * Null keys are not permitted, and iteration follows the table rather than insertion order.
+ */
+public class StringHashMap<V> extends AbstractMap<String, V> {
+
+    private static final int MINIMUM_CAPACITY = 8;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    /* marks a slot whose key has been removed, so that probing continues past it */
+    private static final Object REMOVED = new Object();
+
+    /* String, REMOVED or null for a free slot; the length is a power of two */
+    private Object[] mKeys;
+    private Object[] mValues;
+    private int mSize;
+    /* slots which are not free, removed ones included */
+    private int mUsed;
+    private int mModCount;
+    private Set<Map.Entry<String, V>> mEntrySet;
+
+    public StringHashMap() {
+        this(0);
+    }
+
+    public StringHashMap(int expectedSize) {
+        allocate(tableSize(expectedSize));
+    }
+
+    public StringHashMap(Map<String, ? extends V> other) {
+        this(other.size());
+        putAll(other);
+    }
+
+    /* keeps the table at most half full */
+    private static int tableSize(int expectedSize) {
+        int capacity = MINIMUM_CAPACITY;
+        while (capacity < MAXIMUM_CAPACITY && capacity < expectedSize * 2L)
+            capacity <<= 1;
+
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new Object[capacity];
+        mValues = new Object[capacity];
+        mUsed = mSize;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /* slot holding the key, or -1 */
+    private int find(Object key) {
+        if (!(key instanceof String))
+            return -1;
+
+        Object[] keys = mKeys;
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        Object k;
+        while ((k = keys[i]) != null) {
+            if (k != REMOVED && k.equals(key))
+                return i;
+            i = (i + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        int i = find(key);
+        return i >= 0 ? (V) mValues[i] : null;
+    }
+
+    @Override
+    public V put(String key, V value) {
+        if (key == null)
+            throw new NullPointerException("StringHashMap does not permit null keys");
+
+        Object[] keys = mKeys;
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        int removed = -1;
+        Object k;
+        while ((k = keys[i]) != null) {
+            if (k == REMOVED) {
+                if (removed < 0)
+                    removed = i;
+            } else if (k.equals(key)) {
+                V old = (V) mValues[i];
+                mValues[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+
+        if (removed >= 0)
+            i = removed;
+        else
+            ++mUsed;
+
+        keys[i] = key;
+        mValues[i] = value;
+        ++mSize;
+        ++mModCount;
+
+        if (mUsed * 2 > keys.length)
+            rehash(tableSize(mSize));
+
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int i = find(key);
+        if (i < 0)
+            return null;
+
+        V old = (V) mValues[i];
+        removeAt(i);
+        return old;
+    }
+
+    private void removeAt(int i) {
+        mKeys[i] = REMOVED;
+        mValues[i] = null;
+        --mSize;
+        ++mModCount;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(mKeys, null);
+        Arrays.fill(mValues, null);
+        mSize = 0;
+        mUsed = 0;
+        ++mModCount;
+    }
+
+    private void rehash(int capacity) {
+        Object[] keys = mKeys;
+        Object[] values = mValues;
+        allocate(capacity);
+
+        int mask = capacity - 1;
+        for (int j = 0; j < keys.length; ++j) {
+            Object k = keys[j];
+            if (k == null || k == REMOVED)
+                continue;
+
+            int i = hash(k) & mask;
+            while (mKeys[i] != null)
+                i = (i + 1) & mask;
+            mKeys[i] = k;
+            mValues[i] = values[j];
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<String, V>> entrySet() {
+        if (mEntrySet == null) {
+            mEntrySet = new AbstractSet<Map.Entry<String, V>>() {
+                @Override
+                public Iterator<Map.Entry<String, V>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return mSize;
+                }
+
+                @Override
+                public void clear() {
+                    StringHashMap.this.clear();
+                }
+            };
+        }
+
+        return mEntrySet;
+    }
+
+    private final class Entry implements Map.Entry<String, V> {
+        private final int mIndex;
+        private final String mKey;
+
+        public Entry(int index) {
+            mIndex = index;
+            mKey = (String) mKeys[index];
+        }
+
+        @Override
+        public String getKey() {
+            return mKey;
+        }
+
+        @Override
+        public V getValue() {
+            return (V) mValues[mIndex];
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = (V) mValues[mIndex];
+            mValues[mIndex] = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object other_) {
+            if (!(other_ instanceof Map.Entry))
+                return false;
+
+            Map.Entry other = (Map.Entry) other_;
+            Object value = getValue();
+            return mKey.equals(other.getKey()) &&
+                    (value == null ? other.getValue() == null : value.equals(other.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return mKey.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return mKey + "=" + getValue();
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<String, V>> {
+        private int mNext;
+        private int mLast = -1;
+        private int mExpectedModCount = mModCount;
+
+        public EntryIterator() {
+            mNext = advance(0);
+        }
+
+        /* first occupied slot at or after i, or the table length */
+        private int advance(int i) {
+            Object[] keys = mKeys;
+            while (i < keys.length && (keys[i] == null || keys[i] == REMOVED))
+                ++i;
+
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mNext < mKeys.length;
+        }
+
+        @Override
+        public Map.Entry<String, V> next() {
+            if (mModCount != mExpectedModCount)
+                throw new ConcurrentModificationException();
+            if (mNext >= mKeys.length)
+                throw new NoSuchElementException();
+
+            mLast = mNext;
+            mNext = advance(mNext + 1);
+            return new Entry(mLast);
+        }
+
+        @Override
+        public void remove() {
+            if (mLast < 0)
+                throw new IllegalStateException();
+            if (mModCount != mExpectedModCount)
+                throw new ConcurrentModificationException();
+
+            removeAt(mLast);
+            mLast = -1;
+            mExpectedModCount = mModCount;
+        }
+    }
+
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class StringUtils {
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /* characters URLEncoder leaves as they are */
+    private static final boolean[] UNRESERVED = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; ++c)
+            UNRESERVED[c] = true;
+        for (char c = 'A'; c <= 'Z'; ++c)
+            UNRESERVED[c] = true;
+        for (char c = '0'; c <= '9'; ++c)
+            UNRESERVED[c] = true;
+        UNRESERVED['.'] = true;
+        UNRESERVED['-'] = true;
+        UNRESERVED['*'] = true;
+        UNRESERVED['_'] = true;
+    }
+
+    public static interface StringTransformer {
+        public String transform(String input);
+    }
+
+    public static StringTransformer toUpperTransformer = new StringTransformer() {
+        @Override
+        public String transform(String input) {
+            return input.toUpperCase();
+        }
+    };
+
+    public static StringTransformer toLowerTransformer = new StringTransformer() {
+        @Override
+        public String transform(String input) {
+            return input.toLowerCase();
+        }
+    };
+
+    public static String join(List<String> array, String delimiter, StringTransformer transformer) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < array.size(); ++i) {
+            if (i > 0)
+                sb.append(delimiter);
+
+            String elem = array.get(i);
+            if (transformer != null)
+                elem = transformer.transform(elem);
+            sb.append(elem);
+        }
+        return sb.toString();
+    }
+
+    public static String join(List<String> array, String delimiter) {
+        return join(array, delimiter, null);
+    }
+
+    /**
+     * Same output as URLEncoder.encode(input, "utf-8"), without the intermediate
+     * byte arrays and the charset lookup.
+     */
+    public static String urlEncode(String input) {
+        int length = input.length();
+        for (int i = 0; i < length; ++i) {
+            char c = input.charAt(i);
+            if (c >= 128 || !UNRESERVED[c]) {
+                StringBuilder sb = new StringBuilder(length + 16);
+                sb.append(input, 0, i);
+                appendUrlEncoded(sb, input, i);
+                return sb.toString();
+            }
+        }
+
+        return input;
+    }
+
+    public static void appendUrlEncoded(StringBuilder sb, String input) {
+        appendUrlEncoded(sb, input, 0);
+    }
+
+    private static void appendUrlEncoded(StringBuilder sb, String input, int start) {
+        int length = input.length();
+        for (int i = start; i < length; ++i) {
+            int c = input.charAt(i);
+            if (c < 128) {
+                if (UNRESERVED[c])
+                    sb.append((char) c);
+                else if (c == ' ')
+                    sb.append('+');
+                else
+                    appendEscaped(sb, c);
+            } else if (c < 0x800) {
+                appendEscaped(sb, 0xc0 | (c >> 6));
+                appendEscaped(sb, 0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate((char) c) && i + 1 < length &&
+                    Character.isLowSurrogate(input.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint((char) c, input.charAt(++i));
+                appendEscaped(sb, 0xf0 | (codePoint >> 18));
+                appendEscaped(sb, 0x80 | ((codePoint >> 12) & 0x3f));
+                appendEscaped(sb, 0x80 | ((codePoint >> 6) & 0x3f));
+                appendEscaped(sb, 0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate((char) c)) {
+                /* unpaired surrogates become '?', as with String.getBytes() */
+                appendEscaped(sb, '?');
+            } else {
+                appendEscaped(sb, 0xe0 | (c >> 12));
+                appendEscaped(sb, 0x80 | ((c >> 6) & 0x3f));
+                appendEscaped(sb, 0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    private static void appendEscaped(StringBuilder sb, int b) {
+        sb.append('%');
+        sb.append(HEX_DIGITS[(b >> 4) & 0xf]);
+        sb.append(HEX_DIGITS[b & 0xf]);
+    }
+
+    public static String uppercaseFirst(String input) {
+        return input.substring(0, 1).toUpperCase() + input.substring(1).toLowerCase();
+    }
+
+    public static String[] splitPath(String path) {
+        List<String> output = new ArrayList<String>();
+
+        int startIndex = 0;
+        int index;
+        while ((index = path.indexOf('.', startIndex)) >= 0) {
+            output.add(path.substring(startIndex, index));
+            startIndex = index + 1;
+        }
+        output.add(path.substring(startIndex));
+
+        return output.toArray(new String[output.size()]);
+    }
+
+    public static List<String> splitByCase(String input) {
+        List<String> output = new ArrayList<String>();
+
+        boolean isUppercase = false;
+        boolean isDigit = false;
+        boolean continuousUppercase = false;
+        int startIndex = 0;
+
+        for (int i = 0; i < input.length(); ++i) {
+            char c = input.charAt(i);
+            boolean currentUppercase = Character.isUpperCase(c);
+            if (i == 0)
+                isUppercase = currentUppercase;
+
+            if (Character.isDigit(c)) {
+                isDigit = true;
+            } else if (isDigit & !Character.isDigit(c)) {
+                output.add(input.substring(startIndex, i - 1));
+                startIndex = i - 1;
+                isDigit = false;
+            } else if (currentUppercase && !isUppercase) {
+                output.add(input.substring(startIndex, i));
+                startIndex = i;
+            } else if (currentUppercase) {
+                continuousUppercase = true;
+            } else if (continuousUppercase) {
+                output.add(input.substring(startIndex, i - 1));
+                startIndex = i - 1;
+                continuousUppercase = false;
+            }
+
+            isUppercase = currentUppercase;
+        }
+
+        output.add(input.substring(startIndex));
+
+        return output;
+    }
+}
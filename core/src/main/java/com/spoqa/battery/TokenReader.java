@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.exceptions.DeserializationException;
+
+/**
+ * Pull-style reader over an encoded response document, consumed by {@link ObjectBuilder}
+ * for {@link StreamingResponseDeserializer}s.
+ */
+public interface TokenReader {
+
+    public enum Token {
+        BEGIN_OBJECT,
+        END_OBJECT,
+        BEGIN_ARRAY,
+        END_ARRAY,
+        NAME,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL,
+        END_DOCUMENT
+    }
+
+    public Token peek() throws DeserializationException;
+
+    public void beginObject() throws DeserializationException;
+
+    public void endObject() throws DeserializationException;
+
+    public void beginArray() throws DeserializationException;
+
+    public void endArray() throws DeserializationException;
+
+    /* whether the current object or array has more elements */
+    public boolean hasNext() throws DeserializationException;
+
+    public String nextName() throws DeserializationException;
+
+    /* reads a string, or the literal text of a number */
+    public String nextString() throws DeserializationException;
+
+    public boolean nextBoolean() throws DeserializationException;
+
+    public void nextNull() throws DeserializationException;
+
+    /* read a number without boxing it, narrowing it the same way Number.intValue() and longValue() do */
+    public int nextInt() throws DeserializationException;
+
+    public long nextLong() throws DeserializationException;
+
+    public double nextDouble() throws DeserializationException;
+
+    /* whether the next number is an integer which fits into long, so that nextLong() reads it exactly */
+    public boolean peekIntegral() throws DeserializationException;
+
+    /* reads a scalar as String, Integer, Long, Double, Boolean or null */
+    public Object nextScalar() throws DeserializationException;
+
+    /* skips the next value, including all of its children, without materializing it */
+    public void skipValue() throws DeserializationException;
+
+    public void close();
+
+}
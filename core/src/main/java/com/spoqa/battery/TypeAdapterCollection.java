@@ -0,0 +1,105 @@
+package com.spoqa.battery;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Type adapters by the type they handle. An adapter also handles subclasses and implementations
+ * of its type. Where several apply, the one of the highest priority wins, and among those the
+ * one registered for the nearest supertype, a superclass before interfaces at the same distance.
+ *
+ * What a type resolves to, including that nothing applies, is cached until the next register().
+ */
+public class TypeAdapterCollection {
+
+    public static final int PRIORITY_DEFAULT = 0;
+
+    /* cached for types no adapter applies to */
+    private static final Object NONE = new Object();
+
+    private static final class Registration {
+        public final TypeAdapter adapter;
+        public final int priority;
+
+        public Registration(TypeAdapter adapter, int priority) {
+            this.adapter = adapter;
+            this.priority = priority;
+        }
+    }
+
+    private volatile Map<Class<?>, Registration> mTypeAdapters;
+    private final ConcurrentMap<Class<?>, Object> mResolved;
+
+    public TypeAdapterCollection() {
+        mTypeAdapters = new HashMap<Class<?>, Registration>();
+        mResolved = new ConcurrentHashMap<Class<?>, Object>();
+    }
+
+    public void register(TypeAdapter adapter) {
+        register(adapter, PRIORITY_DEFAULT);
+    }
+
+    /* replaces the adapter registered for the same type, if any */
+    public synchronized void register(TypeAdapter adapter, int priority) {
+        Map<Class<?>, Registration> typeAdapters = new HashMap<Class<?>, Registration>(mTypeAdapters);
+        typeAdapters.put(adapter.getType(), new Registration(adapter, priority));
+        mTypeAdapters = typeAdapters;
+        mResolved.clear();
+    }
+
+    public boolean contains(Class<?> clazz) {
+        return query(clazz) != null;
+    }
+
+    public TypeAdapter query(Class<?> clazz) {
+        if (clazz == null)
+            return null;
+
+        Object adapter = mResolved.get(clazz);
+        if (adapter == null) {
+            Map<Class<?>, Registration> typeAdapters = mTypeAdapters;
+            adapter = resolve(typeAdapters, clazz);
+            mResolved.putIfAbsent(clazz, adapter);
+            /* register() may have cleared the cache while this was resolved */
+            if (mTypeAdapters != typeAdapters)
+                mResolved.remove(clazz, adapter);
+        }
+
+        return adapter != NONE ? (TypeAdapter) adapter : null;
+    }
+
+    /* walks the supertypes of clazz breadth first, nearest ones first */
+    private static Object resolve(Map<Class<?>, Registration> typeAdapters, Class<?> clazz) {
+        if (typeAdapters.isEmpty())
+            return NONE;
+
+        Registration best = null;
+        Queue<Class<?>> queue = new ArrayDeque<Class<?>>();
+        Set<Class<?>> visited = new HashSet<Class<?>>();
+        queue.add(clazz);
+
+        while (!queue.isEmpty()) {
+            Class<?> type = queue.remove();
+            if (!visited.add(type))
+                continue;
+
+            Registration registration = typeAdapters.get(type);
+            if (registration != null && (best == null || registration.priority > best.priority))
+                best = registration;
+
+            if (type.getSuperclass() != null)
+                queue.add(type.getSuperclass());
+            for (Class<?> implemented : type.getInterfaces())
+                queue.add(implemented);
+        }
+
+        return best != null ? best.adapter : NONE;
+    }
+
+}
@@ -0,0 +1,371 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.QueryString;
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.annotations.Uri;
+import com.spoqa.battery.annotations.UriPath;
+import com.spoqa.battery.exceptions.SerializationException;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * URI of an RpcObject class compiled from its @Uri, @UriPath and @QueryString fields.
+ *
+ * The URI given by RpcObject.uri() (or by the @Uri field) is a String.format() pattern whose
+ * positional arguments are the @UriPath fields. It is split once into literal segments and
+ * argument slots, so rendering only appends to a StringBuilder.
+ */
+final class UriTemplate {
+    private static final String TAG = "UriTemplate";
+
+    private static final class Pattern {
+        /* literals[i] precedes the argument slots[i]; there is one more literal than slots */
+        String[] literals;
+        /* zero-based index into the @UriPath fields */
+        int[] slots;
+        /* the original pattern if it uses format() features other than plain arguments */
+        String format;
+    }
+
+    private static final class QueryParameter {
+        Field field;
+        Accessor accessor;
+        String name;
+        Class type;
+        boolean builtIn;
+    }
+
+    private static final ThreadLocal<StringBuilder> sBuilder = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    private final Class mClass;
+    private final String mPrefix;
+    /* @Uri field overriding RpcObject.uri(), or null */
+    private final Accessor mUriField;
+    /* pattern of RpcObject.uri() with the prefix applied, or null if mUriField is set */
+    private final Pattern mPattern;
+    /* @UriPath fields in positional order */
+    private final Field[] mPathFields;
+    private final Accessor[] mPathAccessors;
+    private final QueryParameter[] mQueryParameters;
+
+    private UriTemplate(Class clazz, String prefix, Accessor uriField, Pattern pattern,
+                        Field[] pathFields, Accessor[] pathAccessors,
+                        QueryParameter[] queryParameters) {
+        mClass = clazz;
+        mPrefix = prefix;
+        mUriField = uriField;
+        mPattern = pattern;
+        mPathFields = pathFields;
+        mPathAccessors = pathAccessors;
+        mQueryParameters = queryParameters;
+    }
+
+    /**
+     * Compiles the template of the given RpcObject class, or returns null after logging why
+     * the class does not describe a valid URI.
+     */
+    public static UriTemplate compile(ReflectionCache cache, Class clazz, RpcObject rpcObjectDecl,
+                                      String prefix, FieldNameTranslator translator) {
+        Field uriField = null;
+        List<Field> uriFields = CodecUtils.getAnnotatedFields(cache, Uri.class, clazz);
+        if (uriFields != null && uriFields.size() > 0) {
+            if (uriFields.size() > 1) {
+                Logger.error(TAG, String.format("More than one Uri fields in object %1$s",
+                        clazz.getName()));
+                return null;
+            }
+            uriField = uriFields.get(0);
+            if (uriField.getType() != String.class) {
+                Logger.error(TAG, String.format("Field %1$s must be String", uriField.getType().getName()));
+                return null;
+            }
+        }
+
+        /* order @UriPath fields by position */
+        Field[] pathFields = new Field[0];
+        List<Field> uriFragments = CodecUtils.getAnnotatedFields(cache, UriPath.class, clazz);
+        if (uriFragments != null && uriFragments.size() > 0) {
+            Map<Integer, Field> fieldMap = new HashMap<Integer, Field>();
+            for (Field f : uriFragments) {
+                UriPath uf = cache.getFieldAnnotation(f, UriPath.class);
+                fieldMap.put(uf.value(), f);
+            }
+
+            pathFields = new Field[fieldMap.size()];
+            for (int i = 1; i <= fieldMap.size(); ++i) {
+                if (!fieldMap.containsKey(i)) {
+                    Logger.error(TAG, String.format("Positional argument %1$d not found in %2$s", i,
+                            clazz.getName()));
+                    return null;
+                }
+                pathFields[i - 1] = fieldMap.get(i);
+            }
+        }
+
+        Accessor[] pathAccessors = new Accessor[pathFields.length];
+        for (int i = 0; i < pathFields.length; ++i)
+            pathAccessors[i] = cache.getAccessor(clazz, pathFields[i]);
+
+        Pattern pattern = null;
+        if (uriField == null) {
+            String uri = applyPrefix(clazz, rpcObjectDecl.uri(), prefix);
+            if (uri == null)
+                return null;
+            pattern = parse(uri, pathFields.length);
+        }
+
+        List<QueryParameter> queryParameters = new ArrayList<QueryParameter>();
+        for (Field field : CodecUtils.getAnnotatedFields(cache, QueryString.class, clazz)) {
+            QueryParameter p = new QueryParameter();
+            p.field = field;
+            p.accessor = cache.getAccessor(clazz, field);
+            p.type = field.getType();
+            p.builtIn = CodecUtils.isString(p.type) ||
+                    CodecUtils.isInteger(p.type) ||
+                    CodecUtils.isBoolean(p.type) ||
+                    CodecUtils.isFloat(p.type) ||
+                    CodecUtils.isDouble(p.type) ||
+                    CodecUtils.isLong(p.type) ||
+                    CodecUtils.isList(p.type);
+
+            /* override field name if optional value is supplied */
+            QueryString annotation = cache.getFieldAnnotation(field, QueryString.class);
+            if (annotation.value().length() > 0)
+                p.name = annotation.value();
+            else
+                p.name = translator.localToRemote(field.getName());
+
+            queryParameters.add(p);
+        }
+
+        return new UriTemplate(clazz, prefix,
+                uriField != null ? cache.getAccessor(clazz, uriField) : null, pattern,
+                pathFields, pathAccessors, queryParameters.toArray(new QueryParameter[queryParameters.size()]));
+    }
+
+    /**
+     * Renders the URI of object, and puts its query string parameters into params. Returns
+     * null after logging an error if a field cannot be built into the URI.
+     */
+    public String render(Object object, Map<String, Object> params, TypeAdapterCollection typeAdapters) {
+        Pattern pattern = mPattern;
+        if (mUriField != null) {
+            String uri = null;
+            try {
+                Object value = mUriField.get(object);
+                if (value != null)
+                    uri = value.toString();
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+                return null;
+            } catch (InvocationTargetException e) {
+                e.printStackTrace();
+                return null;
+            }
+            if (uri == null || uri.length() == 0)
+                uri = ((RpcObject) mClass.getAnnotation(RpcObject.class)).uri();
+
+            uri = applyPrefix(mClass, uri, mPrefix);
+            if (uri == null)
+                return null;
+            pattern = parse(uri, mPathFields.length);
+        }
+
+        String output = renderPath(object, pattern, typeAdapters);
+        if (output == null)
+            return null;
+
+        appendQueryParameters(object, params, typeAdapters);
+
+        return output;
+    }
+
+    private String renderPath(Object object, Pattern pattern, TypeAdapterCollection typeAdapters) {
+        if (pattern.slots.length == 0 && pattern.format == null)
+            return pattern.literals[0];
+
+        String[] values = new String[mPathFields.length];
+        for (int i = 0; i < mPathFields.length; ++i) {
+            Field field = mPathFields[i];
+            try {
+                Object fieldObject = mPathAccessors[i].get(object);
+                Class<?> fieldType = field.getType();
+                TypeAdapter adapter = typeAdapters.query(fieldType);
+                if (fieldObject == null ||
+                        (!CodecUtils.isPrimitive(fieldType) && !(fieldObject instanceof String) && adapter == null)) {
+                    Logger.error(TAG, String.format("Type '%1$s' of field '%2$s' could not be built into URI.",
+                            fieldType.getName(), field.getName()));
+                    return null;
+                }
+
+                if (adapter != null) {
+                    String encoded = adapter.encode(fieldObject);
+                    values[i] = encoded != null ? StringUtils.urlEncode(encoded) : null;
+                } else if (fieldObject instanceof String) {
+                    values[i] = StringUtils.urlEncode((String) fieldObject);
+                } else {
+                    values[i] = fieldObject.toString();
+                }
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            } catch (InvocationTargetException e) {
+                e.printStackTrace();
+            } catch (SerializationException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if (pattern.format != null)
+            return String.format(pattern.format, (Object[]) values);
+
+        StringBuilder sb = sBuilder.get();
+        sb.setLength(0);
+        for (int i = 0; i < pattern.slots.length; ++i) {
+            sb.append(pattern.literals[i]);
+            sb.append(values[pattern.slots[i]]);
+        }
+        sb.append(pattern.literals[pattern.slots.length]);
+
+        return sb.toString();
+    }
+
+    private void appendQueryParameters(Object object, Map<String, Object> params,
+                                       TypeAdapterCollection typeAdapters) {
+        for (QueryParameter p : mQueryParameters) {
+            TypeAdapter adapter = typeAdapters.query(p.type);
+            if (!p.builtIn && adapter == null) {
+                Logger.error(TAG, String.format("Type '%1$s' of field '%2$s' could not be built into URI.",
+                        p.type.getName(), p.field.getName()));
+                continue;
+            }
+
+            try {
+                Object value = p.accessor.get(object);
+                if (adapter != null) {
+                    if (value != null)
+                        params.put(p.name, adapter.encode(value));
+                } else {
+                    params.put(p.name, value);
+                }
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            } catch (InvocationTargetException e) {
+                e.printStackTrace();
+            } catch (SerializationException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static String applyPrefix(Class clazz, String uri, String prefix) {
+        if (uri == null || uri.length() == 0) {
+            Logger.error(TAG, String.format("No URI supplied for object %1$s", clazz.getName()));
+            return null;
+        }
+
+        if (!uri.startsWith("http://") && !uri.startsWith("https://")) {
+            if (prefix == null) {
+                Logger.error(TAG, String.format("No URI prefix given."));
+                return null;
+            }
+            if (uri.startsWith("/"))
+                uri = uri.substring(1);
+            uri = prefix + "/" + uri;
+        }
+
+        return uri;
+    }
+
+    /**
+     * Splits a format() pattern into literals and argument slots. Patterns are only
+     * formatted if the class has @UriPath fields; otherwise they are taken literally.
+     */
+    private static Pattern parse(String uri, int argumentCount) {
+        Pattern pattern = new Pattern();
+
+        if (argumentCount == 0) {
+            pattern.literals = new String[] { uri };
+            pattern.slots = new int[0];
+            return pattern;
+        }
+
+        List<String> literals = new ArrayList<String>();
+        List<Integer> slots = new ArrayList<Integer>();
+        StringBuilder literal = new StringBuilder();
+        int ordinaryIndex = 0;
+        int length = uri.length();
+
+        for (int i = 0; i < length; ++i) {
+            char c = uri.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+
+            if (i + 1 < length && uri.charAt(i + 1) == '%') {
+                literal.append('%');
+                ++i;
+                continue;
+            }
+
+            /* %s, %d, %N$s or %N$d */
+            int j = i + 1;
+            int index = -1;
+            while (j < length && Character.isDigit(uri.charAt(j)))
+                ++j;
+            if (j > i + 1 && j < length && uri.charAt(j) == '$') {
+                index = Integer.parseInt(uri.substring(i + 1, j)) - 1;
+                ++j;
+            } else if (j > i + 1) {
+                /* width or flags */
+                index = -2;
+            }
+
+            char conversion = j < length ? uri.charAt(j) : 0;
+            if (index == -2 || (conversion != 's' && conversion != 'd')) {
+                /* leave anything fancier to String.format() */
+                pattern.format = uri;
+                pattern.literals = new String[] { uri };
+                pattern.slots = new int[0];
+                return pattern;
+            }
+
+            if (index == -1)
+                index = ordinaryIndex++;
+            if (index < 0 || index >= argumentCount) {
+                pattern.format = uri;
+                pattern.literals = new String[] { uri };
+                pattern.slots = new int[0];
+                return pattern;
+            }
+
+            literals.add(literal.toString());
+            literal.setLength(0);
+            slots.add(index);
+            i = j;
+        }
+        literals.add(literal.toString());
+
+        pattern.literals = literals.toArray(new String[literals.size()]);
+        pattern.slots = new int[slots.size()];
+        for (int i = 0; i < pattern.slots.length; ++i)
+            pattern.slots[i] = slots.get(i);
+
+        return pattern;
+    }
+
+}
@@ -0,0 +1,24 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+/**
+ * Receives the encoded form of a single value, so that serializers can write numbers and
+ * booleans from a {@link ScalarTypeAdapter} as such rather than as strings. Writing nothing
+ * leaves the value out, as a null from {@link TypeAdapter#encode(Object)} does.
+ */
+public interface ValueSink {
+
+    public void nullValue();
+
+    public void value(long value);
+
+    public void value(double value);
+
+    public void value(boolean value);
+
+    public void value(String value);
+
+}
@@ -27,4 +27,11 @@ public @interface RpcObject {
     public Class context() default NULL.class;
     public String expectedContentType() default "";
 
+    /* seconds a cached response stays fresh, overriding its Cache-Control and Expires; -1 honors them */
+    public int cacheMaxAge() default -1;
+    /* seconds a stale response is still used while it is revalidated; -1 honors stale-while-revalidate */
+    public int cacheStaleWhileRevalidate() default -1;
+    /* whether an identical GET made while this one is in flight shares its response */
+    public boolean coalesce() default true;
+
 }
@@ -0,0 +1,448 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.codecs;
+
+import com.spoqa.battery.Accessor;
+import com.spoqa.battery.CodecUtils;
+import com.spoqa.battery.FieldNameTranslator;
+import com.spoqa.battery.KeyedResponseDeserializer;
+import com.spoqa.battery.Logger;
+import com.spoqa.battery.ReflectionCache;
+import com.spoqa.battery.ScalarTypeAdapter;
+import com.spoqa.battery.StatelessRequestSerializer;
+import com.spoqa.battery.StreamingResponseDeserializer;
+import com.spoqa.battery.TokenReader;
+import com.spoqa.battery.TypeAdapter;
+import com.spoqa.battery.TypeAdapterCollection;
+import com.spoqa.battery.annotations.RequestBody;
+import com.spoqa.battery.annotations.RequestObject;
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.exceptions.SerializationException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+
+public class JsonCodec implements StatelessRequestSerializer, StreamingResponseDeserializer,
+        KeyedResponseDeserializer {
+    private static final String TAG = "JsonCodec";
+
+    public static final String MIME_TYPE = "application/json";
+
+    public JsonCodec() {
+
+    }
+
+    /* serializer */
+
+    private static final int WRITER_CAPACITY = 1024;
+    /* writers that grew past this are dropped rather than pinned to the thread */
+    private static final int MAX_POOLED_WRITER_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<JsonWriter> sWriters = new ThreadLocal<JsonWriter>();
+
+    private static final int KIND_OBJECT = 0;
+    private static final int KIND_STRING = 1;
+    private static final int KIND_FLOAT = 2;
+    private static final int KIND_DOUBLE = 3;
+    private static final int KIND_BOOLEAN = 4;
+    private static final int KIND_INTEGER = 5;
+    private static final int KIND_LONG = 6;
+    private static final int KIND_LIST = 7;
+    private static final int KIND_ENUM = 8;
+
+    /* the members of a class written to a request body, with their encoded names */
+    private static final class WritePlan {
+        public final byte[][] names;
+        public final Accessor[] accessors;
+        public final int[] kinds;
+
+        public WritePlan(int size) {
+            names = new byte[size][];
+            accessors = new Accessor[size];
+            kinds = new int[size];
+        }
+    }
+
+    private static final class WritePlanKey {
+        private final boolean mFilterAnnotated;
+        private final FieldNameTranslator mTranslator;
+
+        public WritePlanKey(boolean filterAnnotated, FieldNameTranslator translator) {
+            mFilterAnnotated = filterAnnotated;
+            mTranslator = translator;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (mFilterAnnotated ? 1 : 0) + (mTranslator != null ? mTranslator.hashCode() : 0);
+        }
+
+        @Override
+        public boolean equals(Object other_) {
+            if (!(other_ instanceof WritePlanKey))
+                return false;
+
+            WritePlanKey other = (WritePlanKey) other_;
+            return other.mFilterAnnotated == mFilterAnnotated &&
+                    (other.mTranslator == null ? mTranslator == null : other.mTranslator.equals(mTranslator));
+        }
+    }
+
+    @Override
+    public byte[] serializeObject(Object o, FieldNameTranslator translator,
+                                  TypeAdapterCollection typeAdapters)
+            throws SerializationException {
+        List<Field> fields = CodecUtils.getAnnotatedFields(ReflectionCache.getSharedInstance(), RequestObject.class, o.getClass());
+        List<Method> getters = CodecUtils.getAnnotatedGetterMethods(ReflectionCache.getSharedInstance(), RequestObject.class, o.getClass());
+        int count = fields.size() + getters.size();
+        boolean filterAnnotated = true;
+
+        if (count > 1) {
+            Logger.error(TAG, String.format("Object %1$s has more than one @RequestObject fields.", o.getClass().getName()));
+        } else if (count == 1) {
+            try {
+                ReflectionCache cache = ReflectionCache.getSharedInstance();
+                if (fields.size() == 1)
+                    o = cache.getAccessor(o.getClass(), fields.get(0)).get(o);
+                else if (getters.size() == 1)
+                    o = cache.getAccessor(o.getClass(), getters.get(0)).get(o);
+                filterAnnotated = false;
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            } catch (InvocationTargetException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /* the pooled writer is taken off the thread while in use, in case a type adapter
+           serializes another body from encode() */
+        JsonWriter writer = sWriters.get();
+        if (writer == null)
+            writer = new JsonWriter(WRITER_CAPACITY);
+        else
+            sWriters.set(null);
+
+        try {
+            writer.reset();
+            if (visitObject(writer, o, translator, typeAdapters, filterAnnotated))
+                return writer.toByteArray();
+        } finally {
+            if (writer.capacity() <= MAX_POOLED_WRITER_CAPACITY)
+                sWriters.set(writer);
+        }
+
+        return "null".getBytes();
+    }
+
+    @Override
+    public String serializationContentType() {
+        return MIME_TYPE;
+    }
+
+    @Override
+    public boolean supportsCompositeType() {
+        return true;
+    }
+
+    private static WritePlan obtainWritePlan(Class clazz, FieldNameTranslator translator,
+                                             boolean filterAnnotated) {
+        ReflectionCache cache = ReflectionCache.getSharedInstance();
+        WritePlanKey key = new WritePlanKey(filterAnnotated, translator);
+        WritePlan plan = (WritePlan) cache.queryCodecPlan(clazz, key);
+        if (plan != null)
+            return plan;
+
+        List<Field> fields;
+        List<Method> getters;
+        if (filterAnnotated) {
+            fields = CodecUtils.getAnnotatedFields(cache, RequestBody.class, clazz);
+            getters = CodecUtils.getAnnotatedGetterMethods(cache, RequestBody.class, clazz);
+        } else {
+            fields = CodecUtils.getAllFields(cache, clazz);
+            getters = CodecUtils.getAllGetterMethods(cache, clazz);
+        }
+
+        int size = 0;
+        for (Field f : fields) {
+            if (!f.getName().equals("serialVersionUID"))
+                ++size;
+        }
+        size += getters.size();
+
+        plan = new WritePlan(size);
+        int index = 0;
+
+        for (Field f : fields) {
+            String localName = f.getName();
+            if (localName.equals("serialVersionUID"))
+                continue;
+
+            plan.names[index] = JsonWriter.encodeName(
+                    foreignName(f.getAnnotation(RequestBody.class), localName, translator));
+            plan.accessors[index] = cache.getAccessor(clazz, f);
+            plan.kinds[index] = kindOf(f.getType());
+            ++index;
+        }
+
+        for (Method m : getters) {
+            String localName = CodecUtils.normalizeGetterName(m.getName());
+
+            plan.names[index] = JsonWriter.encodeName(
+                    foreignName(m.getAnnotation(RequestBody.class), localName, translator));
+            plan.accessors[index] = cache.getAccessor(clazz, m);
+            plan.kinds[index] = kindOf(m.getReturnType());
+            ++index;
+        }
+
+        cache.cacheCodecPlan(clazz, key, plan);
+        return plan;
+    }
+
+    private static String foreignName(RequestBody annotation, String localName,
+                                      FieldNameTranslator translator) {
+        if (annotation != null && annotation.value().length() > 0)
+            return annotation.value();
+        else if (translator != null)
+            return translator.localToRemote(localName);
+        else
+            return localName;
+    }
+
+    private static int kindOf(Class type) {
+        if (CodecUtils.isString(type))
+            return KIND_STRING;
+        else if (CodecUtils.isFloat(type))
+            return KIND_FLOAT;
+        else if (CodecUtils.isDouble(type))
+            return KIND_DOUBLE;
+        else if (CodecUtils.isBoolean(type))
+            return KIND_BOOLEAN;
+        else if (CodecUtils.isInteger(type))
+            return KIND_INTEGER;
+        else if (CodecUtils.isLong(type))
+            return KIND_LONG;
+        else if (CodecUtils.isList(type))
+            return KIND_LIST;
+        else if (type.isEnum())
+            return KIND_ENUM;
+        else
+            return KIND_OBJECT;
+    }
+
+    /* writes o as an object, or nothing at all if it has no members to write */
+    private boolean visitObject(JsonWriter writer, Object o, FieldNameTranslator translator,
+                                TypeAdapterCollection typeAdapters, boolean filterAnnotated)
+            throws SerializationException {
+        WritePlan plan = obtainWritePlan(o.getClass(), translator, filterAnnotated);
+        int start = writer.mark();
+        boolean written = false;
+
+        writer.beginObject();
+        for (int i = 0; i < plan.accessors.length; ++i) {
+            Object element;
+            try {
+                element = plan.accessors[i].get(o);
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+                continue;
+            } catch (InvocationTargetException e) {
+                e.printStackTrace();
+                continue;
+            }
+
+            /* absent members are left out of the body */
+            if (element == null)
+                continue;
+
+            int member = writer.mark();
+            writer.name(plan.names[i]);
+            if (visitValue(writer, element, plan.kinds[i], translator, typeAdapters))
+                written = true;
+            else
+                writer.rollback(member);
+        }
+
+        if (!written) {
+            writer.rollback(start);
+            return false;
+        }
+
+        writer.endObject();
+        return true;
+    }
+
+    private void visitArray(JsonWriter writer, Iterable<Object> a, FieldNameTranslator translator,
+                            TypeAdapterCollection typeAdapters) throws SerializationException {
+        writer.beginArray();
+
+        for (Object element : a) {
+            if (element == null || !visitValue(writer, element, kindOf(element.getClass()),
+                    translator, typeAdapters))
+                writer.nullValue();
+        }
+
+        writer.endArray();
+    }
+
+    private boolean visitValue(JsonWriter writer, Object element, int kind, FieldNameTranslator translator,
+                               TypeAdapterCollection typeAdapters) throws SerializationException {
+        switch (kind) {
+            case KIND_STRING:
+                writer.value((String) element);
+                return true;
+            case KIND_FLOAT:
+                writer.value(((Float) element).floatValue());
+                return true;
+            case KIND_DOUBLE:
+                writer.value(((Double) element).doubleValue());
+                return true;
+            case KIND_BOOLEAN:
+                writer.value(((Boolean) element).booleanValue());
+                return true;
+            case KIND_INTEGER:
+                writer.value(((Integer) element).intValue());
+                return true;
+            case KIND_LONG:
+                writer.value(((Long) element).longValue());
+                return true;
+            case KIND_LIST:
+                visitArray(writer, (List<Object>) element, translator, typeAdapters);
+                return true;
+            case KIND_ENUM:
+                writer.value(element.toString());
+                return true;
+        }
+
+        TypeAdapter adapter = typeAdapters.query(element.getClass());
+        if (adapter instanceof ScalarTypeAdapter) {
+            /* the adapter may write nothing, which leaves the value out */
+            int start = writer.mark();
+            ((ScalarTypeAdapter) adapter).encode(element, writer);
+            return writer.mark() != start;
+        } else if (adapter != null) {
+            String encoded = adapter.encode(element);
+            if (encoded == null)
+                return false;
+
+            writer.value(encoded);
+            return true;
+        }
+
+        return visitObject(writer, element, translator, typeAdapters, false);
+    }
+
+    /* deserializer */
+
+    @Override
+    public Object parseInput(String input) throws DeserializationException {
+        try {
+            return new JSONObject(input);
+        } catch (JSONException e) {
+            throw new DeserializationException(e);
+        }
+    }
+
+    @Override
+    public boolean containsChild(Object internalObject, String key) {
+        assert internalObject instanceof JSONObject;
+
+        final JSONObject jsonObject = (JSONObject) internalObject;
+        return jsonObject.has(key);
+    }
+
+    @Override
+    public Object queryObjectChild(Object internalObject, String key) {
+        assert internalObject instanceof JSONObject;
+
+        final JSONObject jsonObject = (JSONObject) internalObject;
+
+        Object o = jsonObject.opt(key);
+        if (o == JSONObject.NULL)
+            return null;
+
+        return o;
+    }
+
+    @Override
+    public Iterable<Object> queryArrayChildren(Object internalArray) {
+        assert internalArray instanceof JSONArray;
+
+        final JSONArray jsonArray = (JSONArray) internalArray;
+
+        /* a list view, so that ObjectBuilder can presize collections from its size */
+        return new AbstractList<Object>() {
+            @Override
+            public Object get(int index) {
+                Object o = jsonArray.opt(index);
+
+                if (o == JSONObject.NULL)
+                    return null;
+
+                return o;
+            }
+
+            @Override
+            public int size() {
+                return jsonArray.length();
+            }
+        };
+    }
+
+    @Override
+    public Iterable<String> queryObjectKeys(Object internalObject) {
+        assert internalObject instanceof JSONObject;
+
+        final JSONObject jsonObject = (JSONObject) internalObject;
+
+        /* a collection, so that ObjectBuilder can presize maps from its size */
+        return new AbstractCollection<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return jsonObject.keys();
+            }
+
+            @Override
+            public int size() {
+                return jsonObject.length();
+            }
+        };
+    }
+
+    @Override
+    public boolean isObject(Class<?> internalClass) {
+        return internalClass == JSONObject.class;
+    }
+
+    @Override
+    public boolean isArray(Class<?> internalClass) {
+        return internalClass == JSONArray.class;
+    }
+
+    @Override
+    public String deserializationContentType() {
+        return MIME_TYPE;
+    }
+
+    @Override
+    public TokenReader newTokenReader(InputStream input) {
+        return new JsonTokenReader(input);
+    }
+
+    @Override
+    public TokenReader newTokenReader(byte[] input, int offset, int length) {
+        return new JsonTokenReader(input, offset, length);
+    }
+
+}
@@ -0,0 +1,694 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.codecs;
+
+import com.spoqa.battery.TokenReader;
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.exceptions.RpcException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Pull parser reading UTF-8 encoded JSON straight from bytes.
+ *
+ * Strings are decoded only when they are read; skipped values are scanned without being
+ * decoded or materialized at all.
+ */
+public class JsonTokenReader implements TokenReader {
+
+    private static final int SCOPE_EMPTY_DOCUMENT = 0;
+    private static final int SCOPE_NONEMPTY_DOCUMENT = 1;
+    private static final int SCOPE_EMPTY_OBJECT = 2;
+    private static final int SCOPE_DANGLING_NAME = 3;
+    private static final int SCOPE_NONEMPTY_OBJECT = 4;
+    private static final int SCOPE_EMPTY_ARRAY = 5;
+    private static final int SCOPE_NONEMPTY_ARRAY = 6;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /* kinds of number parseNumber() leaves in mNumber */
+    private static final int NUMBER_LONG = 0;
+    private static final int NUMBER_DOUBLE = 1;
+
+    /* powers of ten which are exactly representable as double */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final InputStream mInput;
+    private byte[] mBuffer;
+    private int mPos;
+    private int mLimit;
+
+    private int[] mStack;
+    private int mStackSize;
+    private Token mPeeked;
+
+    private char[] mChars;
+
+    private long mNumberLong;
+    private double mNumberDouble;
+    /* length of the last number literal parseNumber() consumed */
+    private int mNumberLength;
+    /* kind of a number parsed ahead by peekIntegral(), or -1 */
+    private int mPeekedNumber = -1;
+
+    public JsonTokenReader(InputStream input) {
+        mInput = input;
+        mBuffer = new byte[BUFFER_SIZE];
+        mPos = 0;
+        mLimit = 0;
+        init();
+    }
+
+    public JsonTokenReader(byte[] input, int offset, int length) {
+        mInput = null;
+        mBuffer = input;
+        mPos = offset;
+        mLimit = offset + length;
+        init();
+    }
+
+    private void init() {
+        mStack = new int[32];
+        mStack[mStackSize++] = SCOPE_EMPTY_DOCUMENT;
+        mChars = new char[64];
+    }
+
+    @Override
+    public Token peek() throws DeserializationException {
+        if (mPeeked != null)
+            return mPeeked;
+
+        int c;
+        switch (mStack[mStackSize - 1]) {
+            case SCOPE_EMPTY_ARRAY:
+                mStack[mStackSize - 1] = SCOPE_NONEMPTY_ARRAY;
+                if (nextNonWhitespace() == ']') {
+                    ++mPos;
+                    return mPeeked = Token.END_ARRAY;
+                }
+                break;
+            case SCOPE_NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    ++mPos;
+                    return mPeeked = Token.END_ARRAY;
+                } else if (c == ',') {
+                    ++mPos;
+                } else {
+                    throw syntaxError("Unterminated array");
+                }
+                break;
+            case SCOPE_EMPTY_OBJECT:
+            case SCOPE_NONEMPTY_OBJECT:
+                boolean empty = mStack[mStackSize - 1] == SCOPE_EMPTY_OBJECT;
+                mStack[mStackSize - 1] = SCOPE_DANGLING_NAME;
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    ++mPos;
+                    return mPeeked = Token.END_OBJECT;
+                }
+                if (!empty) {
+                    if (c != ',')
+                        throw syntaxError("Unterminated object");
+                    ++mPos;
+                    c = nextNonWhitespace();
+                }
+                if (c != '"')
+                    throw syntaxError("Expected name");
+                return mPeeked = Token.NAME;
+            case SCOPE_DANGLING_NAME:
+                mStack[mStackSize - 1] = SCOPE_NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':')
+                    throw syntaxError("Expected ':'");
+                ++mPos;
+                break;
+            case SCOPE_EMPTY_DOCUMENT:
+                mStack[mStackSize - 1] = SCOPE_NONEMPTY_DOCUMENT;
+                break;
+            case SCOPE_NONEMPTY_DOCUMENT:
+                if (nextNonWhitespace() == -1)
+                    return mPeeked = Token.END_DOCUMENT;
+                throw syntaxError("Unexpected content after the root element");
+        }
+
+        c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                ++mPos;
+                return mPeeked = Token.BEGIN_OBJECT;
+            case '[':
+                ++mPos;
+                return mPeeked = Token.BEGIN_ARRAY;
+            case '"':
+                return mPeeked = Token.STRING;
+            case 't':
+            case 'f':
+                return mPeeked = Token.BOOLEAN;
+            case 'n':
+                return mPeeked = Token.NULL;
+            case -1:
+                throw syntaxError("Unexpected end of input");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9'))
+                    return mPeeked = Token.NUMBER;
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    @Override
+    public void beginObject() throws DeserializationException {
+        expect(Token.BEGIN_OBJECT);
+        push(SCOPE_EMPTY_OBJECT);
+        mPeeked = null;
+    }
+
+    @Override
+    public void endObject() throws DeserializationException {
+        expect(Token.END_OBJECT);
+        --mStackSize;
+        mPeeked = null;
+    }
+
+    @Override
+    public void beginArray() throws DeserializationException {
+        expect(Token.BEGIN_ARRAY);
+        push(SCOPE_EMPTY_ARRAY);
+        mPeeked = null;
+    }
+
+    @Override
+    public void endArray() throws DeserializationException {
+        expect(Token.END_ARRAY);
+        --mStackSize;
+        mPeeked = null;
+    }
+
+    @Override
+    public boolean hasNext() throws DeserializationException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    @Override
+    public String nextName() throws DeserializationException {
+        expect(Token.NAME);
+        mPeeked = null;
+        return readString();
+    }
+
+    @Override
+    public String nextString() throws DeserializationException {
+        Token token = peek();
+        mPeeked = null;
+        if (token == Token.STRING) {
+            return readString();
+        } else if (token == Token.NUMBER) {
+            int length;
+            if (mPeekedNumber >= 0) {
+                mPeekedNumber = -1;
+                length = mNumberLength;
+            } else {
+                length = scanNumber();
+            }
+            return asciiString(mPos - length, length);
+        } else {
+            mPeeked = token;
+            throw syntaxError("Expected a string but was " + token);
+        }
+    }
+
+    @Override
+    public boolean nextBoolean() throws DeserializationException {
+        expect(Token.BOOLEAN);
+        mPeeked = null;
+        if (buffer(0) == 't') {
+            consumeLiteral("true");
+            return true;
+        } else {
+            consumeLiteral("false");
+            return false;
+        }
+    }
+
+    @Override
+    public void nextNull() throws DeserializationException {
+        expect(Token.NULL);
+        mPeeked = null;
+        consumeLiteral("null");
+    }
+
+    @Override
+    public int nextInt() throws DeserializationException {
+        expect(Token.NUMBER);
+        mPeeked = null;
+        if (takeNumber() == NUMBER_LONG)
+            return (int) mNumberLong;
+        return (int) mNumberDouble;
+    }
+
+    @Override
+    public long nextLong() throws DeserializationException {
+        expect(Token.NUMBER);
+        mPeeked = null;
+        if (takeNumber() == NUMBER_LONG)
+            return mNumberLong;
+        return (long) mNumberDouble;
+    }
+
+    @Override
+    public double nextDouble() throws DeserializationException {
+        expect(Token.NUMBER);
+        mPeeked = null;
+        if (takeNumber() == NUMBER_LONG)
+            return (double) mNumberLong;
+        return mNumberDouble;
+    }
+
+    @Override
+    public boolean peekIntegral() throws DeserializationException {
+        expect(Token.NUMBER);
+        if (mPeekedNumber < 0)
+            mPeekedNumber = parseNumber();
+        return mPeekedNumber == NUMBER_LONG;
+    }
+
+    @Override
+    public Object nextScalar() throws DeserializationException {
+        switch (peek()) {
+            case STRING:
+                return nextString();
+            case BOOLEAN:
+                return nextBoolean();
+            case NULL:
+                nextNull();
+                return null;
+            case NUMBER:
+                mPeeked = null;
+                return readNumber();
+            default:
+                throw syntaxError("Expected a scalar but was " + peek());
+        }
+    }
+
+    @Override
+    public void skipValue() throws DeserializationException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    ++depth;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    ++depth;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    --depth;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    --depth;
+                    break;
+                case NAME:
+                case STRING:
+                    mPeeked = null;
+                    skipString();
+                    break;
+                case NUMBER:
+                    mPeeked = null;
+                    if (mPeekedNumber >= 0)
+                        mPeekedNumber = -1;
+                    else
+                        scanNumber();
+                    break;
+                case BOOLEAN:
+                    nextBoolean();
+                    break;
+                case NULL:
+                    nextNull();
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unexpected end of input");
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() {
+        if (mInput != null) {
+            try {
+                mInput.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void expect(Token token) throws DeserializationException {
+        Token peeked = peek();
+        if (peeked != token)
+            throw syntaxError(String.format("Expected %1$s but was %2$s", token, peeked));
+    }
+
+    private void push(int scope) {
+        if (mStackSize == mStack.length) {
+            int[] stack = new int[mStackSize * 2];
+            System.arraycopy(mStack, 0, stack, 0, mStackSize);
+            mStack = stack;
+        }
+        mStack[mStackSize++] = scope;
+    }
+
+    /* makes sure that at least `count` bytes are available from mPos, unless the input ends */
+    private boolean fill(int count) throws DeserializationException {
+        if (mLimit - mPos >= count)
+            return true;
+        if (mInput == null)
+            return false;
+
+        if (mPos > 0) {
+            System.arraycopy(mBuffer, mPos, mBuffer, 0, mLimit - mPos);
+            mLimit -= mPos;
+            mPos = 0;
+        }
+
+        if (count > mBuffer.length) {
+            byte[] buffer = new byte[Math.max(count, mBuffer.length * 2)];
+            System.arraycopy(mBuffer, 0, buffer, 0, mLimit);
+            mBuffer = buffer;
+        }
+
+        try {
+            int read;
+            while (mLimit < count && (read = mInput.read(mBuffer, mLimit, mBuffer.length - mLimit)) != -1)
+                mLimit += read;
+        } catch (IOException e) {
+            throw new DeserializationException(e);
+        }
+
+        return mLimit - mPos >= count;
+    }
+
+    /* returns the byte at mPos + offset, or -1 at the end of input */
+    private int buffer(int offset) throws DeserializationException {
+        if (!fill(offset + 1))
+            return -1;
+        return mBuffer[mPos + offset] & 0xff;
+    }
+
+    private int nextNonWhitespace() throws DeserializationException {
+        while (true) {
+            if (mPos == mLimit && !fill(1))
+                return -1;
+
+            int c = mBuffer[mPos] & 0xff;
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r')
+                ++mPos;
+            else
+                return c;
+        }
+    }
+
+    private void consumeLiteral(String literal) throws DeserializationException {
+        int length = literal.length();
+        if (!fill(length))
+            throw syntaxError("Unexpected end of input");
+
+        for (int i = 0; i < length; ++i) {
+            if (mBuffer[mPos + i] != literal.charAt(i))
+                throw syntaxError("Expected " + literal);
+        }
+        mPos += length;
+    }
+
+    /* consumes a number literal and returns its length; the literal ends at mPos */
+    private int scanNumber() throws DeserializationException {
+        int length = 0;
+        while (true) {
+            int c = buffer(length);
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E')
+                ++length;
+            else
+                break;
+        }
+        if (length == 0)
+            throw syntaxError("Expected a number");
+
+        mPos += length;
+        return length;
+    }
+
+    /* the kind of the next number, parsing it unless peekIntegral() already has */
+    private int takeNumber() throws DeserializationException {
+        int kind = mPeekedNumber;
+        if (kind < 0)
+            return parseNumber();
+
+        mPeekedNumber = -1;
+        return kind;
+    }
+
+    private Object readNumber() throws DeserializationException {
+        if (takeNumber() == NUMBER_DOUBLE)
+            return mNumberDouble;
+        if (mNumberLong >= Integer.MIN_VALUE && mNumberLong <= Integer.MAX_VALUE)
+            return (int) mNumberLong;
+        return mNumberLong;
+    }
+
+    /*
+     * consumes a number literal into mNumberLong if it is an integer which fits into long, or
+     * into mNumberDouble otherwise
+     */
+    private int parseNumber() throws DeserializationException {
+        int length = scanNumber();
+        mNumberLength = length;
+        int start = mPos - length;
+        int end = start + length;
+
+        boolean negative = mBuffer[start] == '-';
+        int i = negative ? start + 1 : start;
+
+        /* up to 18 digits always fit into long */
+        long mantissa = 0;
+        int digits = 0;
+        for (; i < end; ++i) {
+            int c = mBuffer[i];
+            if (c < '0' || c > '9')
+                break;
+            mantissa = mantissa * 10 + (c - '0');
+            if (++digits > 18)
+                break;
+        }
+
+        if (i == end && digits > 0) {
+            mNumberLong = negative ? -mantissa : mantissa;
+            return NUMBER_LONG;
+        }
+
+        if (digits <= 15 && i < end && mBuffer[i] == '.' && fastParseDouble(i, end, mantissa, digits, negative))
+            return NUMBER_DOUBLE;
+
+        String literal = asciiString(start, length);
+        try {
+            if (literal.indexOf('.') < 0 && literal.indexOf('e') < 0 && literal.indexOf('E') < 0) {
+                try {
+                    mNumberLong = Long.parseLong(literal);
+                    return NUMBER_LONG;
+                } catch (NumberFormatException e) {
+                    /* does not fit into long */
+                }
+            }
+            mNumberDouble = Double.parseDouble(literal);
+            return NUMBER_DOUBLE;
+        } catch (NumberFormatException e) {
+            throw syntaxError("Malformed number " + literal);
+        }
+    }
+
+    /*
+     * parses the fraction and exponent following the integer part if the result is exact:
+     * at most 15 significant digits scaled by a power of ten up to 22 rounds only once
+     */
+    private boolean fastParseDouble(int i, int end, long mantissa, int digits, boolean negative) {
+        int scale = 0;
+        for (++i; i < end; ++i) {
+            int c = mBuffer[i];
+            if (c < '0' || c > '9')
+                break;
+            if (++digits > 15)
+                return false;
+            mantissa = mantissa * 10 + (c - '0');
+            --scale;
+        }
+        if (scale == 0)
+            return false;
+
+        if (i < end) {
+            if (mBuffer[i] != 'e' && mBuffer[i] != 'E')
+                return false;
+            ++i;
+            boolean negativeExponent = false;
+            if (i < end && (mBuffer[i] == '-' || mBuffer[i] == '+'))
+                negativeExponent = mBuffer[i++] == '-';
+            if (i == end || end - i > 3)
+                return false;
+            int exponent = 0;
+            for (; i < end; ++i) {
+                int c = mBuffer[i];
+                if (c < '0' || c > '9')
+                    return false;
+                exponent = exponent * 10 + (c - '0');
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+
+        double value = mantissa;
+        if (scale < 0) {
+            if (scale < -22)
+                return false;
+            value /= POWERS_OF_TEN[-scale];
+        } else if (scale > 0) {
+            if (scale > 22)
+                return false;
+            value *= POWERS_OF_TEN[scale];
+        }
+
+        mNumberDouble = negative ? -value : value;
+        return true;
+    }
+
+    private String asciiString(int start, int length) {
+        if (mChars.length < length)
+            mChars = new char[length];
+        for (int i = 0; i < length; ++i)
+            mChars[i] = (char) mBuffer[start + i];
+        return new String(mChars, 0, length);
+    }
+
+    private void skipString() throws DeserializationException {
+        ++mPos; /* opening quote */
+        while (true) {
+            if (mPos == mLimit && !fill(1))
+                throw syntaxError("Unterminated string");
+
+            byte c = mBuffer[mPos++];
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                if (mPos == mLimit && !fill(1))
+                    throw syntaxError("Unterminated string");
+                ++mPos;
+            }
+        }
+    }
+
+    private String readString() throws DeserializationException {
+        ++mPos; /* opening quote */
+        char[] chars = mChars;
+        int length = 0;
+
+        while (true) {
+            if (mPos == mLimit && !fill(1))
+                throw syntaxError("Unterminated string");
+
+            int c = mBuffer[mPos++];
+            if (length + 2 > chars.length) {
+                char[] grown = new char[chars.length * 2];
+                System.arraycopy(chars, 0, grown, 0, length);
+                mChars = chars = grown;
+            }
+
+            if (c == '"') {
+                return new String(chars, 0, length);
+            } else if (c == '\\') {
+                chars[length++] = readEscape();
+            } else if (c >= 0) {
+                chars[length++] = (char) c;
+            } else {
+                int codePoint = readMultiByte(c & 0xff);
+                if (codePoint > 0xffff) {
+                    chars[length++] = Character.highSurrogate(codePoint);
+                    chars[length++] = Character.lowSurrogate(codePoint);
+                } else {
+                    chars[length++] = (char) codePoint;
+                }
+            }
+        }
+    }
+
+    private char readEscape() throws DeserializationException {
+        if (mPos == mLimit && !fill(1))
+            throw syntaxError("Unterminated escape sequence");
+
+        int c = mBuffer[mPos++];
+        switch (c) {
+            case 'u':
+                if (!fill(4))
+                    throw syntaxError("Unterminated escape sequence");
+                int value = 0;
+                for (int i = 0; i < 4; ++i) {
+                    int digit = Character.digit(mBuffer[mPos++], 16);
+                    if (digit < 0)
+                        throw syntaxError("Malformed unicode escape");
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            case 'b':
+                return '\b';
+            case 't':
+                return '\t';
+            case 'n':
+                return '\n';
+            case 'f':
+                return '\f';
+            case 'r':
+                return '\r';
+            default:
+                /* '"', '\\', '/' and anything else stand for themselves */
+                return (char) c;
+        }
+    }
+
+    private int readMultiByte(int lead) throws DeserializationException {
+        int count;
+        int codePoint;
+        if ((lead & 0xe0) == 0xc0) {
+            count = 1;
+            codePoint = lead & 0x1f;
+        } else if ((lead & 0xf0) == 0xe0) {
+            count = 2;
+            codePoint = lead & 0x0f;
+        } else if ((lead & 0xf8) == 0xf0) {
+            count = 3;
+            codePoint = lead & 0x07;
+        } else {
+            return 0xfffd;
+        }
+
+        if (!fill(count))
+            throw syntaxError("Truncated UTF-8 sequence");
+
+        for (int i = 0; i < count; ++i) {
+            int c = mBuffer[mPos++] & 0xff;
+            if ((c & 0xc0) != 0x80)
+                return 0xfffd;
+            codePoint = (codePoint << 6) | (c & 0x3f);
+        }
+
+        return codePoint;
+    }
+
+    private DeserializationException syntaxError(String message) {
+        return new DeserializationException(new RpcException(message));
+    }
+
+}
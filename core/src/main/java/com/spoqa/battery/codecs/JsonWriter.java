@@ -0,0 +1,300 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.codecs;
+
+import com.spoqa.battery.ValueSink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes JSON as UTF-8 straight into a growable byte buffer. Strings are escaped the same
+ * way org.json does, so the output matches what JSONObject.toString() produced.
+ *
+ * Callers are trusted to nest tokens correctly; nothing is validated.
+ */
+final class JsonWriter implements ValueSink {
+
+    private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+    private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+    private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+    private static final byte[] HEX = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes();
+
+    private byte[] mBuffer;
+    private int mSize;
+    /* whether the next value or name follows a sibling and needs a comma */
+    private boolean mNeedsComma;
+
+    public JsonWriter(int capacity) {
+        mBuffer = new byte[capacity];
+    }
+
+    public void reset() {
+        mSize = 0;
+        mNeedsComma = false;
+    }
+
+    public int capacity() {
+        return mBuffer.length;
+    }
+
+    /* position to return to with rollback(), such as before an object that turns out empty */
+    public int mark() {
+        return mNeedsComma ? -mSize - 1 : mSize;
+    }
+
+    public void rollback(int mark) {
+        if (mark < 0) {
+            mSize = -mark - 1;
+            mNeedsComma = true;
+        } else {
+            mSize = mark;
+            mNeedsComma = false;
+        }
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(mBuffer, mSize);
+    }
+
+    public void writeTo(OutputStream output) throws IOException {
+        output.write(mBuffer, 0, mSize);
+    }
+
+    public void beginObject() {
+        separate();
+        append('{');
+        mNeedsComma = false;
+    }
+
+    public void endObject() {
+        append('}');
+        mNeedsComma = true;
+    }
+
+    public void beginArray() {
+        separate();
+        append('[');
+        mNeedsComma = false;
+    }
+
+    public void endArray() {
+        append(']');
+        mNeedsComma = true;
+    }
+
+    /* writes a name encoded by encodeName(), which the next value belongs to */
+    public void name(byte[] encodedName) {
+        separate();
+        append(encodedName, encodedName.length);
+        mNeedsComma = false;
+    }
+
+    @Override
+    public void nullValue() {
+        separate();
+        append(NULL, NULL.length);
+    }
+
+    @Override
+    public void value(boolean value) {
+        separate();
+        if (value)
+            append(TRUE, TRUE.length);
+        else
+            append(FALSE, FALSE.length);
+    }
+
+    @Override
+    public void value(long value) {
+        separate();
+        if (value == Long.MIN_VALUE) {
+            append(MIN_LONG, MIN_LONG.length);
+            return;
+        }
+
+        ensureCapacity(20);
+        if (value < 0) {
+            mBuffer[mSize++] = '-';
+            value = -value;
+        }
+
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10)
+            ++digits;
+
+        int end = mSize + digits;
+        for (int i = end - 1; i >= mSize; --i) {
+            mBuffer[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        mSize = end;
+    }
+
+    /* non-finite numbers have no JSON representation and are written as null */
+    @Override
+    public void value(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            nullValue();
+            return;
+        }
+
+        separate();
+        appendAscii(trimFraction(Double.toString(value)));
+    }
+
+    public void value(float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            nullValue();
+            return;
+        }
+
+        separate();
+        appendAscii(trimFraction(Float.toString(value)));
+    }
+
+    @Override
+    public void value(String value) {
+        separate();
+        appendString(value);
+    }
+
+    /* "name": in UTF-8, written once per property and reused for every object */
+    public static byte[] encodeName(String name) {
+        JsonWriter writer = new JsonWriter(name.length() + 8);
+        writer.appendString(name);
+        writer.append(':');
+        return writer.toByteArray();
+    }
+
+    /* strips trailing zeros of a decimal fraction, as JSONObject.numberToString() does */
+    private static String trimFraction(String number) {
+        if (number.indexOf('.') < 0 || number.indexOf('e') >= 0 || number.indexOf('E') >= 0)
+            return number;
+
+        int end = number.length();
+        while (number.charAt(end - 1) == '0')
+            --end;
+        if (number.charAt(end - 1) == '.')
+            --end;
+
+        return number.substring(0, end);
+    }
+
+    private void separate() {
+        if (mNeedsComma)
+            append(',');
+        mNeedsComma = true;
+    }
+
+    private void appendString(String value) {
+        int length = value.length();
+        /* at most three bytes per char, or six for an escape */
+        ensureCapacity(length * 6 + 2);
+
+        byte[] buffer = mBuffer;
+        int size = mSize;
+        buffer[size++] = '"';
+
+        char previous = 0;
+        for (int i = 0; i < length; ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    buffer[size++] = '\\';
+                    buffer[size++] = (byte) c;
+                    break;
+                case '/':
+                    /* keeps "</script>" from closing an enclosing HTML element */
+                    if (previous == '<')
+                        buffer[size++] = '\\';
+                    buffer[size++] = '/';
+                    break;
+                case '\b':
+                    buffer[size++] = '\\';
+                    buffer[size++] = 'b';
+                    break;
+                case '\t':
+                    buffer[size++] = '\\';
+                    buffer[size++] = 't';
+                    break;
+                case '\n':
+                    buffer[size++] = '\\';
+                    buffer[size++] = 'n';
+                    break;
+                case '\f':
+                    buffer[size++] = '\\';
+                    buffer[size++] = 'f';
+                    break;
+                case '\r':
+                    buffer[size++] = '\\';
+                    buffer[size++] = 'r';
+                    break;
+                default:
+                    if (c < 0x20 || (c >= 0x80 && c < 0xa0) || (c >= 0x2000 && c < 0x2100)) {
+                        buffer[size++] = '\\';
+                        buffer[size++] = 'u';
+                        buffer[size++] = HEX[(c >> 12) & 0xf];
+                        buffer[size++] = HEX[(c >> 8) & 0xf];
+                        buffer[size++] = HEX[(c >> 4) & 0xf];
+                        buffer[size++] = HEX[c & 0xf];
+                    } else if (c < 0x80) {
+                        buffer[size++] = (byte) c;
+                    } else if (c < 0x800) {
+                        buffer[size++] = (byte) (0xc0 | (c >> 6));
+                        buffer[size++] = (byte) (0x80 | (c & 0x3f));
+                    } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                            Character.isLowSurrogate(value.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                        buffer[size++] = (byte) (0xf0 | (codePoint >> 18));
+                        buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                        buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                        buffer[size++] = (byte) (0x80 | (codePoint & 0x3f));
+                    } else if (Character.isSurrogate(c)) {
+                        /* unpaired surrogates are replaced, as String.getBytes() does */
+                        buffer[size++] = '?';
+                    } else {
+                        buffer[size++] = (byte) (0xe0 | (c >> 12));
+                        buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                        buffer[size++] = (byte) (0x80 | (c & 0x3f));
+                    }
+                    break;
+            }
+            previous = c;
+        }
+
+        buffer[size++] = '"';
+        mSize = size;
+    }
+
+    private void appendAscii(String value) {
+        int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; ++i)
+            mBuffer[mSize++] = (byte) value.charAt(i);
+    }
+
+    private void append(char c) {
+        ensureCapacity(1);
+        mBuffer[mSize++] = (byte) c;
+    }
+
+    private void append(byte[] bytes, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, 0, mBuffer, mSize, length);
+        mSize += length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (mSize + extra > mBuffer.length)
+            mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mSize + extra));
+    }
+
+}
@@ -6,30 +6,39 @@ package com.spoqa.battery.codecs;
 
 import com.spoqa.battery.CodecUtils;
 import com.spoqa.battery.FieldNameTranslator;
+import com.spoqa.battery.HttpRequestBody;
 import com.spoqa.battery.Logger;
 import com.spoqa.battery.PlatformUtils;
-import com.spoqa.battery.RequestSerializer;
+import com.spoqa.battery.ReflectionCache;
+import com.spoqa.battery.StreamingRequestSerializer;
+import com.spoqa.battery.TypeAdapter;
 import com.spoqa.battery.TypeAdapterCollection;
 import com.spoqa.battery.annotations.RequestBody;
 import com.spoqa.battery.exceptions.SerializationException;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
-public class MultipartFormDataEncoder implements RequestSerializer {
+/**
+ * Encodes multipart/form-data bodies. Files and streams are not read while encoding; they are
+ * written as parts of the body when the request is sent.
+ */
+public class MultipartFormDataEncoder implements StreamingRequestSerializer {
 
     private static final String MIME_TYPE = "multipart/form-data";
     private static final String TAG = "MultipartFormDataEncoder";
 
     private String mBoundary;
+    /* parts of the body being encoded, and the text not yet added to them */
+    private List<HttpRequestBody> mParts;
     private ByteArrayOutputStream mOutputStream;
 
     public MultipartFormDataEncoder() {
@@ -39,9 +48,27 @@ public class MultipartFormDataEncoder implements RequestSerializer {
     @Override
     public byte[] serializeObject(Object o, FieldNameTranslator translator,
                                   TypeAdapterCollection typeAdapters) throws SerializationException {
+        HttpRequestBody body = serializeBody(o, translator, typeAdapters);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(
+                (int) Math.min(Math.max(body.contentLength(), 32), Integer.MAX_VALUE));
+
+        try {
+            body.writeTo(output);
+        } catch (IOException e) {
+            throw new SerializationException(e);
+        }
+
+        return output.toByteArray();
+    }
+
+    @Override
+    public HttpRequestBody serializeBody(Object o, FieldNameTranslator translator,
+                                         TypeAdapterCollection typeAdapters) throws SerializationException {
+        mParts = new ArrayList<HttpRequestBody>();
         mOutputStream = new ByteArrayOutputStream();
 
-        List<Field> fields = CodecUtils.getAnnotatedFields(null, RequestBody.class, o.getClass());
+        ReflectionCache cache = ReflectionCache.getSharedInstance();
+        List<Field> fields = CodecUtils.getAnnotatedFields(cache, RequestBody.class, o.getClass());
         for (Field f : fields) {
             RequestBody annotation = f.getAnnotation(RequestBody.class);
             Class type = f.getType();
@@ -52,9 +79,10 @@ public class MultipartFormDataEncoder implements RequestSerializer {
             else
                 foreignName = translator.localToRemote(localName);
             String value = "";
+            TypeAdapter adapter;
 
             try {
-                Object element = f.get(o);
+                Object element = cache.getAccessor(o.getClass(), f).get(o);
 
                 if (element == null) {
                     continue;
@@ -79,35 +107,36 @@ public class MultipartFormDataEncoder implements RequestSerializer {
 
                         if (innerElement instanceof File) {
                             File file = (File) innerElement;
-                            try {
-                                addPart(nameWithIndex, new FileInputStream(file), file.getAbsolutePath());
-                            } catch (FileNotFoundException e) {
+                            if (file.isFile())
+                                addPart(nameWithIndex, HttpRequestBody.create(file), file.getAbsolutePath());
+                            else
                                 Logger.warn(TAG, String.format("Could not find file %1$s", file.getAbsolutePath()));
-                            }
                         } else if (innerElement instanceof InputStream) {
-                            addPart(nameWithIndex, (InputStream) innerElement, null);
+                            addPart(nameWithIndex, HttpRequestBody.create((InputStream) innerElement), null);
                         } else {
                             addPart(nameWithIndex, innerElement.toString());
                         }
                     }
                 } else if (element instanceof InputStream) {
-                    addPart(foreignName, (InputStream) element, null);
+                    addPart(foreignName, HttpRequestBody.create((InputStream) element), null);
                 } else if (element instanceof File) {
-                    try {
-                        File file = (File) element;
-                        addPart(foreignName, new FileInputStream(file), file.getName());
-                    } catch (FileNotFoundException e) {
-                        e.printStackTrace();
-                        Logger.warn(TAG, String.format("Field %1$s is not serializable: %2$s", type.getName(), e.toString()));
-                    }
-                } else if (typeAdapters.contains(type)) {
-                    addPart(foreignName, typeAdapters.query(type).encode(element));
+                    File file = (File) element;
+                    if (file.isFile())
+                        addPart(foreignName, HttpRequestBody.create(file), file.getName());
+                    else
+                        Logger.warn(TAG, String.format("Field %1$s is not serializable: %2$s is not a file",
+                                type.getName(), file.getAbsolutePath()));
+                } else if ((adapter = typeAdapters.query(type)) != null) {
+                    addPart(foreignName, adapter.encode(element));
                 } else {
                     Logger.warn(TAG, String.format("Field %1$s is not serializable", type.getName()));
                 }
             } catch (IllegalAccessException e) {
                 e.printStackTrace();
                 continue;
+            } catch (InvocationTargetException e) {
+                e.printStackTrace();
+                continue;
             }
         }
 
@@ -118,7 +147,12 @@ public class MultipartFormDataEncoder implements RequestSerializer {
             e.printStackTrace();
         }
 
-        return mOutputStream.toByteArray();
+        flushText();
+        Parts body = new Parts(mParts);
+        mParts = null;
+        mOutputStream = null;
+
+        return body;
     }
 
     private void addPart(String fieldName, String formData) {
@@ -133,9 +167,7 @@ public class MultipartFormDataEncoder implements RequestSerializer {
         }
     }
 
-    private void addPart(String fieldName, InputStream stream, String fileName) {
-        byte[] buffer = new byte[16384];
-
+    private void addPart(String fieldName, HttpRequestBody content, String fileName) {
         if (fileName == null)
             fileName = "";
 
@@ -157,15 +189,22 @@ public class MultipartFormDataEncoder implements RequestSerializer {
 
         try {
             mOutputStream.write(header.getBytes("utf-8"));
-            int read;
-            while ((read = stream.read(buffer)) > 0)
-                mOutputStream.write(buffer, 0, read);
+            flushText();
+            mParts.add(content);
             mOutputStream.write("\r\n".getBytes("utf-8"));
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /* turns the text written so far into a part of its own, ahead of streamed content */
+    private void flushText() {
+        if (mOutputStream.size() > 0) {
+            mParts.add(HttpRequestBody.create(mOutputStream.toByteArray()));
+            mOutputStream.reset();
+        }
+    }
+
     @Override
     public String serializationContentType() {
         return String.format("%1$s; boundary=%2$s", MIME_TYPE, mBoundary);
@@ -175,4 +214,36 @@ public class MultipartFormDataEncoder implements RequestSerializer {
     public boolean supportsCompositeType() {
         return false;
     }
+
+    private static final class Parts extends HttpRequestBody {
+        private final HttpRequestBody[] mParts;
+        private final long mLength;
+
+        public Parts(List<HttpRequestBody> parts) {
+            mParts = parts.toArray(new HttpRequestBody[parts.size()]);
+
+            /* the length is known only if every part knows its own */
+            long length = 0;
+            for (HttpRequestBody part : mParts) {
+                long partLength = part.contentLength();
+                if (partLength < 0) {
+                    length = -1;
+                    break;
+                }
+                length += partLength;
+            }
+            mLength = length;
+        }
+
+        @Override
+        public long contentLength() {
+            return mLength;
+        }
+
+        @Override
+        public void writeTo(OutputStream output) throws IOException {
+            for (HttpRequestBody part : mParts)
+                part.writeTo(output);
+        }
+    }
 }
@@ -7,7 +7,9 @@ package com.spoqa.battery.codecs;
 import com.spoqa.battery.CodecUtils;
 import com.spoqa.battery.FieldNameTranslator;
 import com.spoqa.battery.Logger;
-import com.spoqa.battery.RequestSerializer;
+import com.spoqa.battery.ReflectionCache;
+import com.spoqa.battery.StatelessRequestSerializer;
+import com.spoqa.battery.TypeAdapter;
 import com.spoqa.battery.TypeAdapterCollection;
 import com.spoqa.battery.annotations.RequestBody;
 import com.spoqa.battery.exceptions.SerializationException;
@@ -16,10 +18,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.net.URLEncoder;
 import java.util.List;
 
-public class UrlEncodedFormEncoder implements RequestSerializer {
+public class UrlEncodedFormEncoder implements StatelessRequestSerializer {
     private static final String TAG = "UrlEncodedFormEncoder";
 
     private static final String MIME_TYPE = "application/x-www-form-urlencoded; charset=utf-8";
@@ -33,7 +36,8 @@ public class UrlEncodedFormEncoder implements RequestSerializer {
                                   TypeAdapterCollection typeAdapters) throws SerializationException {
         StringBuilder sb = new StringBuilder();
 
-        List<Field> fields = CodecUtils.getAnnotatedFields(null, RequestBody.class, o.getClass());
+        ReflectionCache cache = ReflectionCache.getSharedInstance();
+        List<Field> fields = CodecUtils.getAnnotatedFields(cache, RequestBody.class, o.getClass());
         for (Field f : fields) {
             RequestBody annotation = f.getAnnotation(RequestBody.class);
             Class type = f.getType();
@@ -44,9 +48,10 @@ public class UrlEncodedFormEncoder implements RequestSerializer {
             else
                 foreignName = translator.localToRemote(localName);
             String value = "";
+            TypeAdapter adapter;
 
             try {
-                Object element = f.get(o);
+                Object element = cache.getAccessor(o.getClass(), f).get(o);
 
                 if (element == null) {
                     continue;
@@ -69,14 +74,17 @@ public class UrlEncodedFormEncoder implements RequestSerializer {
                         append(sb, foreignName, innerElement.toString());
                 } else if (element instanceof InputStream) {
                     Logger.warn(TAG, "Could not attach byte stream");
-                } else if (typeAdapters.contains(type)) {
-                    append(sb, foreignName, typeAdapters.query(type).encode(element));
+                } else if ((adapter = typeAdapters.query(type)) != null) {
+                    append(sb, foreignName, adapter.encode(element));
                 } else {
                     Logger.warn(TAG, String.format("Field %1$s is not serializable", type.getName()));
                 }
             } catch (IllegalAccessException e) {
                 e.printStackTrace();
                 continue;
+            } catch (InvocationTargetException e) {
+                e.printStackTrace();
+                continue;
             }
         }
 
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.fields;
+
+import java.util.TimeZone;
+
+/**
+ * Conversions between epoch milliseconds and proleptic Gregorian calendar fields, without
+ * Calendar instances. Shared by the date adapters, which only keep immutable state.
+ */
+final class CivilTime {
+
+    public static final long MILLIS_PER_DAY = 86400000L;
+
+    private static final String[] DAY_NAMES = { "Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat" };
+    private static final String[] MONTH_NAMES = {
+            "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"
+    };
+
+    private CivilTime() {
+
+    }
+
+    /* days since 1970-01-01; days past the end of the month roll over as Calendar does */
+    public static long daysFromCivil(int year, int month, int day) {
+        if (month <= 2)
+            --year;
+
+        long era = (year >= 0 ? year : year - 399) / 400;
+        int yearOfEra = (int) (year - era * 400);
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /* the date of a day since 1970-01-01, packed for year(), month() and day() */
+    public static int civilFromDays(long days) {
+        days += 719468;
+        long era = (days >= 0 ? days : days - 146096) / 146097;
+        int dayOfEra = (int) (days - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+        return (year << 9) | (month << 5) | day;
+    }
+
+    public static int year(int date) {
+        return date >> 9;
+    }
+
+    public static int month(int date) {
+        return (date >> 5) & 0xf;
+    }
+
+    public static int day(int date) {
+        return date & 0x1f;
+    }
+
+    /* 0 for Sunday; 1970-01-01 was a Thursday */
+    public static int dayOfWeek(long days) {
+        int dayOfWeek = (int) ((days + 4) % 7);
+        return dayOfWeek < 0 ? dayOfWeek + 7 : dayOfWeek;
+    }
+
+    public static long floorDays(long millis) {
+        long days = millis / MILLIS_PER_DAY;
+        return millis % MILLIS_PER_DAY < 0 ? days - 1 : days;
+    }
+
+    public static long toMillis(long days, int hour, int minute, int second, int millis) {
+        return days * MILLIS_PER_DAY + ((hour * 60 + minute) * 60 + second) * 1000L + millis;
+    }
+
+    /* the instant a wall clock time in zone stands for, resolving transitions like Calendar */
+    public static long localToUtc(long local, TimeZone zone) {
+        int offset = zone.getOffset(local - zone.getRawOffset());
+        long utc = local - offset;
+        int actual = zone.getOffset(utc);
+
+        return actual == offset ? utc : local - actual;
+    }
+
+    public static String dayName(int dayOfWeek) {
+        return DAY_NAMES[dayOfWeek];
+    }
+
+    public static String monthName(int month) {
+        return MONTH_NAMES[month - 1];
+    }
+
+    /* 1 to 12 for the English abbreviation at offset, in any case, or -1 */
+    public static int parseMonthName(String s, int offset) {
+        if (offset + 3 > s.length())
+            return -1;
+
+        for (int i = 0; i < MONTH_NAMES.length; ++i) {
+            if (s.regionMatches(true, offset, MONTH_NAMES[i], 0, 3))
+                return i + 1;
+        }
+
+        return -1;
+    }
+
+    /* the value of count decimal digits at offset, or -1 if any of them is not a digit */
+    public static int parseDigits(String s, int offset, int count) {
+        if (offset + count > s.length())
+            return -1;
+
+        int value = 0;
+        for (int i = offset; i < offset + count; ++i) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            value = value * 10 + (c - '0');
+        }
+
+        return value;
+    }
+
+    public static void appendDigits(StringBuilder sb, int value, int width) {
+        if (value < 0) {
+            sb.append('-');
+            value = -value;
+        }
+
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10)
+            ++digits;
+        for (int i = digits; i < width; ++i)
+            sb.append('0');
+
+        sb.append(value);
+    }
+
+    /* +hhmm, as SimpleDateFormat writes for Z */
+    public static void appendOffset(StringBuilder sb, int offsetMillis) {
+        int minutes = offsetMillis / 60000;
+        if (minutes < 0) {
+            sb.append('-');
+            minutes = -minutes;
+        } else {
+            sb.append('+');
+        }
+
+        appendDigits(sb, minutes / 60, 2);
+        appendDigits(sb, minutes % 60, 2);
+    }
+
+}
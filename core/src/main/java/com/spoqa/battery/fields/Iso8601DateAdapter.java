@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.fields;
+
+import com.spoqa.battery.TypeAdapter;
+import com.spoqa.battery.exceptions.DeserializationException;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Reads yyyy-MM-dd, and yyyy-MM-ddTHH:mm[:ss[.fraction]][offset] where the offset is Z, +hh,
+ * +hhmm or +hh:mm. Fractions may have any number of digits and are truncated to milliseconds.
+ * Dates and times without an offset are taken as wall clock time in the time zone of the
+ * adapter.
+ *
+ * Dates at midnight are written as yyyy-MM-dd, and others as yyyy-MM-ddTHH:mm:ss.SSSSSS+hhmm.
+ * The adapter holds no mutable state, so one instance may be shared across threads.
+ */
+public class Iso8601DateAdapter implements TypeAdapter<Date> {
+
+    private final TimeZone mTimeZone;
+
+    public Iso8601DateAdapter() {
+        this(TimeZone.getDefault());
+    }
+
+    public Iso8601DateAdapter(TimeZone timezone) {
+        mTimeZone = (TimeZone) timezone.clone();
+    }
+
+    @Override
+    public Class getType() {
+        return Date.class;
+    }
+
+    @Override
+    public Date decode(String s) throws DeserializationException {
+        int length = s.length();
+
+        int year = CivilTime.parseDigits(s, 0, 4);
+        int month = CivilTime.parseDigits(s, 5, 2);
+        int day = CivilTime.parseDigits(s, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 ||
+                s.charAt(4) != '-' || s.charAt(7) != '-')
+            throw error(s, 0);
+
+        long days = CivilTime.daysFromCivil(year, month, day);
+        if (length == 10)
+            return new Date(CivilTime.localToUtc(CivilTime.toMillis(days, 0, 0, 0, 0), mTimeZone));
+
+        char separator = s.charAt(10);
+        if (separator != 'T' && separator != 't' && separator != ' ')
+            throw error(s, 10);
+
+        int hour = CivilTime.parseDigits(s, 11, 2);
+        int minute = CivilTime.parseDigits(s, 14, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || s.charAt(13) != ':')
+            throw error(s, 11);
+
+        int i = 16;
+        int second = 0;
+        if (i < length && s.charAt(i) == ':') {
+            second = CivilTime.parseDigits(s, i + 1, 2);
+            if (second < 0 || second > 60)
+                throw error(s, i + 1);
+            i += 3;
+        }
+
+        int millis = 0;
+        if (i < length && (s.charAt(i) == '.' || s.charAt(i) == ',')) {
+            int start = ++i;
+            while (i < length && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+                if (i - start < 3)
+                    millis = millis * 10 + (s.charAt(i) - '0');
+                ++i;
+            }
+
+            if (i == start)
+                throw error(s, i);
+            for (int digits = i - start; digits < 3; ++digits)
+                millis *= 10;
+        }
+
+        long local = CivilTime.toMillis(days, hour, minute, second, millis);
+        if (i == length)
+            return new Date(CivilTime.localToUtc(local, mTimeZone));
+
+        char sign = s.charAt(i);
+        if ((sign == 'Z' || sign == 'z') && i + 1 == length)
+            return new Date(local);
+        if (sign != '+' && sign != '-')
+            throw error(s, i);
+
+        int offsetHours = CivilTime.parseDigits(s, i + 1, 2);
+        int offsetMinutes = 0;
+        int end = i + 3;
+        if (end < length) {
+            if (s.charAt(end) == ':')
+                ++end;
+            offsetMinutes = CivilTime.parseDigits(s, end, 2);
+            end += 2;
+        }
+
+        if (offsetHours < 0 || offsetMinutes < 0 || offsetMinutes > 59 || end != length)
+            throw error(s, i);
+
+        long offset = (offsetHours * 60 + offsetMinutes) * 60000L;
+        return new Date(sign == '+' ? local - offset : local + offset);
+    }
+
+    @Override
+    public String encode(Date object) {
+        long millis = object.getTime();
+        int offset = mTimeZone.getOffset(millis);
+        long local = millis + offset;
+        long days = CivilTime.floorDays(local);
+        int millisOfDay = (int) (local - days * CivilTime.MILLIS_PER_DAY);
+        int date = CivilTime.civilFromDays(days);
+
+        StringBuilder sb = new StringBuilder(31);
+        CivilTime.appendDigits(sb, CivilTime.year(date), 4);
+        sb.append('-');
+        CivilTime.appendDigits(sb, CivilTime.month(date), 2);
+        sb.append('-');
+        CivilTime.appendDigits(sb, CivilTime.day(date), 2);
+
+        /* milliseconds alone do not make a time of day worth writing */
+        int seconds = millisOfDay / 1000;
+        if (seconds == 0)
+            return sb.toString();
+
+        sb.append('T');
+        CivilTime.appendDigits(sb, seconds / 3600, 2);
+        sb.append(':');
+        CivilTime.appendDigits(sb, seconds / 60 % 60, 2);
+        sb.append(':');
+        CivilTime.appendDigits(sb, seconds % 60, 2);
+        sb.append('.');
+        CivilTime.appendDigits(sb, millisOfDay % 1000, 3);
+        sb.append("000");
+        CivilTime.appendOffset(sb, offset);
+
+        return sb.toString();
+    }
+
+    private static DeserializationException error(String s, int offset) {
+        return new DeserializationException(new ParseException(
+                String.format("Unparseable ISO-8601 date: \"%1$s\"", s), offset));
+    }
+}
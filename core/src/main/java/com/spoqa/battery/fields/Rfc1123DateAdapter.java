@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.fields;
+
+import com.spoqa.battery.TypeAdapter;
+import com.spoqa.battery.exceptions.DeserializationException;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Reads [EEE, ]d MMM yyyy HH:mm[:ss[.fraction]] zone, where the zone is GMT, UT, UTC, Z,
+ * +hhmm, GMT+hh:mm, one of the North American zones of RFC 822, the abbreviation of the time
+ * zone of the adapter or a time zone ID. Dates without a zone are taken as wall clock time in
+ * the time zone of the adapter.
+ *
+ * Dates are written as EEE, dd MMM yyyy HH:mm:ss z in the time zone of the adapter. The
+ * adapter holds no mutable state, so one instance may be shared across threads.
+ */
+public class Rfc1123DateAdapter implements TypeAdapter<Date> {
+
+    private static final String[] US_ZONES = { "EST", "EDT", "CST", "CDT", "MST", "MDT", "PST", "PDT" };
+    private static final int[] US_ZONE_OFFSETS = { -5, -4, -6, -5, -7, -6, -8, -7 };
+
+    private final TimeZone mTimeZone;
+    private final String mStandardName;
+    private final String mDaylightName;
+
+    public Rfc1123DateAdapter() {
+        this(TimeZone.getDefault());
+    }
+
+    public Rfc1123DateAdapter(TimeZone timezone) {
+        mTimeZone = (TimeZone) timezone.clone();
+        mStandardName = mTimeZone.getDisplayName(false, TimeZone.SHORT, Locale.US);
+        mDaylightName = mTimeZone.getDisplayName(true, TimeZone.SHORT, Locale.US);
+    }
+
+    @Override
+    public Class getType() {
+        return Date.class;
+    }
+
+    @Override
+    public Date decode(String s) throws DeserializationException {
+        int length = s.length();
+        int i = 0;
+
+        /* the day of the week is redundant, and not checked */
+        if (i < length && Character.isLetter(s.charAt(i))) {
+            while (i < length && Character.isLetter(s.charAt(i)))
+                ++i;
+            if (i == length || s.charAt(i) != ',')
+                throw error(s, i);
+            i = skipSpaces(s, i + 1);
+        }
+
+        int day = CivilTime.parseDigits(s, i, 2);
+        if (day >= 0) {
+            i += 2;
+        } else {
+            day = CivilTime.parseDigits(s, i, 1);
+            i += 1;
+        }
+        if (day < 1 || day > 31 || i >= length || s.charAt(i) != ' ')
+            throw error(s, i);
+
+        i = skipSpaces(s, i);
+        int month = CivilTime.parseMonthName(s, i);
+        if (month < 0 || i + 3 >= length || s.charAt(i + 3) != ' ')
+            throw error(s, i);
+
+        i = skipSpaces(s, i + 3);
+        int year = CivilTime.parseDigits(s, i, 4);
+        if (year < 0 || i + 4 >= length || s.charAt(i + 4) != ' ')
+            throw error(s, i);
+
+        i = skipSpaces(s, i + 4);
+        int hour = CivilTime.parseDigits(s, i, 2);
+        int minute = CivilTime.parseDigits(s, i + 3, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || s.charAt(i + 2) != ':')
+            throw error(s, i);
+
+        i += 5;
+        int second = 0;
+        if (i < length && s.charAt(i) == ':') {
+            second = CivilTime.parseDigits(s, i + 1, 2);
+            if (second < 0 || second > 60)
+                throw error(s, i + 1);
+            i += 3;
+        }
+
+        int millis = 0;
+        if (i < length && s.charAt(i) == '.') {
+            int start = ++i;
+            while (i < length && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+                if (i - start < 3)
+                    millis = millis * 10 + (s.charAt(i) - '0');
+                ++i;
+            }
+
+            if (i == start)
+                throw error(s, i);
+            for (int digits = i - start; digits < 3; ++digits)
+                millis *= 10;
+        }
+
+        long local = CivilTime.toMillis(CivilTime.daysFromCivil(year, month, day), hour, minute, second, millis);
+
+        i = skipSpaces(s, i);
+        if (i == length)
+            return new Date(CivilTime.localToUtc(local, mTimeZone));
+
+        int offset = parseZoneOffset(s, i);
+        if (offset != Integer.MIN_VALUE)
+            return new Date(local - offset);
+
+        /* abbreviations are only known for the time zone of the adapter, as encode() writes them */
+        String name = s.substring(i);
+        if (name.equals(mStandardName) || name.equals(mDaylightName))
+            return new Date(resolveLocal(local, !name.equals(mStandardName)));
+
+        TimeZone zone = TimeZone.getTimeZone(name);
+        /* unknown IDs silently resolve to GMT */
+        if (!zone.getID().equals(name))
+            throw error(s, i);
+
+        return new Date(CivilTime.localToUtc(local, zone));
+    }
+
+    @Override
+    public String encode(Date object) {
+        long millis = object.getTime();
+        int offset = mTimeZone.getOffset(millis);
+        long local = millis + offset;
+        long days = CivilTime.floorDays(local);
+        int seconds = (int) ((local - days * CivilTime.MILLIS_PER_DAY) / 1000);
+        int date = CivilTime.civilFromDays(days);
+
+        StringBuilder sb = new StringBuilder(29);
+        sb.append(CivilTime.dayName(CivilTime.dayOfWeek(days)));
+        sb.append(", ");
+        CivilTime.appendDigits(sb, CivilTime.day(date), 2);
+        sb.append(' ');
+        sb.append(CivilTime.monthName(CivilTime.month(date)));
+        sb.append(' ');
+        CivilTime.appendDigits(sb, CivilTime.year(date), 4);
+        sb.append(' ');
+        CivilTime.appendDigits(sb, seconds / 3600, 2);
+        sb.append(':');
+        CivilTime.appendDigits(sb, seconds / 60 % 60, 2);
+        sb.append(':');
+        CivilTime.appendDigits(sb, seconds % 60, 2);
+        sb.append(' ');
+        sb.append(mTimeZone.inDaylightTime(object) ? mDaylightName : mStandardName);
+
+        return sb.toString();
+    }
+
+    /* picks the instant the abbreviation stands for when a wall clock time occurs twice */
+    private long resolveLocal(long local, boolean daylight) {
+        long utc = CivilTime.localToUtc(local, mTimeZone);
+        if (mStandardName.equals(mDaylightName) || mTimeZone.inDaylightTime(new Date(utc)) == daylight)
+            return utc;
+
+        /* transitions are much more than half a day apart from each other */
+        long[] candidates = {
+                local - mTimeZone.getOffset(utc - CivilTime.MILLIS_PER_DAY / 2),
+                local - mTimeZone.getOffset(utc + CivilTime.MILLIS_PER_DAY / 2)
+        };
+        for (long candidate : candidates) {
+            if (local - candidate == mTimeZone.getOffset(candidate) &&
+                    mTimeZone.inDaylightTime(new Date(candidate)) == daylight)
+                return candidate;
+        }
+
+        return utc;
+    }
+
+    /* the offset in milliseconds of a fixed zone at offset, or Integer.MIN_VALUE */
+    private static int parseZoneOffset(String s, int offset) {
+        int length = s.length();
+        int i = offset;
+
+        if (s.startsWith("GMT", i) || s.startsWith("UTC", i))
+            i += 3;
+        else if (s.startsWith("UT", i))
+            i += 2;
+        else if (s.startsWith("Z", i) && i + 1 == length)
+            return 0;
+
+        if (i == length)
+            return i > offset ? 0 : Integer.MIN_VALUE;
+
+        char sign = s.charAt(i);
+        if (sign != '+' && sign != '-') {
+            if (i > offset || length - i != 3)
+                return Integer.MIN_VALUE;
+            for (int j = 0; j < US_ZONES.length; ++j) {
+                if (s.startsWith(US_ZONES[j], i))
+                    return US_ZONE_OFFSETS[j] * 3600000;
+            }
+            return Integer.MIN_VALUE;
+        }
+
+        int hours = CivilTime.parseDigits(s, i + 1, 2);
+        int minutes = 0;
+        int end = i + 3;
+        if (end < length) {
+            if (s.charAt(end) == ':')
+                ++end;
+            minutes = CivilTime.parseDigits(s, end, 2);
+            end += 2;
+        }
+
+        if (hours < 0 || minutes < 0 || minutes > 59 || end != length)
+            return Integer.MIN_VALUE;
+
+        int millis = (hours * 60 + minutes) * 60000;
+        return sign == '+' ? millis : -millis;
+    }
+
+    private static int skipSpaces(String s, int offset) {
+        while (offset < s.length() && s.charAt(offset) == ' ')
+            ++offset;
+        return offset;
+    }
+
+    private static DeserializationException error(String s, int offset) {
+        return new DeserializationException(new ParseException(
+                String.format("Unparseable RFC 1123 date: \"%1$s\"", s), offset));
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.fields;
+
+import com.spoqa.battery.ScalarTypeAdapter;
+import com.spoqa.battery.ValueSink;
+import com.spoqa.battery.exceptions.DeserializationException;
+
+import java.util.Date;
+
+/**
+ * Dates as the number of seconds or milliseconds since the epoch. Numbers are taken as
+ * numbers and text is parsed as a whole number. Request bodies get the timestamp as a string,
+ * as they always have, unless the adapter is created to write numbers.
+ */
+public class TimestampDateAdapter extends ScalarTypeAdapter<Date> {
+
+    private boolean mMsec;
+    private boolean mNumeric;
+
+    public TimestampDateAdapter(boolean msec) {
+        this(msec, false);
+    }
+
+    /**
+     * @param numeric whether request bodies such as JSON get the timestamp as a number rather
+     *                than a string
+     */
+    public TimestampDateAdapter(boolean msec, boolean numeric) {
+        mMsec = msec;
+        mNumeric = numeric;
+    }
+
+    @Override
+    public Class getType() {
+        return Date.class;
+    }
+
+    @Override
+    public Date decode(String s) throws DeserializationException {
+        return decodeLong(Long.parseLong(s));
+    }
+
+    @Override
+    public Date decodeLong(long value) {
+        return new Date(mMsec ? value : value * 1000);
+    }
+
+    @Override
+    public Date decodeDouble(double value) {
+        /* fractions of a second are kept down to the millisecond */
+        return new Date((long) (mMsec ? value : value * 1000));
+    }
+
+    @Override
+    public String encode(Date object) {
+        return Long.toString(toTimestamp(object));
+    }
+
+    @Override
+    public void encode(Date object, ValueSink sink) {
+        if (mNumeric)
+            sink.value(toTimestamp(object));
+        else
+            sink.value(encode(object));
+    }
+
+    private long toTimestamp(Date date) {
+        if (mMsec)
+            return date.getTime();
+        else
+            return date.getTime() / 1000;
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CacheHeadersTest {
+
+    /* Wed, 04 Mar 2015 05:06:07 GMT */
+    private static final long NOW = 1425445567000L;
+    private static final byte[] BODY = new byte[0];
+
+    private static Map<String, String> headers(String... pairs) {
+        Map<String, String> map = new HashMap<String, String>();
+        for (int i = 0; i < pairs.length; i += 2)
+            map.put(pairs[i], pairs[i + 1]);
+        return map;
+    }
+
+    private static ResponseCache.Entry entry(Map<String, String> headers) {
+        return CacheHeaders.parse(headers, -1, -1, NOW).createEntry(BODY);
+    }
+
+    @Test
+    public void maxAge() {
+        ResponseCache.Entry entry = entry(headers("Cache-Control", "public, max-age=60, stale-while-revalidate=30"));
+
+        assertEquals(NOW, entry.date());
+        assertEquals(60000, entry.maxAge());
+        assertEquals(30000, entry.staleWhileRevalidate());
+        assertTrue(entry.isFresh(NOW + 59999));
+        assertFalse(entry.isFresh(NOW + 60000));
+        assertTrue(entry.isStaleWhileRevalidate(NOW + 60000));
+        assertTrue(entry.isStaleWhileRevalidate(NOW + 89999));
+        assertFalse(entry.isStaleWhileRevalidate(NOW + 90000));
+    }
+
+    @Test
+    public void quotedValuesAndCase() {
+        ResponseCache.Entry entry = entry(headers("cache-control", "MAX-AGE=\"60\""));
+        assertEquals(60000, entry.maxAge());
+        assertEquals(0, entry.staleWhileRevalidate());
+    }
+
+    @Test
+    public void ageShiftsDate() {
+        ResponseCache.Entry entry = entry(headers("Cache-Control", "max-age=60", "AGE", "50"));
+        assertEquals(NOW - 50000, entry.date());
+        assertTrue(entry.isFresh(NOW + 9999));
+        assertFalse(entry.isFresh(NOW + 10000));
+
+        assertEquals(NOW, entry(headers("Cache-Control", "max-age=60", "Age", "soon")).date());
+    }
+
+    @Test
+    public void noStoreAndNoCache() {
+        CacheHeaders h = CacheHeaders.parse(headers("Cache-Control", "no-store, max-age=60"), -1, -1, NOW);
+        assertFalse(h.isStorable());
+
+        h = CacheHeaders.parse(headers("Cache-Control", "no-cache, max-age=60"), -1, -1, NOW);
+        assertFalse(h.isStorable());
+        assertEquals(0, h.createEntry(BODY).maxAge());
+
+        /* still worth storing for revalidation */
+        h = CacheHeaders.parse(headers("Cache-Control", "no-cache", "ETag", "\"abc\""), -1, -1, NOW);
+        assertTrue(h.isStorable());
+        assertFalse(h.createEntry(BODY).isFresh(NOW));
+        assertTrue(h.createEntry(BODY).hasValidators());
+    }
+
+    @Test
+    public void mustRevalidate() {
+        ResponseCache.Entry entry = entry(headers("Cache-Control",
+                "max-age=60, stale-while-revalidate=30, must-revalidate"));
+        assertEquals(60000, entry.maxAge());
+        assertEquals(0, entry.staleWhileRevalidate());
+        assertFalse(entry.isStaleWhileRevalidate(NOW + 60000));
+    }
+
+    @Test
+    public void expires() {
+        /* measured against Date, two hours behind the local clock */
+        ResponseCache.Entry entry = entry(headers(
+                "Date", "Wed, 04 Mar 2015 03:06:07 GMT",
+                "Expires", "Wed, 04 Mar 2015 03:08:07 GMT"));
+        assertEquals(120000, entry.maxAge());
+
+        /* against the local clock without Date */
+        entry = entry(headers("Expires", "Wed, 04 Mar 2015 05:07:07 GMT"));
+        assertEquals(60000, entry.maxAge());
+
+        /* max-age wins over Expires */
+        entry = entry(headers("Cache-Control", "max-age=10", "Expires", "Wed, 04 Mar 2015 05:07:07 GMT"));
+        assertEquals(10000, entry.maxAge());
+
+        /* in the past, or invalid */
+        assertEquals(0, entry(headers("Expires", "Wed, 04 Mar 2015 04:00:00 GMT")).maxAge());
+        assertEquals(0, entry(headers("Expires", "0")).maxAge());
+    }
+
+    @Test
+    public void storable() {
+        assertFalse(CacheHeaders.parse(headers(), -1, -1, NOW).isStorable());
+        assertTrue(CacheHeaders.parse(headers("ETag", "\"abc\""), -1, -1, NOW).isStorable());
+        assertTrue(CacheHeaders.parse(headers("Last-Modified", "Wed, 04 Mar 2015 04:00:00 GMT"), -1, -1, NOW)
+                .isStorable());
+        assertTrue(CacheHeaders.parse(headers("Cache-Control", "max-age=60", "Vary", "accept-encoding"),
+                -1, -1, NOW).isStorable());
+        assertFalse(CacheHeaders.parse(headers("Cache-Control", "max-age=60", "Vary", "Authorization"),
+                -1, -1, NOW).isStorable());
+    }
+
+    @Test
+    public void overrides() {
+        CacheHeaders h = CacheHeaders.parse(headers("Cache-Control", "no-cache"), 60, 30, NOW);
+        ResponseCache.Entry entry = h.createEntry(BODY);
+        assertTrue(h.isStorable());
+        assertEquals(60000, entry.maxAge());
+        assertEquals(30000, entry.staleWhileRevalidate());
+
+        entry = CacheHeaders.parse(headers("Cache-Control", "max-age=60, stale-while-revalidate=30"), -1, 0, NOW)
+                .createEntry(BODY);
+        assertEquals(60000, entry.maxAge());
+        assertEquals(0, entry.staleWhileRevalidate());
+    }
+
+    @Test
+    public void refresh() {
+        ResponseCache.Entry stored = CacheHeaders.parse(headers("Cache-Control", "max-age=60", "ETag", "\"abc\""),
+                -1, -1, NOW - 120000).createEntry(BODY);
+        assertFalse(stored.isFresh(NOW));
+
+        /* a 304 without freshness of its own keeps that of the stored response */
+        ResponseCache.Entry refreshed = CacheHeaders.parse(headers(), -1, -1, NOW).refresh(stored);
+        assertEquals(NOW, refreshed.date());
+        assertEquals(60000, refreshed.maxAge());
+        assertEquals("\"abc\"", refreshed.etag());
+        assertTrue(refreshed.isFresh(NOW));
+
+        refreshed = CacheHeaders.parse(headers("Cache-Control", "max-age=5", "ETag", "\"def\""), -1, -1, NOW)
+                .refresh(stored);
+        assertEquals(5000, refreshed.maxAge());
+        assertEquals("\"def\"", refreshed.etag());
+    }
+
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.codecs.JsonCodec;
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.fields.Iso8601DateAdapter;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Binds the same bodies through the streaming token reader and through the tree built by
+ * org.json, which every response went through before, and expects the same objects.
+ */
+public class ObjectBuilderTest {
+
+    private static final String TREE_MIME_TYPE = "application/x-tree+json";
+
+    /* JsonCodec without its token reader, so that ObjectBuilder walks the tree */
+    private static final class TreeJsonCodec implements KeyedResponseDeserializer {
+        private final JsonCodec mCodec = new JsonCodec();
+
+        @Override
+        public Object parseInput(String input) throws DeserializationException {
+            return mCodec.parseInput(input);
+        }
+
+        @Override
+        public boolean containsChild(Object internalObject, String key) {
+            return mCodec.containsChild(internalObject, key);
+        }
+
+        @Override
+        public Object queryObjectChild(Object internalObject, String key) {
+            return mCodec.queryObjectChild(internalObject, key);
+        }
+
+        @Override
+        public Iterable<Object> queryArrayChildren(Object internalArray) {
+            return mCodec.queryArrayChildren(internalArray);
+        }
+
+        @Override
+        public Iterable<String> queryObjectKeys(Object internalObject) {
+            return mCodec.queryObjectKeys(internalObject);
+        }
+
+        @Override
+        public boolean isObject(Class<?> internalClass) {
+            return mCodec.isObject(internalClass);
+        }
+
+        @Override
+        public boolean isArray(Class<?> internalClass) {
+            return mCodec.isArray(internalClass);
+        }
+
+        @Override
+        public String deserializationContentType() {
+            return TREE_MIME_TYPE;
+        }
+    }
+
+    public static class Item {
+        @Response public String name;
+        @Response public int count;
+    }
+
+    public static class Body {
+        @Response public int id;
+        @Response public long big;
+        @Response public double ratio;
+        @Response public boolean flag;
+        @Response public String text;
+        @Response public String missing;
+        @Response public Integer boxed;
+        @Response public List<Integer> ints;
+        @Response public int[] prims;
+        @Response public List<List<String>> nested;
+        @Response public Map<String, Integer> counts;
+        @Response public Item item;
+        @Response public List<Item> items;
+        @Response public Date when;
+    }
+
+    private static final String BODY = "{" +
+            "\"id\": 42, \"big\": 9007199254740993, \"ratio\": -0.125, \"flag\": true," +
+            "\"text\": \"caf\\u00e9 \\\"quoted\\\"\", \"boxed\": null, \"unknown\": {\"a\": [1, 2]}," +
+            "\"ints\": [1, 2, 3], \"prims\": [4, -5], \"nested\": [[\"a\"], [], [\"b\", \"c\"]]," +
+            "\"counts\": {\"x\": 1, \"y\": 2}, \"item\": {\"name\": \"one\", \"count\": 1}," +
+            "\"items\": [{\"name\": \"two\", \"count\": 2}, {\"name\": \"three\"}]," +
+            "\"when\": \"2015-03-04T05:06:07.089Z\"" +
+            "}";
+
+    static {
+        ObjectBuilder.registerDeserializer(new TreeJsonCodec());
+    }
+
+    private static Body build(String mimeType, String body) throws DeserializationException {
+        TypeAdapterCollection typeAdapters = new TypeAdapterCollection();
+        typeAdapters.register(new Iso8601DateAdapter(TimeZone.getTimeZone("UTC")));
+
+        Body object = new Body();
+        ObjectBuilder.build(mimeType, body, object, new FieldNameTranslator(null, null), typeAdapters);
+        return object;
+    }
+
+    @Test
+    public void streamingMatchesTree() throws Throwable {
+        Body streamed = build(JsonCodec.MIME_TYPE, BODY);
+        Body tree = build(TREE_MIME_TYPE, BODY);
+
+        for (Field field : Body.class.getFields()) {
+            Object expected = field.get(tree);
+            Object actual = field.get(streamed);
+            if (expected instanceof int[])
+                assertTrue(field.getName(), Arrays.equals((int[]) expected, (int[]) actual));
+            else if (expected instanceof Item || expected instanceof List && field.getName().equals("items"))
+                assertEquals(field.getName(), describe(expected), describe(actual));
+            else
+                assertEquals(field.getName(), expected, actual);
+        }
+    }
+
+    @Test
+    public void bindsValues() throws Throwable {
+        Body body = build(JsonCodec.MIME_TYPE, BODY);
+
+        assertEquals(42, body.id);
+        assertEquals(9007199254740993L, body.big);
+        assertEquals(-0.125, body.ratio, 0);
+        assertTrue(body.flag);
+        assertEquals("caf\u00e9 \"quoted\"", body.text);
+        assertNull(body.missing);
+        assertNull(body.boxed);
+        assertEquals(Arrays.asList(1, 2, 3), body.ints);
+        assertTrue(Arrays.equals(new int[] { 4, -5 }, body.prims));
+        assertEquals(3, body.nested.size());
+        assertEquals(Arrays.asList("b", "c"), body.nested.get(2));
+        assertEquals(Integer.valueOf(2), body.counts.get("y"));
+        assertEquals("one", body.item.name);
+        assertEquals("three", body.items.get(1).name);
+        assertEquals(1425445567089L, body.when.getTime());
+    }
+
+    @Test
+    public void rejectsTruncatedBody() throws Throwable {
+        String truncated = BODY.substring(0, BODY.length() / 2);
+        try {
+            build(JsonCodec.MIME_TYPE, truncated);
+            fail("bound a truncated body");
+        } catch (DeserializationException e) {
+            /* expected */
+        }
+    }
+
+    private static String describe(Object o) {
+        if (o instanceof Item)
+            return ((Item) o).name + ":" + ((Item) o).count;
+        if (o instanceof List) {
+            StringBuilder sb = new StringBuilder();
+            for (Object element : (List) o)
+                sb.append(describe(element)).append(',');
+            return sb.toString();
+        }
+        return String.valueOf(o);
+    }
+
+}
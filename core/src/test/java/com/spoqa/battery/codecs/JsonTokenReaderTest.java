@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.codecs;
+
+import com.spoqa.battery.TokenReader;
+import com.spoqa.battery.TokenReader.Token;
+import com.spoqa.battery.exceptions.DeserializationException;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonTokenReaderTest {
+
+    private static TokenReader reader(String json) throws UnsupportedEncodingException {
+        byte[] bytes = json.getBytes("UTF-8");
+        return new JsonTokenReader(bytes, 0, bytes.length);
+    }
+
+    /* hands the document over one byte at a time, so that every token crosses a refill */
+    private static TokenReader trickle(String json) throws UnsupportedEncodingException {
+        InputStream input = new ByteArrayInputStream(json.getBytes("UTF-8")) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        return new JsonTokenReader(input);
+    }
+
+    private static void readDocument(TokenReader reader) throws DeserializationException {
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        reader.beginArray();
+        assertEquals(1, reader.nextInt());
+        assertEquals(-2500.0, reader.nextDouble(), 0);
+        assertTrue(reader.nextBoolean());
+        reader.nextNull();
+        assertEquals("x\u00e9\n\"\ud83d\ude00", reader.nextString());
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertEquals("b", reader.nextName());
+        reader.beginObject();
+        reader.endObject();
+        reader.endObject();
+        assertEquals(Token.END_DOCUMENT, reader.peek());
+    }
+
+    private static final String DOCUMENT =
+            "{ \"a\" : [1, -2.5e3, true, null, \"x\\u00e9\\n\\\"\ud83d\ude00\"], \"b\": {} }";
+
+    @Test
+    public void readsTokens() throws Throwable {
+        readDocument(reader(DOCUMENT));
+    }
+
+    @Test
+    public void readsTokensAcrossRefills() throws Throwable {
+        readDocument(trickle(DOCUMENT));
+    }
+
+    @Test
+    public void keepsIntegersExact() throws Throwable {
+        TokenReader reader = reader("[9007199254740993, 1.5, 12345678901234567890]");
+        reader.beginArray();
+        assertTrue(reader.peekIntegral());
+        assertEquals(9007199254740993L, reader.nextLong());
+        assertFalse(reader.peekIntegral());
+        assertEquals(1.5, reader.nextDouble(), 0);
+        /* too large for long */
+        assertFalse(reader.peekIntegral());
+        assertEquals(1.2345678901234567e19, reader.nextDouble(), 1e4);
+        reader.endArray();
+    }
+
+    @Test
+    public void skipsNestedValues() throws Throwable {
+        TokenReader reader = reader("{\"skip\": {\"a\": [1, {\"b\": \"}\"}], \"c\": null}, \"keep\": 3}");
+        reader.beginObject();
+        assertEquals("skip", reader.nextName());
+        reader.skipValue();
+        assertEquals("keep", reader.nextName());
+        assertEquals(3, reader.nextInt());
+        reader.endObject();
+    }
+
+    @Test
+    public void rejectsTruncatedObject() throws Throwable {
+        assertMalformed("{\"a\": 1");
+    }
+
+    @Test
+    public void rejectsTruncatedArray() throws Throwable {
+        assertMalformed("[1, 2");
+    }
+
+    @Test
+    public void rejectsTruncatedString() throws Throwable {
+        assertMalformed("{\"a\": \"abc");
+    }
+
+    @Test
+    public void rejectsTruncatedEscape() throws Throwable {
+        assertMalformed("[\"\\u00");
+    }
+
+    @Test
+    public void rejectsMalformedEscape() throws Throwable {
+        assertMalformedScalar("[\"\\u00zz\"]");
+    }
+
+    @Test
+    public void rejectsTruncatedLiteral() throws Throwable {
+        assertMalformed("[tru");
+    }
+
+    @Test
+    public void rejectsMisspelledLiteral() throws Throwable {
+        assertMalformed("[nul1]");
+    }
+
+    @Test
+    public void rejectsMalformedNumber() throws Throwable {
+        assertMalformedScalar("[1-2]");
+        assertMalformedScalar("[-]");
+    }
+
+    @Test
+    public void rejectsMissingColon() throws Throwable {
+        assertMalformed("{\"a\" 1}");
+    }
+
+    @Test
+    public void rejectsUnquotedName() throws Throwable {
+        assertMalformed("{a: 1}");
+    }
+
+    @Test
+    public void rejectsMissingComma() throws Throwable {
+        assertMalformed("[1 2]");
+    }
+
+    @Test
+    public void rejectsTrailingComma() throws Throwable {
+        assertMalformed("[1,]");
+    }
+
+    @Test
+    public void rejectsTrailingContent() throws Throwable {
+        assertMalformed("{} {}");
+    }
+
+    @Test
+    public void rejectsEmptyInput() throws Throwable {
+        assertMalformed("");
+        assertMalformed("   ");
+    }
+
+    @Test
+    public void rejectsWrongToken() throws Throwable {
+        TokenReader reader = reader("{\"a\": \"text\"}");
+        reader.beginObject();
+        reader.nextName();
+        try {
+            reader.nextInt();
+            fail("read a string as a number");
+        } catch (DeserializationException e) {
+            /* expected */
+        }
+    }
+
+    /* reads the whole document, which must fail, through both the array and stream paths */
+    private static void assertMalformed(String json) throws Throwable {
+        assertMalformed(json, reader(json));
+        assertMalformed(json, trickle(json));
+    }
+
+    /* skipValue() does not look into strings and numbers, so the scalar in an array is read */
+    private static void assertMalformedScalar(String json) throws Throwable {
+        TokenReader reader = reader(json);
+        reader.beginArray();
+        try {
+            reader.nextScalar();
+            fail("accepted malformed JSON: " + json);
+        } catch (DeserializationException e) {
+            /* expected */
+        }
+    }
+
+    private static void assertMalformed(String json, TokenReader reader) {
+        try {
+            reader.skipValue();
+            reader.peek();
+            fail("accepted malformed JSON: " + json);
+        } catch (DeserializationException e) {
+            /* expected */
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.fields;
+
+import com.spoqa.battery.exceptions.DeserializationException;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class Iso8601DateAdapterTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final TimeZone SEOUL = TimeZone.getTimeZone("Asia/Seoul");
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+
+    /* 2015-03-04T05:06:07.089Z */
+    private static final long INSTANT = 1425445567089L;
+
+    private static long parse(TimeZone zone, String s) throws DeserializationException {
+        return new Iso8601DateAdapter(zone).decode(s).getTime();
+    }
+
+    @Test
+    public void parsesOffsets() throws Throwable {
+        assertEquals(INSTANT, parse(SEOUL, "2015-03-04T05:06:07.089Z"));
+        assertEquals(INSTANT, parse(SEOUL, "2015-03-04T05:06:07.089z"));
+        assertEquals(INSTANT, parse(UTC, "2015-03-04T14:06:07.089+09:00"));
+        assertEquals(INSTANT, parse(UTC, "2015-03-04T14:06:07.089+0900"));
+        assertEquals(INSTANT, parse(UTC, "2015-03-04T14:06:07.089+09"));
+        assertEquals(INSTANT, parse(UTC, "2015-03-03T23:36:07.089-05:30"));
+    }
+
+    @Test
+    public void parsesFractions() throws Throwable {
+        long second = INSTANT - 89;
+        assertEquals(second, parse(UTC, "2015-03-04T05:06:07Z"));
+        assertEquals(second + 800, parse(UTC, "2015-03-04T05:06:07.8Z"));
+        assertEquals(second + 80, parse(UTC, "2015-03-04T05:06:07.08Z"));
+        assertEquals(INSTANT, parse(UTC, "2015-03-04T05:06:07,089Z"));
+        /* digits past the millisecond are truncated */
+        assertEquals(INSTANT, parse(UTC, "2015-03-04T05:06:07.089999999Z"));
+        assertEquals(second - 7000, parse(UTC, "2015-03-04T05:06Z"));
+    }
+
+    @Test
+    public void takesLocalTimesInItsZone() throws Throwable {
+        assertEquals(INSTANT, parse(SEOUL, "2015-03-04T14:06:07.089"));
+        assertEquals(INSTANT, parse(SEOUL, "2015-03-04 14:06:07.089"));
+        assertEquals(1425394800000L, parse(SEOUL, "2015-03-04"));
+        /* after the switch to daylight saving time on 2015-03-08 */
+        assertEquals(1426046400000L, parse(NEW_YORK, "2015-03-11"));
+    }
+
+    @Test
+    public void matchesSimpleDateFormat() throws Throwable {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ", Locale.US);
+        format.setTimeZone(NEW_YORK);
+        Iso8601DateAdapter adapter = new Iso8601DateAdapter(NEW_YORK);
+
+        /* steps through a year, across both daylight saving transitions and a leap day */
+        for (long t = 1420070400000L; t < 1420070400000L + 366L * 86400000L; t += 7777777L) {
+            Date date = new Date(t);
+            assertEquals(format.format(date), t, adapter.decode(format.format(date)).getTime());
+        }
+    }
+
+    @Test
+    public void roundTrips() throws Throwable {
+        for (TimeZone zone : new TimeZone[] { UTC, SEOUL, NEW_YORK }) {
+            Iso8601DateAdapter adapter = new Iso8601DateAdapter(zone);
+            for (long t : new long[] { INSTANT, 0L, -86398999L, 951782400000L, 4102444799999L }) {
+                Date date = new Date(t);
+                String encoded = adapter.encode(date);
+                assertEquals(encoded, t, adapter.decode(encoded).getTime());
+            }
+        }
+    }
+
+    @Test
+    public void encodes() throws Throwable {
+        assertEquals("2015-03-04T14:06:07.089000+0900", new Iso8601DateAdapter(SEOUL).encode(new Date(INSTANT)));
+        assertEquals("2015-03-04", new Iso8601DateAdapter(SEOUL).encode(new Date(1425394800000L)));
+    }
+
+    @Test
+    public void rejectsMalformedDates() throws Throwable {
+        String[] malformed = {
+                "", "2015", "2015-03", "2015/03/04", "2015-13-04", "2015-03-32", "2015-03-04X",
+                "2015-03-04T", "2015-03-04T25:00", "2015-03-04T05:60", "2015-03-04T05:06:61",
+                "2015-03-04T05:06:07.", "2015-03-04T05:06:07.Z", "2015-03-04T05:06:07+",
+                "2015-03-04T05:06:07+9", "2015-03-04T05:06:07+09:60", "2015-03-04T05:06:07Zjunk",
+                "2015-03-04T05:06:07 PST", "abcd-ef-ghTij:kl"
+        };
+
+        Iso8601DateAdapter adapter = new Iso8601DateAdapter(UTC);
+        for (String s : malformed) {
+            try {
+                adapter.decode(s);
+                fail("parsed \"" + s + "\"");
+            } catch (DeserializationException e) {
+                /* expected */
+            }
+        }
+    }
+
+}
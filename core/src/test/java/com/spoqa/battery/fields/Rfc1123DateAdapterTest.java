@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.fields;
+
+import com.spoqa.battery.exceptions.DeserializationException;
+
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class Rfc1123DateAdapterTest {
+
+    private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+
+    /* Wed, 04 Mar 2015 05:06:07 GMT */
+    private static final long INSTANT = 1425445567000L;
+
+    private static long parse(TimeZone zone, String s) throws DeserializationException {
+        return new Rfc1123DateAdapter(zone).decode(s).getTime();
+    }
+
+    @Test
+    public void parsesZones() throws Throwable {
+        assertEquals(INSTANT, parse(NEW_YORK, "Wed, 04 Mar 2015 05:06:07 GMT"));
+        assertEquals(INSTANT, parse(NEW_YORK, "Wed, 04 Mar 2015 05:06:07 UTC"));
+        assertEquals(INSTANT, parse(NEW_YORK, "Wed, 04 Mar 2015 14:06:07 +0900"));
+        assertEquals(INSTANT, parse(NEW_YORK, "Wed, 04 Mar 2015 14:06:07 GMT+09:00"));
+        assertEquals(INSTANT, parse(GMT, "Wed, 04 Mar 2015 00:06:07 EST"));
+        assertEquals(INSTANT, parse(GMT, "Tue, 03 Mar 2015 21:06:07 PST"));
+        assertEquals(INSTANT, parse(GMT, "Wed, 04 Mar 2015 14:06:07 Asia/Seoul"));
+    }
+
+    @Test
+    public void parsesLooseForms() throws Throwable {
+        assertEquals(INSTANT, parse(NEW_YORK, "04 Mar 2015 05:06:07 GMT"));
+        assertEquals(INSTANT, parse(NEW_YORK, "Wed,  4 Mar 2015 05:06:07 GMT"));
+        assertEquals(INSTANT, parse(NEW_YORK, "4 Mar 2015 05:06:07 GMT"));
+        assertEquals(INSTANT - 7000, parse(NEW_YORK, "4 Mar 2015 05:06 GMT"));
+        assertEquals(INSTANT + 250, parse(NEW_YORK, "4 Mar 2015 05:06:07.25 GMT"));
+        assertEquals(INSTANT, parse(GMT, "Wed, 04 Mar 2015 05:06:07"));
+        assertEquals(INSTANT, parse(NEW_YORK, "Wed, 04 Mar 2015 00:06:07"));
+    }
+
+    @Test
+    public void roundTrips() throws Throwable {
+        for (TimeZone zone : new TimeZone[] { GMT, NEW_YORK }) {
+            Rfc1123DateAdapter adapter = new Rfc1123DateAdapter(zone);
+            /* includes both readings of the hour repeated on 2015-11-01 in New York */
+            for (long t : new long[] { INSTANT, 0L, 951782400000L, 1446355800000L, 1446359400000L }) {
+                String encoded = adapter.encode(new Date(t));
+                assertEquals(encoded, t, adapter.decode(encoded).getTime());
+            }
+        }
+    }
+
+    @Test
+    public void encodes() throws Throwable {
+        assertEquals("Wed, 04 Mar 2015 05:06:07 GMT", new Rfc1123DateAdapter(GMT).encode(new Date(INSTANT)));
+        assertEquals("Wed, 04 Mar 2015 00:06:07 EST", new Rfc1123DateAdapter(NEW_YORK).encode(new Date(INSTANT)));
+    }
+
+    @Test
+    public void rejectsMalformedDates() throws Throwable {
+        String[] malformed = {
+                "", "Wed", "Wed 04 Mar 2015 05:06:07 GMT", "Wed, 04 Foo 2015 05:06:07 GMT",
+                "Wed, 32 Mar 2015 05:06:07 GMT", "Wed, 04 Mar 05:06:07 GMT", "Wed, 04 Mar 2015",
+                "Wed, 04 Mar 2015 24:06:07 GMT", "Wed, 04 Mar 2015 05:60 GMT", "Wed, 04 Mar 2015 05-06 GMT",
+                "Wed, 04 Mar 2015 05:06:07. GMT", "Wed, 04 Mar 2015 05:06:07 Nowhere/Atlantis"
+        };
+
+        Rfc1123DateAdapter adapter = new Rfc1123DateAdapter(GMT);
+        for (String s : malformed) {
+            try {
+                adapter.decode(s);
+                fail("parsed \"" + s + "\"");
+            } catch (DeserializationException e) {
+                /* expected */
+            }
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.jvm;
+
+import com.spoqa.battery.Logger;
+
+import java.util.logging.Level;
+
+public class JvmLogger implements Logger.LoggerImpl {
+    @Override
+    public void debug(String tag, String msg) {
+        java.util.logging.Logger.getLogger(tag).log(Level.FINE, msg);
+    }
+
+    @Override
+    public void error(String tag, String msg) {
+        java.util.logging.Logger.getLogger(tag).log(Level.SEVERE, msg);
+    }
+
+    @Override
+    public void info(String tag, String msg) {
+        java.util.logging.Logger.getLogger(tag).log(Level.INFO, msg);
+    }
+
+    @Override
+    public void verbose(String tag, String msg) {
+        java.util.logging.Logger.getLogger(tag).log(Level.FINEST, msg);
+    }
+
+    @Override
+    public void warn(String tag, String msg) {
+        java.util.logging.Logger.getLogger(tag).log(Level.WARNING, msg);
+    }
+}
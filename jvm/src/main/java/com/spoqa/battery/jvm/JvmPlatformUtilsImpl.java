@@ -0,0 +1,27 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.jvm;
+
+import com.spoqa.battery.PlatformUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLConnection;
+import java.nio.file.Files;
+
+public class JvmPlatformUtilsImpl implements PlatformUtils.PlatformUtilsImpl {
+    @Override
+    public String getMimeType(File path) {
+        String type = URLConnection.guessContentTypeFromName(path.getName());
+        if (type == null) {
+            try {
+                type = Files.probeContentType(path.toPath());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return type;
+    }
+}
@@ -0,0 +1,382 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.jvm;
+
+import com.spoqa.battery.HttpRequest;
+import com.spoqa.battery.HttpRequestBody;
+import com.spoqa.battery.InFlightCall;
+import com.spoqa.battery.Logger;
+import com.spoqa.battery.OnResponse;
+import com.spoqa.battery.PlatformUtils;
+import com.spoqa.battery.ReflectionCache;
+import com.spoqa.battery.ResponseCache;
+import com.spoqa.battery.RpcContext;
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.exceptions.ResponseValidationException;
+import com.spoqa.battery.exceptions.RpcException;
+import com.squareup.okhttp.Callback;
+import com.squareup.okhttp.Headers;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+import okio.BufferedSink;
+import rx.Observable;
+
+/**
+ * Runs calls over OkHttp without an Android runtime. Responses are decoded on OkHttp's
+ * dispatcher threads, and connections are pooled by the shared {@link OkHttpClient}.
+ *
+ * The frontend context handed to exception handlers is whatever the caller passes to
+ * {@link #invokeAsync(Object, OnResponse, Object)}, or null. Responses answered from the
+ * {@link ResponseCache} are decoded on the dispatcher's threads as well.
+ */
+public class JvmRpcContext extends RpcContext<Object> {
+
+    static {
+        /* register up */
+        Logger.registerLogger(new JvmLogger());
+        PlatformUtils.registerPlatformUtils(new JvmPlatformUtilsImpl());
+        ReflectionCache.getSharedInstance().setAccessorFactory(new MethodHandleAccessorFactory());
+    }
+
+    private static final String TAG = "JvmRpcContext";
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    private OkHttpClient mHttpClient;
+    private Executor mCallbackExecutor;
+
+    public JvmRpcContext() {
+        this(new OkHttpClient());
+    }
+
+    public JvmRpcContext(OkHttpClient httpClient) {
+        this(httpClient, null);
+    }
+
+    /**
+     * @param callbackExecutor executor OnResponse is invoked on, or null to invoke it on the
+     *                         thread which decoded the response
+     */
+    public JvmRpcContext(OkHttpClient httpClient, Executor callbackExecutor) {
+        super();
+        mHttpClient = httpClient;
+        mCallbackExecutor = callbackExecutor;
+    }
+
+    public OkHttpClient getHttpClient() {
+        return mHttpClient;
+    }
+
+    public <T> void invokeAsync(final T rpcObject, final OnResponse<T> onResponse) {
+        invokeAsync(rpcObject, onResponse, null);
+    }
+
+    @Override
+    public <T> void invokeAsync(final T rpcObject, final OnResponse<T> onResponse,
+                                final Object frontendContext) {
+        HttpRequest request = createRequest(rpcObject, onResponse);
+        if (request != null)
+            invokeRequest(rpcObject, request, onResponse, frontendContext);
+    }
+
+    @Override
+    protected <T> void invokeRequest(final T rpcObject, final HttpRequest request,
+                                     final OnResponse<T> onResponse, final Object frontendContext) {
+        final ResponseCache.Entry cached = getCachedResponse(request);
+        if (cached != null) {
+            long now = System.currentTimeMillis();
+            if (cached.isFresh(now) || cached.isStaleWhileRevalidate(now)) {
+                if (!cached.isFresh(now))
+                    revalidate(rpcObject, request, cached);
+                mHttpClient.getDispatcher().getExecutorService().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Throwable error = null;
+                        try {
+                            decodeResponse(rpcObject, request, cached);
+                        } catch (DeserializationException e) {
+                            error = e;
+                        } catch (ResponseValidationException e) {
+                            error = e;
+                        } catch (RuntimeException e) {
+                            /* e.g. from a ResponseValidator; nothing above us would report it */
+                            Logger.error(TAG, "Error while decoding cached response: " + e);
+                            error = e;
+                        }
+
+                        deliver(null, frontendContext, rpcObject, error, onResponse);
+                    }
+                });
+                return;
+            }
+
+            addCacheValidators(request, cached);
+        }
+
+        final InFlightCall call = leadInFlightCall(request, rpcObject, onResponse, frontendContext);
+        if (call == null)
+            return;
+
+        mHttpClient.newCall(translateRequest(request)).enqueue(new Callback() {
+            @Override
+            public void onFailure(Request okRequest, IOException e) {
+                Logger.error(TAG, "Error while RPC call: " + e.getMessage());
+                deliver(call, frontendContext, rpcObject, e, onResponse);
+            }
+
+            @Override
+            public void onResponse(Response response) {
+                /* OkHttp only catches IOException, so the call is completed whatever is thrown */
+                Throwable error = null;
+                boolean decoded = false;
+                ResponseBody body = response.body();
+
+                try {
+                    Map<String, String> headers = cached != null || getResponseCache() != null ?
+                            headersOf(response) : null;
+                    if (cached != null && response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                        body.close();
+                        ResponseCache.Entry entry = refreshCachedResponse(rpcObject, request, cached, headers);
+                        decodeResponse(rpcObject, request, entry);
+                    } else if (!response.isSuccessful()) {
+                        Logger.error(TAG, "Error while RPC call: HTTP " + response.code());
+                        error = new RpcException(String.format("Server responded with HTTP %1$d",
+                                response.code()));
+                        body.close();
+                    } else if (isCacheable(rpcObject, request, headers)) {
+                        /* stored only once it has been bound and validated */
+                        byte[] content = body.bytes();
+                        decodeResponse(rpcObject, request,
+                                response.header(HttpRequest.HEADER_CONTENT_TYPE), content);
+                        storeResponse(rpcObject, request, headers, content);
+                    } else if (getDecodedObjectCache() != null) {
+                        /* the body is looked up by its digest, so it is read as a whole */
+                        decodeResponse(rpcObject, request,
+                                response.header(HttpRequest.HEADER_CONTENT_TYPE), body.bytes());
+                    } else {
+                        decodeResponse(rpcObject, request,
+                                response.header(HttpRequest.HEADER_CONTENT_TYPE), body.byteStream());
+                    }
+                    decoded = true;
+                } catch (IOException e) {
+                    error = e;
+                } catch (DeserializationException e) {
+                    error = e;
+                } catch (ResponseValidationException e) {
+                    error = e;
+                } catch (RuntimeException e) {
+                    /* e.g. from a ResponseValidator, or an accessor given a value it cannot take */
+                    Logger.error(TAG, "Error while decoding response: " + e);
+                    error = e;
+                } finally {
+                    if (error == null && !decoded)
+                        error = new RpcException("Could not decode response");
+                    deliver(call, frontendContext, rpcObject, error, onResponse);
+                }
+            }
+        });
+    }
+
+    public <T> Observable<T> invokeObservable(final T rpcObject) {
+        return invokeObservable(rpcObject, null);
+    }
+
+    public <T> Observable<T> invokeAll(List<? extends T> rpcObjects, int maxConcurrency) {
+        return invokeAll(rpcObjects, maxConcurrency, null);
+    }
+
+    @Override
+    protected void sendRequest(HttpRequest request, final RawResponseHandler handler) {
+        mHttpClient.newCall(translateRequest(request)).enqueue(new Callback() {
+            @Override
+            public void onFailure(Request okRequest, IOException e) {
+                handler.onFailure(e);
+            }
+
+            @Override
+            public void onResponse(Response response) {
+                byte[] content;
+                try {
+                    content = response.body().bytes();
+                } catch (IOException e) {
+                    handler.onFailure(e);
+                    return;
+                }
+
+                /* OkHttp only catches IOException, so the handler hears of anything else thrown */
+                try {
+                    handler.onResponse(response.code(), response.header(HttpRequest.HEADER_CONTENT_TYPE),
+                            content);
+                } catch (RuntimeException e) {
+                    Logger.error(TAG, "Error while handling response: " + e);
+                    handler.onFailure(e);
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void runOnCallbackThread(Runnable runnable) {
+        if (mCallbackExecutor != null)
+            mCallbackExecutor.execute(runnable);
+        else
+            runnable.run();
+    }
+
+    /*
+     * refreshes a stale response which has already been used, decoding a new one only to
+     * validate it; only one revalidation of a response is sent at a time
+     */
+    private void revalidate(final Object rpcObject, final HttpRequest request,
+                            final ResponseCache.Entry cached) {
+        if (!beginRevalidation(request))
+            return;
+
+        addCacheValidators(request, cached);
+        mHttpClient.newCall(translateRequest(request)).enqueue(new Callback() {
+            @Override
+            public void onFailure(Request okRequest, IOException e) {
+                endRevalidation(request);
+                Logger.warn(TAG, "Could not revalidate cached response: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Response response) {
+                ResponseBody body = response.body();
+
+                try {
+                    Map<String, String> headers = headersOf(response);
+                    if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED)
+                        refreshCachedResponse(rpcObject, request, cached, headers);
+                    else if (response.isSuccessful() && isCacheable(rpcObject, request, headers))
+                        storeRevalidatedResponse(rpcObject, request, headers,
+                                response.header(HttpRequest.HEADER_CONTENT_TYPE), body.bytes());
+                } catch (IOException e) {
+                    Logger.warn(TAG, "Could not revalidate cached response: " + e.getMessage());
+                } catch (RuntimeException e) {
+                    /* OkHttp only catches IOException */
+                    Logger.warn(TAG, "Could not revalidate cached response: " + e);
+                } finally {
+                    try {
+                        body.close();
+                    } catch (IOException e) {
+                        /* nothing left to read */
+                    }
+                    endRevalidation(request);
+                }
+            }
+        });
+    }
+
+    /* call is null for responses which did not come from the network */
+    private <T> void deliver(final InFlightCall call, final Object frontendContext, final T rpcObject,
+                             final Throwable error, final OnResponse<T> onResponse) {
+        if (mCallbackExecutor == null) {
+            completeInFlightCall(call, rpcObject, error);
+            deliverResponse(frontendContext, rpcObject, error, onResponse);
+            return;
+        }
+
+        mCallbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                completeInFlightCall(call, rpcObject, error);
+                deliverResponse(frontendContext, rpcObject, error, onResponse);
+            }
+        });
+    }
+
+    private static Request translateRequest(HttpRequest request) {
+        Request.Builder builder = new Request.Builder().url(request.getUri());
+
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet())
+            builder.header(header.getKey(), header.getValue());
+
+        String method = translateHttpMethod(request.getMethod());
+        HttpRequestBody content = request.getStreamingRequestBody();
+        RequestBody body = null;
+
+        if (method.equals("POST") || method.equals("PUT") ||
+                (content != null && method.equals("DELETE"))) {
+            /* OkHttp requires a body for POST and PUT, and forbids one for GET */
+            String contentType = request.getContentType();
+            MediaType mediaType = contentType != null ? MediaType.parse(contentType) : null;
+            if (content != null)
+                body = new StreamingBody(mediaType, content);
+            else
+                body = RequestBody.create(mediaType, EMPTY_BODY);
+        }
+
+        return builder.method(method, body).build();
+    }
+
+    /* repeated headers are joined into one, as RFC 7230 allows */
+    private static Map<String, String> headersOf(Response response) {
+        Headers headers = response.headers();
+        Map<String, String> map = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < headers.size(); ++i) {
+            String name = headers.name(i);
+            String previous = map.get(name);
+            map.put(name, previous != null ? previous + ", " + headers.value(i) : headers.value(i));
+        }
+
+        return map;
+    }
+
+    private static String translateHttpMethod(int method) {
+        switch (method) {
+            case HttpRequest.Methods.GET:
+                return "GET";
+            case HttpRequest.Methods.DELETE:
+                return "DELETE";
+            case HttpRequest.Methods.POST:
+                return "POST";
+            case HttpRequest.Methods.PUT:
+                return "PUT";
+            default:
+                Logger.warn(TAG, String.format("Invalid HTTP method %1$d. Defaulting to GET...", method));
+                return "GET";
+        }
+    }
+
+    /* writes the body into the connection as OkHttp sends the request */
+    private static final class StreamingBody extends RequestBody {
+        private final MediaType mContentType;
+        private final HttpRequestBody mContent;
+
+        public StreamingBody(MediaType contentType, HttpRequestBody content) {
+            mContentType = contentType;
+            mContent = content;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return mContentType;
+        }
+
+        @Override
+        public long contentLength() {
+            return mContent.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            mContent.writeTo(sink.outputStream());
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.jvm;
+
+import com.spoqa.battery.Accessor;
+import com.spoqa.battery.AccessorFactory;
+import com.spoqa.battery.ReflectiveAccessorFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Accessors backed by method handles, which the JIT can inline unlike Field and Method.
+ * Handles are adapted to erased (Object)Object and (Object, Object)void shapes once, plus
+ * primitive setter shapes where the member type allows it, so calls go through invokeExact.
+ *
+ * Members the public lookup cannot reach get reflective accessors instead.
+ */
+public class MethodHandleAccessorFactory implements AccessorFactory {
+
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final MethodHandles.Lookup mLookup = MethodHandles.publicLookup();
+    private final ReflectiveAccessorFactory mFallback = new ReflectiveAccessorFactory();
+
+    @Override
+    public Accessor newAccessor(Field field) {
+        try {
+            MethodHandle getter = mLookup.unreflectGetter(field);
+            MethodHandle setter = null;
+            if (!Modifier.isFinal(field.getModifiers()))
+                setter = mLookup.unreflectSetter(field);
+
+            return new HandleAccessor(field.getName(), getter, setter, false);
+        } catch (IllegalAccessException e) {
+            return mFallback.newAccessor(field);
+        }
+    }
+
+    @Override
+    public Accessor newAccessor(Method method) {
+        try {
+            MethodHandle handle = mLookup.unreflect(method);
+            if (method.getParameterTypes().length == 0)
+                return new HandleAccessor(method.getName(), handle, null, true);
+            else
+                return new HandleAccessor(method.getName(), null, handle, true);
+        } catch (IllegalAccessException e) {
+            return mFallback.newAccessor(method);
+        }
+    }
+
+    private static MethodHandle adapt(MethodHandle handle, Class primitive) {
+        try {
+            return handle.asType(MethodType.methodType(void.class, Object.class, primitive));
+        } catch (WrongMethodTypeException e) {
+            /* the primitive does not widen to the member type */
+            return null;
+        }
+    }
+
+    private static final class HandleAccessor implements Accessor {
+        private final String mName;
+        /* whether the member is a method, whose exceptions are wrapped like Method.invoke() does */
+        private final boolean mInvoke;
+        private final MethodHandle mGetter;
+        private final MethodHandle mSetter;
+        private final MethodHandle mIntSetter;
+        private final MethodHandle mLongSetter;
+        private final MethodHandle mFloatSetter;
+        private final MethodHandle mDoubleSetter;
+        private final MethodHandle mBooleanSetter;
+
+        public HandleAccessor(String name, MethodHandle getter, MethodHandle setter, boolean invoke) {
+            mName = name;
+            mInvoke = invoke;
+            mGetter = getter != null ? getter.asType(GETTER) : null;
+            mSetter = setter != null ? setter.asType(SETTER) : null;
+            mIntSetter = setter != null ? adapt(setter, int.class) : null;
+            mLongSetter = setter != null ? adapt(setter, long.class) : null;
+            mFloatSetter = setter != null ? adapt(setter, float.class) : null;
+            mDoubleSetter = setter != null ? adapt(setter, double.class) : null;
+            mBooleanSetter = setter != null ? adapt(setter, boolean.class) : null;
+        }
+
+        @Override
+        public Object get(Object target) throws IllegalAccessException, InvocationTargetException {
+            if (mGetter == null)
+                throw new IllegalAccessException(String.format("%1$s is not readable", mName));
+
+            try {
+                return (Object) mGetter.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public void set(Object target, Object value) throws IllegalAccessException, InvocationTargetException {
+            if (mSetter == null)
+                throw new IllegalAccessException(String.format("%1$s is not writable", mName));
+
+            try {
+                mSetter.invokeExact(target, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public void setInt(Object target, int value) throws IllegalAccessException, InvocationTargetException {
+            if (mIntSetter == null) {
+                set(target, value);
+                return;
+            }
+
+            try {
+                mIntSetter.invokeExact(target, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public void setLong(Object target, long value) throws IllegalAccessException, InvocationTargetException {
+            if (mLongSetter == null) {
+                set(target, value);
+                return;
+            }
+
+            try {
+                mLongSetter.invokeExact(target, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public void setFloat(Object target, float value) throws IllegalAccessException, InvocationTargetException {
+            if (mFloatSetter == null) {
+                set(target, value);
+                return;
+            }
+
+            try {
+                mFloatSetter.invokeExact(target, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public void setDouble(Object target, double value) throws IllegalAccessException, InvocationTargetException {
+            if (mDoubleSetter == null) {
+                set(target, value);
+                return;
+            }
+
+            try {
+                mDoubleSetter.invokeExact(target, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public void setBoolean(Object target, boolean value) throws IllegalAccessException, InvocationTargetException {
+            if (mBooleanSetter == null) {
+                set(target, value);
+                return;
+            }
+
+            try {
+                mBooleanSetter.invokeExact(target, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        private InvocationTargetException rethrow(Throwable e) {
+            if (mInvoke)
+                return new InvocationTargetException(e);
+            if (e instanceof RuntimeException)
+                throw (RuntimeException) e;
+            if (e instanceof Error)
+                throw (Error) e;
+
+            /* field access throws nothing checked */
+            return new InvocationTargetException(e);
+        }
+    }
+
+}
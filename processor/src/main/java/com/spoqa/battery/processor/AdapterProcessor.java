@@ -0,0 +1,317 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.processor;
+
+import com.spoqa.battery.ObjectAdapter;
+import com.spoqa.battery.annotations.QueryString;
+import com.spoqa.battery.annotations.RequestBody;
+import com.spoqa.battery.annotations.RequestObject;
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.annotations.ResponseObject;
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.annotations.Uri;
+import com.spoqa.battery.annotations.UriPath;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates an {@link ObjectAdapter} for every class carrying battery annotations, and for
+ * the classes its public members refer to if they are compiled along with it.
+ *
+ * Members which the generated code cannot reach (or cannot tell apart, such as overloaded
+ * setters) are left out, so that they are still accessed through reflection.
+ */
+public class AdapterProcessor extends AbstractProcessor {
+
+    private static final String[] ANNOTATIONS = {
+            RpcObject.class.getCanonicalName(),
+            Response.class.getCanonicalName(),
+            ResponseObject.class.getCanonicalName(),
+            RequestBody.class.getCanonicalName(),
+            RequestObject.class.getCanonicalName(),
+            Uri.class.getCanonicalName(),
+            UriPath.class.getCanonicalName(),
+            QueryString.class.getCanonicalName()
+    };
+
+    /* binary names of the classes adapters have been written for, across rounds */
+    private final Set<String> mGenerated = new HashSet<String>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        Set<String> types = new LinkedHashSet<String>();
+        for (String annotation : ANNOTATIONS)
+            types.add(annotation);
+        return types;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<? extends Element> roots = roundEnv.getRootElements();
+        Deque<TypeElement> queue = new ArrayDeque<TypeElement>();
+
+        for (TypeElement annotation : annotations) {
+            for (Element e : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (e.getKind() == ElementKind.CLASS)
+                    queue.add((TypeElement) e);
+                else if (e.getKind() == ElementKind.FIELD || e.getKind() == ElementKind.METHOD)
+                    queue.add((TypeElement) e.getEnclosingElement());
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            TypeElement type = queue.poll();
+            String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+            if (mGenerated.contains(binaryName) || !isAdaptable(type))
+                continue;
+            mGenerated.add(binaryName);
+
+            List<AdapterWriter.Member> members = collectMembers(type);
+            write(type, binaryName, members);
+
+            /* nested objects are bound without annotations, so follow member types too */
+            for (AdapterWriter.Member member : members) {
+                for (TypeElement referenced : referencedTypes(member.declaredType)) {
+                    if (roots.contains(outermost(referenced)))
+                        queue.add(referenced);
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isAdaptable(TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS)
+            return false;
+
+        return isVisible(type);
+    }
+
+    /* whether the element can be named from another class of its package */
+    private static boolean isVisible(Element element) {
+        while (element != null && !(element instanceof PackageElement)) {
+            if (element.getModifiers().contains(Modifier.PRIVATE))
+                return false;
+            element = element.getEnclosingElement();
+        }
+
+        return true;
+    }
+
+    private static boolean isVisible(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY)
+            return isVisible(((ArrayType) type).getComponentType());
+        if (type.getKind() == TypeKind.DECLARED)
+            return isVisible(((DeclaredType) type).asElement());
+
+        return type.getKind().isPrimitive();
+    }
+
+    private static TypeElement outermost(TypeElement type) {
+        Element element = type;
+        while (!(element.getEnclosingElement() instanceof PackageElement))
+            element = element.getEnclosingElement();
+
+        return (TypeElement) element;
+    }
+
+    /* classes named by the type and its type arguments, such as Article in List<Article> */
+    private static List<TypeElement> referencedTypes(TypeMirror type) {
+        List<TypeElement> output = new ArrayList<TypeElement>();
+        if (type.getKind() == TypeKind.ARRAY) {
+            output.addAll(referencedTypes(((ArrayType) type).getComponentType()));
+        } else if (type.getKind() == TypeKind.DECLARED) {
+            DeclaredType declared = (DeclaredType) type;
+            output.add((TypeElement) declared.asElement());
+            for (TypeMirror argument : declared.getTypeArguments())
+                output.addAll(referencedTypes(argument));
+        }
+
+        return output;
+    }
+
+    /**
+     * Public instance fields, getters and setters of the class and its superclasses, the
+     * same members CodecUtils finds through Class.getFields() and Class.getMethods().
+     */
+    private List<AdapterWriter.Member> collectMembers(TypeElement type) {
+        Types types = processingEnv.getTypeUtils();
+        DeclaredType self = (DeclaredType) type.asType();
+        /* generic classes are accessed through their raw type, whose members are erased */
+        boolean raw = !type.getTypeParameters().isEmpty();
+
+        Map<String, AdapterWriter.Member> fields = new LinkedHashMap<String, AdapterWriter.Member>();
+        Map<String, AdapterWriter.Member> methods = new LinkedHashMap<String, AdapterWriter.Member>();
+        Set<String> ambiguous = new HashSet<String>();
+
+        TypeElement current = type;
+        while (current != null && !current.getQualifiedName().contentEquals(Object.class.getName())) {
+            for (VariableElement f : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                Set<Modifier> modifiers = f.getModifiers();
+                if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC))
+                    continue;
+
+                String name = f.getSimpleName().toString();
+                if (fields.containsKey(name)) {
+                    /* hidden by a field of a subclass */
+                    ambiguous.add("field " + name);
+                    continue;
+                }
+
+                TypeMirror declared = raw ? f.asType() : types.asMemberOf(self, f);
+                AdapterWriter.Member member = new AdapterWriter.Member();
+                member.name = name;
+                member.kind = AdapterWriter.Member.FIELD;
+                member.declaredType = declared;
+                member.type = types.erasure(declared);
+                member.writable = !modifiers.contains(Modifier.FINAL);
+                fields.put(name, member);
+            }
+
+            for (ExecutableElement m : ElementFilter.methodsIn(current.getEnclosedElements())) {
+                Set<Modifier> modifiers = m.getModifiers();
+                if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC) ||
+                        !m.getTypeParameters().isEmpty())
+                    continue;
+
+                String name = m.getSimpleName().toString();
+                boolean isVoid = m.getReturnType().getKind() == TypeKind.VOID;
+                int kind;
+                TypeMirror declared;
+                if (!isVoid && m.getParameters().isEmpty() && !name.equals("getClass")) {
+                    kind = AdapterWriter.Member.GETTER;
+                    declared = raw ? m.getReturnType() :
+                            ((ExecutableType) types.asMemberOf(self, m)).getReturnType();
+                } else if (isVoid && m.getParameters().size() == 1) {
+                    kind = AdapterWriter.Member.SETTER;
+                    declared = raw ? m.getParameters().get(0).asType() :
+                            ((ExecutableType) types.asMemberOf(self, m))
+                                    .getParameterTypes().get(0);
+                } else {
+                    continue;
+                }
+
+                AdapterWriter.Member existing = methods.get(name);
+                if (existing != null) {
+                    /* an override seen from the subclass already; anything else is an overload */
+                    if (existing.kind != kind || !types.isSameType(existing.type, types.erasure(declared)))
+                        ambiguous.add("method " + name);
+                    continue;
+                }
+
+                AdapterWriter.Member member = new AdapterWriter.Member();
+                member.name = name;
+                member.kind = kind;
+                member.declaredType = declared;
+                member.type = types.erasure(declared);
+                member.writable = kind == AdapterWriter.Member.SETTER;
+                methods.put(name, member);
+            }
+
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED ?
+                    (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+
+        List<AdapterWriter.Member> output = new ArrayList<AdapterWriter.Member>();
+        for (AdapterWriter.Member member : fields.values()) {
+            if (!ambiguous.contains("field " + member.name) && isVisible(member.type))
+                output.add(member);
+        }
+        for (AdapterWriter.Member member : methods.values()) {
+            if (!ambiguous.contains("method " + member.name) && isVisible(member.type))
+                output.add(member);
+        }
+
+        return output;
+    }
+
+    /* how the adapter creates instances, or null if it cannot */
+    private static ExecutableElement findConstructor(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT))
+            return null;
+        if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC))
+            return null;
+
+        for (ExecutableElement c : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE))
+                return c;
+        }
+
+        return null;
+    }
+
+    private void write(TypeElement type, String binaryName, List<AdapterWriter.Member> members) {
+        Elements elements = processingEnv.getElementUtils();
+        String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        String adapterName = (packageName.length() > 0 ?
+                binaryName.substring(packageName.length() + 1) : binaryName) + ObjectAdapter.CLASS_SUFFIX;
+        String qualifiedName = packageName.length() > 0 ? packageName + "." + adapterName : adapterName;
+
+        ExecutableElement constructor = findConstructor(type);
+        AdapterWriter adapter = new AdapterWriter(packageName, adapterName,
+                processingEnv.getTypeUtils().erasure(type.asType()).toString(), members,
+                constructor != null, constructor != null && !constructor.getThrownTypes().isEmpty());
+
+        Writer writer = null;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+            writer = file.openWriter();
+            adapter.write(writer);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    String.format("Could not write %1$s, falling back to reflection: %2$s",
+                            qualifiedName, e.getMessage()), type);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                            String.format("Could not write %1$s: %2$s", qualifiedName, e.getMessage()),
+                            type);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Emits the source of one generated ObjectAdapter. Every type is written fully qualified, so
+ * that nothing in the target package can shadow it.
+ */
+final class AdapterWriter {
+
+    public static final class Member {
+        public static final int FIELD = 0;
+        public static final int GETTER = 1;
+        public static final int SETTER = 2;
+
+        public String name;
+        public int kind;
+        /* type as seen from the adapted class, and its erasure */
+        public TypeMirror declaredType;
+        public TypeMirror type;
+        public boolean writable;
+    }
+
+    private static final String ACCESSOR = "com.spoqa.battery.Accessor";
+    private static final String OBJECT_ADAPTER = "com.spoqa.battery.ObjectAdapter";
+    private static final String INVOCATION_TARGET_EXCEPTION = "java.lang.reflect.InvocationTargetException";
+
+    private final String mPackageName;
+    private final String mAdapterName;
+    private final String mTargetName;
+    private final List<Member> mMembers;
+    private final boolean mInstantiable;
+    private final boolean mConstructorThrows;
+
+    private StringBuilder mOut;
+    private int mIndent;
+
+    public AdapterWriter(String packageName, String adapterName, String targetName,
+                         List<Member> members, boolean instantiable, boolean constructorThrows) {
+        mPackageName = packageName;
+        mAdapterName = adapterName;
+        mTargetName = targetName;
+        mMembers = members;
+        mInstantiable = instantiable;
+        mConstructorThrows = constructorThrows;
+    }
+
+    public void write(Writer writer) throws IOException {
+        mOut = new StringBuilder();
+        mIndent = 0;
+
+        line("// Generated by battery-processor from %1$s. Do not modify.", mTargetName);
+        if (mPackageName.length() > 0) {
+            line("package %1$s;", mPackageName);
+            line("");
+        }
+
+        line("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+        open("public final class %1$s implements %2$s {", mAdapterName, OBJECT_ADAPTER);
+        line("");
+        writeNames("FIELDS", false);
+        writeNames("METHODS", true);
+        line("");
+        writeNewInstance();
+        line("");
+        writeLookup("field", "FIELDS", "i");
+        line("");
+        writeLookup("method", "METHODS", "FIELDS.length + i");
+        line("");
+        writeAccessor();
+        close("}");
+
+        writer.write(mOut.toString());
+    }
+
+    private void writeNames(String constant, boolean methods) {
+        StringBuilder names = new StringBuilder();
+        for (Member member : mMembers) {
+            if ((member.kind != Member.FIELD) != methods)
+                continue;
+            if (names.length() > 0)
+                names.append(", ");
+            names.append('"').append(member.name).append('"');
+        }
+
+        line("private static final String[] %1$s = { %2$s };", constant, names);
+    }
+
+    private void writeNewInstance() {
+        line("@Override");
+        open("public Object newInstance() throws InstantiationException {");
+        if (!mInstantiable) {
+            line("throw new InstantiationException(\"%1$s\");", mTargetName);
+        } else if (mConstructorThrows) {
+            open("try {");
+            line("return new %1$s();", mTargetName);
+            close("} catch (Exception e) {");
+            mIndent++;
+            line("InstantiationException error = new InstantiationException(e.toString());");
+            line("error.initCause(e);");
+            line("throw error;");
+            close("}");
+        } else {
+            line("return new %1$s();", mTargetName);
+        }
+        close("}");
+    }
+
+    private void writeLookup(String method, String names, String index) {
+        line("@Override");
+        open("public %1$s %2$s(String name) {", ACCESSOR, method);
+        open("for (int i = 0; i < %1$s.length; ++i) {", names);
+        line("if (%1$s[i].equals(name))", names);
+        mIndent++;
+        line("return new MemberAccessor(%1$s);", index);
+        mIndent--;
+        close("}");
+        line("return null;");
+        close("}");
+    }
+
+    private void writeAccessor() {
+        /* fields are numbered first, then methods, the same as in field() and method() */
+        int fieldCount = 0;
+        for (Member member : mMembers) {
+            if (member.kind == Member.FIELD)
+                fieldCount++;
+        }
+
+        open("private static final class MemberAccessor implements %1$s {", ACCESSOR);
+        line("private final int mIndex;");
+        line("");
+        open("MemberAccessor(int index) {");
+        line("mIndex = index;");
+        close("}");
+        line("");
+
+        line("@Override");
+        open("public Object get(Object target) throws IllegalAccessException, %1$s {",
+                INVOCATION_TARGET_EXCEPTION);
+        line("%1$s object = (%1$s) target;", mTargetName);
+        open("switch (mIndex) {");
+        int fieldIndex = 0, methodIndex = fieldCount;
+        for (Member member : mMembers) {
+            int index = member.kind == Member.FIELD ? fieldIndex++ : methodIndex++;
+            if (member.kind == Member.SETTER)
+                continue;
+
+            open("case %1$d:", index);
+            if (member.kind == Member.FIELD)
+                line("return object.%1$s;", member.name);
+            else
+                invoke("return object.%1$s();", member.name);
+            mIndent--;
+        }
+        open("default:");
+        line("throw new IllegalAccessException(\"Member \" + mIndex + \" of %1$s is not readable\");",
+                mTargetName);
+        mIndent--;
+        close("}");
+        close("}");
+        line("");
+
+        line("@Override");
+        open("public void set(Object target, Object value) throws IllegalAccessException, %1$s {",
+                INVOCATION_TARGET_EXCEPTION);
+        line("%1$s object = (%1$s) target;", mTargetName);
+        open("switch (mIndex) {");
+        fieldIndex = 0;
+        methodIndex = fieldCount;
+        for (Member member : mMembers) {
+            int index = member.kind == Member.FIELD ? fieldIndex++ : methodIndex++;
+            if (!member.writable)
+                continue;
+
+            open("case %1$d:", index);
+            if (member.kind == Member.FIELD)
+                line("object.%1$s = %2$s;", member.name, unbox(member.type));
+            else
+                invoke("object.%1$s(%2$s);", member.name, unbox(member.type));
+            line("return;");
+            mIndent--;
+        }
+        open("default:");
+        line("throw new IllegalAccessException(\"Member \" + mIndex + \" of %1$s is not writable\");",
+                mTargetName);
+        mIndent--;
+        close("}");
+        close("}");
+
+        writePrimitiveSetter("setInt", TypeKind.INT, fieldCount);
+        writePrimitiveSetter("setLong", TypeKind.LONG, fieldCount);
+        writePrimitiveSetter("setFloat", TypeKind.FLOAT, fieldCount);
+        writePrimitiveSetter("setDouble", TypeKind.DOUBLE, fieldCount);
+        writePrimitiveSetter("setBoolean", TypeKind.BOOLEAN, fieldCount);
+        close("}");
+    }
+
+    /* stores into members the primitive widens to without boxing, and defers to set() otherwise */
+    private void writePrimitiveSetter(String method, TypeKind kind, int fieldCount) {
+        String typeName = kind.name().toLowerCase();
+        line("");
+        line("@Override");
+        open("public void %1$s(Object target, %2$s value) throws IllegalAccessException, %3$s {",
+                method, typeName, INVOCATION_TARGET_EXCEPTION);
+
+        boolean opened = false;
+        int fieldIndex = 0, methodIndex = fieldCount;
+        for (Member member : mMembers) {
+            int index = member.kind == Member.FIELD ? fieldIndex++ : methodIndex++;
+            if (!member.writable || !widens(kind, member.type.getKind()))
+                continue;
+
+            if (!opened) {
+                line("%1$s object = (%1$s) target;", mTargetName);
+                open("switch (mIndex) {");
+                opened = true;
+            }
+            open("case %1$d:", index);
+            if (member.kind == Member.FIELD)
+                line("object.%1$s = value;", member.name);
+            else
+                invoke("object.%1$s(value);", member.name);
+            line("return;");
+            mIndent--;
+        }
+
+        if (opened) {
+            open("default:");
+            line("set(target, value);");
+            mIndent--;
+            close("}");
+        } else {
+            line("set(target, value);");
+        }
+        close("}");
+    }
+
+    private static boolean widens(TypeKind from, TypeKind to) {
+        switch (from) {
+            case INT:
+                return to == TypeKind.INT || to == TypeKind.LONG || to == TypeKind.FLOAT || to == TypeKind.DOUBLE;
+            case LONG:
+                return to == TypeKind.LONG || to == TypeKind.FLOAT || to == TypeKind.DOUBLE;
+            case FLOAT:
+                return to == TypeKind.FLOAT || to == TypeKind.DOUBLE;
+            default:
+                return to == from;
+        }
+    }
+
+    /* calls a method, wrapping what it throws like Method.invoke() does */
+    private void invoke(String format, Object... args) {
+        open("try {");
+        line(format, args);
+        close("} catch (Throwable e) {");
+        mIndent++;
+        line("throw new %1$s(e);", INVOCATION_TARGET_EXCEPTION);
+        close("}");
+    }
+
+    /* converts the boxed value to the member type */
+    private static String unbox(TypeMirror type) {
+        TypeKind kind = type.getKind();
+        switch (kind) {
+            case BOOLEAN:
+                return "((Boolean) value).booleanValue()";
+            case CHAR:
+                return "((Character) value).charValue()";
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return String.format("((Number) value).%1$sValue()", kind.name().toLowerCase());
+            default:
+                return String.format("(%1$s) value", type.toString());
+        }
+    }
+
+    private void line(String format, Object... args) {
+        if (format.length() > 0) {
+            for (int i = 0; i < mIndent; ++i)
+                mOut.append("    ");
+            mOut.append(args.length > 0 ? String.format(format, args) : format);
+        }
+        mOut.append('\n');
+    }
+
+    private void open(String format, Object... args) {
+        line(format, args);
+        mIndent++;
+    }
+
+    private void close(String format, Object... args) {
+        mIndent--;
+        line(format, args);
+    }
+
+}